@@ -0,0 +1,67 @@
+package wumpus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import agents.LogicAgent;
+import agents.Reasoner;
+import wumpus.Environment.Action;
+import wumpus.Environment.Result;
+
+/**
+ * Benchmarks a single decision of the logic agent with each reasoner followed by its action,
+ * starting a new game whenever the last one ends, so the creation of its agent is spread over the
+ * decisions of each game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentBenchmark {
+    @Param({"4", "64"})
+    private int size;
+
+    @Param({"RULES", "SAT"})
+    private String reasoner;
+
+    private World world;
+    private Player player;
+    private LogicAgent agent;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        world = new World(size, size, World.Storage.BITBOARD);
+        world.setSeed(42);
+        restart();
+    }
+
+    @Benchmark
+    public Action getAction() throws InterruptedException {
+        Action action = agent.getAction(player);
+        player.setAction(action);
+        if (player.isDead() || action == Action.EXIT || world.getResult() == Result.WIN ||
+                player.getActions().size() >= world.getMaxSteps()) {
+            restart();
+        }
+        return action;
+    }
+
+    private void restart() throws InterruptedException {
+        world.reset();
+        player = world.getPlayer();
+        agent = new LogicAgent(size, size, reasoner.equals("SAT") ? Reasoner.SAT : Reasoner.RULES);
+    }
+}
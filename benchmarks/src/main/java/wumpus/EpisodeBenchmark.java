@@ -0,0 +1,49 @@
+package wumpus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import agents.LogicAgent;
+
+/**
+ * Benchmarks full games of the logic agent, from the board reset until the game ends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EpisodeBenchmark {
+    @Param({"4", "64", "1024"})
+    private int size;
+
+    @Param({"HASH_SET", "BITBOARD"})
+    private World.Storage storage;
+
+    private World world;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        world = new World(size, size, storage);
+        world.setSeed(42);
+    }
+
+    @Benchmark
+    public int execute() throws InterruptedException {
+        LogicAgent agent = new LogicAgent(size, size);
+        world.execute(agent);
+        return world.getPlayer().getScore();
+    }
+}
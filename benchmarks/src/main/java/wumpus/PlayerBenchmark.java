@@ -0,0 +1,71 @@
+package wumpus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wumpus.Environment.Action;
+
+/**
+ * Benchmarks the player actions and perceptions on a board without dangers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerBenchmark {
+    private static final int SIZE = 64;
+    // Restart the player from time to time so the actions log does not grow forever
+    private static final int RESET_STEPS = 32;
+
+    @Param({"GO_FORWARD", "TURN_LEFT", "TURN_RIGHT", "GRAB", "SHOOT_ARROW", "EXIT"})
+    private Action action;
+
+    @Param({"HASH_SET", "BITBOARD"})
+    private World.Storage storage;
+
+    private World world;
+    private Player player;
+    private int start;
+    private int steps;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        world = new World(SIZE, SIZE, storage);
+        world.setSeed(42);
+        world.setPits(0);
+        world.setWumpus(0);
+        world.reset();
+        player = world.getPlayer();
+        start = world.getIndex(0, SIZE - 1);
+    }
+
+    @Benchmark
+    public Action setAction() {
+        if (++steps == RESET_STEPS) {
+            steps = 0;
+            player.setTile(start);
+            player.reset();
+        }
+        player.setAction(action);
+        return player.getLastAction();
+    }
+
+    @Benchmark
+    public int setPerceptions() {
+        player.setPerceptions();
+        return player.getPerceptionsMask();
+    }
+}
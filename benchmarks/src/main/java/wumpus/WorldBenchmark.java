@@ -0,0 +1,63 @@
+package wumpus;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the board reset and render. The world is marked as changed before each render, so the
+ * frame is drawn every time instead of returned from the cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldBenchmark {
+    @Param({"4", "64", "1024"})
+    private int size;
+
+    @Param({"HASH_SET", "BITBOARD"})
+    private World.Storage storage;
+
+    private World world;
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Setup
+    public void setup() throws InterruptedException {
+        world = new World(size, size, storage);
+        world.setSeed(42);
+        world.reset();
+    }
+
+    @Benchmark
+    public Player reset() throws InterruptedException {
+        world.reset();
+        return world.getPlayer();
+    }
+
+    @Benchmark
+    public String renderAll() {
+        world.modified();
+        return world.renderAll();
+    }
+
+    @Benchmark
+    public int renderAllInto() throws IOException {
+        buffer.setLength(0);
+        world.renderAll(buffer);
+        return buffer.length();
+    }
+}
@@ -1,19 +1,65 @@
+import java.io.File;
+import java.io.IOException;
+
 import agents.LogicAgent;
 import wumpus.Agent;
+import wumpus.ConsoleTracer;
+import wumpus.GameServer;
+import wumpus.LoadGenerator;
+import wumpus.TraceRecorder;
+import wumpus.TraceReplay;
+import wumpus.Tournament;
 import wumpus.World;
 
 /**
  * Entry point for the application.
  */
 public class Main {
+    private static final int PORT = 7654;
+
     public static void main(String[] args) throws Exception {
         try {
+            // Replay the recorded games of a directory
+            if (args.length > 1 && args[0].equals("replay")) {
+                replay(new File(args[1]));
+                return;
+            }
+
+            // Play every legal board once for the exact statistics
+            if (args.length > 0 && args[0].equals("all")) {
+                exhaustive();
+                return;
+            }
+
+            // Serve the games to remote agents until killed
+            if (args.length > 0 && args[0].equals("serve")) {
+                serve(args.length > 1 ? Integer.parseInt(args[1]) : PORT);
+                return;
+            }
+
+            // Load a server with many remote random walkers at once
+            if (args.length > 2 && args[0].equals("load")) {
+                load(args.length > 3 ? Integer.parseInt(args[3]) : PORT, Integer.parseInt(args[1]),
+                        Integer.parseInt(args[2]));
+                return;
+            }
+
+            // Play a tournament when the number of games is given, recording the traces if a
+            // directory is given too
+            if (args.length > 0) {
+                tournament(Integer.parseInt(args[0]), args.length > 1 ? new File(args[1]) : null);
+                return;
+            }
+
             // Create a 4x4 world
             World world = new World(4, 4);
 
             // Print the game title
             System.out.println("Hunt the Wumpus!");
 
+            // Trace every step of the game
+            world.addListener(new ConsoleTracer());
+
             // Start and execute the AI agent
             Agent agent = new LogicAgent(world.getWidth(), world.getHeight());
             world.execute(agent);
@@ -28,4 +74,93 @@ public class Main {
             error.printStackTrace();
         }
     }
+
+    /**
+     * Plays many 4x4 games across all cores and prints the statistics.
+     * @param games The number of games
+     * @param traces The directory to record the game traces or null
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    private static void tournament(int games, File traces) throws InterruptedException, IOException {
+        Tournament tournament = new Tournament(4, 4);
+        TraceRecorder recorder = null;
+        if (traces != null) {
+            recorder = new TraceRecorder(traces, "games");
+            tournament.addListener(recorder);
+        }
+        Tournament.Stats stats;
+        try {
+            stats = tournament.play(new Tournament.AgentFactory() {
+                public Agent create(World world) {
+                    return new LogicAgent(world.getWidth(), world.getHeight());
+                }
+            }, games);
+        } finally {
+            if (recorder != null) recorder.close();
+        }
+
+        System.out.format("Results for %d games:%n", games);
+        System.out.println(stats.render());
+    }
+
+    /**
+     * Plays a game on every legal 4x4 board across all cores and prints the exact statistics.
+     * @throws InterruptedException
+     */
+    private static void exhaustive() throws InterruptedException {
+        Tournament tournament = new Tournament(4, 4);
+        Tournament.Stats stats = tournament.playAll(new Tournament.AgentFactory() {
+            public Agent create(World world) {
+                return new LogicAgent(world.getWidth(), world.getHeight());
+            }
+        });
+
+        System.out.format("Results for all %d layouts, score deviation %.2f:%n", stats.getGames(),
+                stats.getScoreDeviation());
+        System.out.println(stats.render());
+    }
+
+    /**
+     * Replays the games recorded at a directory and prints the statistics.
+     * @param traces The directory of the game traces
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    private static void replay(File traces) throws InterruptedException, IOException {
+        Tournament.Stats stats = new TraceReplay().replay(traces);
+
+        System.out.format("Results for %d games replayed, %d mismatches:%n", stats.getGames(),
+                stats.getMismatches());
+        System.out.println(stats.render());
+    }
+
+    /**
+     * Serves 4x4 games to remote agents on the loopback interface until the process is killed.
+     * @param port The port
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private static void serve(int port) throws IOException, InterruptedException {
+        GameServer server = new GameServer(port);
+        server.start();
+        System.out.format("Serving games on port %d%n", server.getPort());
+        Thread.sleep(Long.MAX_VALUE);
+    }
+
+    /**
+     * Plays 4x4 games at a local server with many sessions at once and prints the report.
+     * @param sessions The number of sessions
+     * @param games The number of games of each session
+     * @param port The server port
+     * @throws InterruptedException
+     */
+    private static void load(int port, int sessions, int games) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator("localhost", port);
+        generator.setSessions(sessions);
+        LoadGenerator.Report report = generator.run(games);
+
+        System.out.format("Results for %d sessions of %d games:%n", sessions, games);
+        System.out.print(report.render());
+    }
 }
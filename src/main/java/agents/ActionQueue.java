@@ -0,0 +1,91 @@
+package agents;
+
+import wumpus.Environment.Action;
+
+/**
+ * A first in, first out queue of actions over a ring buffer, that only allocates when it grows.
+ */
+class ActionQueue {
+    private Action[] actions = new Action[16];
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Returns weather there is no action queued.
+     *
+     * @return <tt>true</tt> if empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of actions queued.
+     *
+     * @return The size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns an action queued without removing it.
+     *
+     * @param index The position from the start of the queue
+     * @return The action
+     */
+    Action get(int index) {
+        return actions[(head + index) & (actions.length - 1)];
+    }
+
+    /**
+     * Adds an action to the end of the queue.
+     *
+     * @param action The action
+     */
+    void add(Action action) {
+        if (size == actions.length) {
+            Action[] larger = new Action[actions.length * 2];
+            for (int i = 0; i < size; i++) {
+                larger[i] = actions[(head + i) & (actions.length - 1)];
+            }
+            actions = larger;
+            head = 0;
+        }
+        actions[(head + size++) & (actions.length - 1)] = action;
+    }
+
+    /**
+     * Adds some actions to the end of the queue.
+     *
+     * @param source The actions
+     * @param from   The first action position
+     * @param count  The number of actions
+     */
+    void add(Action[] source, int from, int count) {
+        for (int i = 0; i < count; i++) {
+            add(source[from + i]);
+        }
+    }
+
+    /**
+     * Removes every action queued.
+     */
+    void clear() {
+        while (size > 0) poll();
+    }
+
+    /**
+     * Removes and returns the action at the start of the queue.
+     *
+     * @return The action or null if empty
+     */
+    Action poll() {
+        if (size == 0) return null;
+        Action action = actions[head];
+        actions[head] = null;
+        head = (head + 1) & (actions.length - 1);
+        size--;
+        return action;
+    }
+}
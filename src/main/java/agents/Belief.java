@@ -0,0 +1,403 @@
+package agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import wumpus.Environment.Action;
+import wumpus.Player;
+
+/**
+ * What an agent has observed of the hidden board, from which the boards consistent with it are
+ * sampled. As the boards are generated, the start tile and its neighbors are free, there is a single
+ * Wumpus and a single gold, and the elements are at distinct tiles. The pits are either a known
+ * number, placed uniformly, or a pit at each tile with a prior probability.
+ * <p>
+ * For a known number of pits, the ways to explain the breezes felt with the tiles around them are
+ * listed when something new is told, and each board takes one of them with the weight of the ways
+ * to place the rest of the pits elsewhere. For the prior probability, only the tiles around the
+ * breezes are drawn, again until every breeze has a pit around, and the pits of the other tiles are
+ * drawn by the {@link Simulator} as they are reached. Either way a board costs about the same on
+ * any board size.
+ */
+class Belief {
+    // The offsets of the adjacent tiles
+    private static final int[][] NEIGHBORS = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
+    // The boards drawn to find the pits that explain every breeze before forcing them
+    private static final int MAX_ATTEMPTS = 64;
+    // The most ways to explain the breezes listed, the prior probability is used beyond
+    private static final int MAX_WAYS = 1 << 16;
+
+    private final KnowledgeBase kb;
+    private final int w, h;
+    private final int pits;
+    private final double prior;
+    private int start = -1;
+    private boolean scream = false;
+    // The tiles shot without a scream
+    private final IntTable missed = new IntTable();
+    private int[] breezes = new int[16];
+    private int breezeCount = 0;
+    private int[] stenches = new int[16];
+    private int stenchCount = 0;
+
+    // The candidates of the Wumpus when some stench was felt
+    private final int[] wumpus = new int[4];
+    private int wumpusCount = 0;
+    // The tiles with an unknown pit next to the breezes
+    private int[] frontier = new int[16];
+    private int frontierSize = 0;
+    private final IntTable seen = new IntTable();
+    // The ways to explain the breezes by their number of pits, and the cumulative weight of each
+    private final List<List<int[]>> ways = new ArrayList<List<int[]>>();
+    private double[] weights = new double[0];
+    private boolean exact;
+    private double density;
+    private boolean dirty = true;
+
+    /**
+     * The belief constructor.
+     *
+     * @param kb    The knowledge base where the perceptions are told
+     * @param pits  The number of pits or -1 if unknown
+     * @param prior The probability of a pit at any tile when the number is unknown
+     */
+    Belief(KnowledgeBase kb, int pits, double prior) {
+        this.kb = kb;
+        this.pits = pits;
+        this.prior = prior;
+        w = kb.getWidth();
+        h = kb.getHeight();
+        density = prior;
+    }
+
+    /**
+     * Tells the perceptions of the player at its tile, and the outcome of the last shot.
+     *
+     * @param player The player instance
+     */
+    void tell(Player player) {
+        int x = player.getX();
+        int y = player.getY();
+        if (start == -1) start = x + y * w;
+        boolean first = !kb.isVisited(x, y);
+        kb.visit(x, y);
+        if (first && player.hasBreeze()) {
+            kb.setBreeze(x, y);
+            if (breezeCount == breezes.length) breezes = Arrays.copyOf(breezes, breezeCount * 2);
+            breezes[breezeCount++] = x + y * w;
+        }
+        if (first && player.hasStench()) {
+            kb.setStench(x, y);
+            if (stenchCount == stenches.length) stenches = Arrays.copyOf(stenches, stenchCount * 2);
+            stenches[stenchCount++] = x + y * w;
+        }
+        if (player.hasScream()) {
+            scream = true;
+        } else if (player.getLastAction() == Action.SHOOT_ARROW) {
+            int[] offset = NEIGHBORS[player.getDirection().ordinal()];
+            if (kb.isValid(x + offset[0], y + offset[1])) missed.put(x + offset[0] + (y + offset[1]) * w, 1);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Returns weather the Wumpus was killed.
+     *
+     * @return <tt>true</tt> if heard the scream
+     */
+    boolean isScream() {
+        return scream;
+    }
+
+    /**
+     * Returns the probability of a pit at a tile that may have one, before what was felt around.
+     *
+     * @return The probability
+     */
+    double getDensity() {
+        return density;
+    }
+
+    /**
+     * Returns weather the tile surely has no pit.
+     *
+     * @param tile The tile as <tt>x + y * width</tt>
+     * @return <tt>true</tt> if has no pit
+     */
+    boolean isNotPit(int tile) {
+        return isClear(tile, true);
+    }
+
+    /**
+     * Returns weather the tile surely has no live Wumpus.
+     *
+     * @param tile The tile as <tt>x + y * width</tt>
+     * @return <tt>true</tt> if has no Wumpus
+     */
+    boolean isNotWumpus(int tile) {
+        return scream || missed.contains(tile) || isClear(tile, false);
+    }
+
+    /**
+     * Returns weather the tile is visited, the start or next to it, or next to a visited tile that
+     * felt no breeze, or no stench.
+     */
+    private boolean isClear(int tile, boolean pit) {
+        int x = tile % w, y = tile / w;
+        if (kb.isVisited(x, y) || isStart(tile)) return true;
+        for (int[] offset : NEIGHBORS) {
+            int nx = x + offset[0], ny = y + offset[1];
+            if (kb.isVisited(nx, ny) && !(pit ? kb.isBreeze(nx, ny) : kb.isStench(nx, ny))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns weather the tile is the start or next to it, which are always free.
+     */
+    private boolean isStart(int tile) {
+        if (tile == start) return true;
+        int dx = Math.abs(tile % w - start % w), dy = Math.abs(tile / w - start / w);
+        return dx + dy == 1;
+    }
+
+    /**
+     * Draws a board consistent with the observations into a simulator. It only reads the belief, so
+     * the boards can be drawn by many threads at once once it is {@link #update updated}.
+     *
+     * @param random The random generator
+     * @param sim    The simulator
+     */
+    void sample(SplittableRandom random, Simulator sim) {
+        sim.clearBoard(random, exact ? 0 : prior);
+        // The Wumpus, next to every stench if any was felt
+        int wumpus = -1;
+        if (!scream) {
+            if (stenchCount > 0) {
+                if (wumpusCount > 0) wumpus = this.wumpus[random.nextInt(wumpusCount)];
+            } else {
+                wumpus = sampleTile(random, sim, true);
+            }
+        }
+        sim.setWumpus(wumpus);
+
+        if (exact) {
+            samplePits(random, sim, wumpus);
+        } else {
+            // The pits next to the breezes, until every one has some
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                for (int i = 0; i < frontierSize; i++) {
+                    sim.setPit(frontier[i], frontier[i] != wumpus && random.nextDouble() < prior);
+                }
+                if (explains(sim, wumpus, random, attempt == MAX_ATTEMPTS - 1)) break;
+            }
+        }
+
+        sim.setGold(sampleTile(random, sim, false));
+    }
+
+    /**
+     * Places the known number of pits: a way to explain the breezes, with the weight of its number
+     * of pits, and the rest uniformly at the tiles away from the breezes.
+     */
+    private void samplePits(SplittableRandom random, Simulator sim, int wumpus) {
+        int[] way = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && way == null; attempt++) {
+            double value = random.nextDouble() * weights[pits];
+            int count = 0;
+            while (weights[count] <= value) count++;
+            List<int[]> candidates = ways.get(count);
+            way = candidates.get(random.nextInt(candidates.size()));
+            // The Wumpus is not at a pit
+            for (int i = 0; way != null && i < way.length; i++) {
+                if (way[i] == wumpus) way = null;
+            }
+        }
+        for (int i = 0; i < frontierSize; i++) {
+            sim.setPit(frontier[i], false);
+        }
+        if (way == null) return;
+        for (int tile : way) {
+            sim.setPit(tile, true);
+        }
+        int size = w * h;
+        for (int placed = way.length; placed < pits; placed++) {
+            int tile = -1;
+            for (int attempt = 0; attempt < MAX_ATTEMPTS && tile == -1; attempt++) {
+                tile = random.nextInt(size);
+                if (!isAway(tile, sim, wumpus)) tile = -1;
+            }
+            for (int t = 0, candidates = 0; t < size && tile == -1; t++) {
+                if (isAway(t, sim, wumpus) && random.nextInt(++candidates) == 0) tile = t;
+            }
+            if (tile == -1) return;
+            sim.setPit(tile, true);
+        }
+    }
+
+    /**
+     * Returns weather a tile away from the breezes may take one more pit.
+     */
+    private boolean isAway(int tile, Simulator sim, int wumpus) {
+        return tile != wumpus && !seen.contains(tile) && !isNotPit(tile) && !sim.isPit(tile);
+    }
+
+    /**
+     * Returns weather every breeze has a pit around, optionally forcing one at a random tile.
+     */
+    private boolean explains(Simulator sim, int wumpus, SplittableRandom random, boolean force) {
+        for (int i = 0; i < breezeCount; i++) {
+            int x = breezes[i] % w, y = breezes[i] / w;
+            int candidates = 0, chosen = -1;
+            boolean found = false;
+            for (int[] offset : NEIGHBORS) {
+                int nx = x + offset[0], ny = y + offset[1];
+                if (!kb.isValid(nx, ny)) continue;
+                int tile = nx + ny * w;
+                if (isNotPit(tile) || tile == wumpus) continue;
+                if (sim.isPit(tile)) {
+                    found = true;
+                    break;
+                }
+                // Reservoir sampling of the tile to force
+                if (random.nextInt(++candidates) == 0) chosen = tile;
+            }
+            if (found) continue;
+            if (!force) return false;
+            if (chosen != -1) sim.setPit(chosen, true);
+        }
+        return true;
+    }
+
+    /**
+     * Draws a tile for the Wumpus or the gold among the ones it can be, trying random tiles first
+     * and going through all of them when few are left.
+     */
+    private int sampleTile(SplittableRandom random, Simulator sim, boolean isWumpus) {
+        int size = w * h;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int tile = random.nextInt(size);
+            if (isCandidate(tile, sim, isWumpus)) return tile;
+        }
+        int chosen = -1, candidates = 0;
+        for (int tile = 0; tile < size; tile++) {
+            if (isCandidate(tile, sim, isWumpus) && random.nextInt(++candidates) == 0) chosen = tile;
+        }
+        return chosen;
+    }
+
+    private boolean isCandidate(int tile, Simulator sim, boolean isWumpus) {
+        if (isWumpus) return !isNotWumpus(tile);
+        // The gold would have glittered at the visited tiles
+        return !kb.isVisited(tile % w, tile / w) && !isStart(tile) && tile != sim.getWumpus() &&
+                !sim.isPit(tile);
+    }
+
+    /**
+     * Finds the candidates of the Wumpus, the tiles next to the breezes and the ways to explain
+     * them again if something was told since the last time, before drawing the boards.
+     */
+    void update() {
+        if (!dirty) return;
+        dirty = false;
+
+        wumpusCount = 0;
+        if (!scream && stenchCount > 0) {
+            // The Wumpus is next to every stench, so the candidates are around the first one
+            int first = stenches[0];
+            for (int[] offset : NEIGHBORS) {
+                int x = first % w + offset[0];
+                int y = first / w + offset[1];
+                if (!kb.isValid(x, y) || isNotWumpus(x + y * w)) continue;
+                boolean all = true;
+                for (int i = 1; i < stenchCount && all; i++) {
+                    all = Math.abs(stenches[i] % w - x) + Math.abs(stenches[i] / w - y) == 1;
+                }
+                if (all) wumpus[wumpusCount++] = x + y * w;
+            }
+        }
+
+        frontierSize = 0;
+        seen.clear();
+        for (int i = 0; i < breezeCount; i++) {
+            for (int[] offset : NEIGHBORS) {
+                int x = breezes[i] % w + offset[0];
+                int y = breezes[i] / w + offset[1];
+                if (!kb.isValid(x, y)) continue;
+                int tile = x + y * w;
+                if (isNotPit(tile) || seen.contains(tile)) continue;
+                seen.put(tile, 1);
+                if (frontierSize == frontier.length) frontier = Arrays.copyOf(frontier, frontierSize * 2);
+                frontier[frontierSize++] = tile;
+            }
+        }
+
+        exact = false;
+        density = prior;
+        if (pits < 0) return;
+        // The ways are weighted by the ways to place the rest of the pits at the unknown tiles
+        int unknown = 0;
+        for (int tile = 0; tile < w * h; tile++) {
+            if (!seen.contains(tile) && !isNotPit(tile)) unknown++;
+        }
+        ways.clear();
+        for (int count = 0; count <= pits; count++) {
+            ways.add(new ArrayList<int[]>());
+        }
+        if (!list(0, new int[pits], 0, new int[2])) return;
+        weights = new double[pits + 1];
+        double total = 0;
+        for (int count = 0; count <= pits; count++) {
+            total += ways.get(count).size() * getBinomial(unknown, pits - count);
+            weights[count] = total;
+        }
+        if (total == 0) return;
+        exact = true;
+        density = unknown + frontierSize == 0 ? 0 : Math.min(1, (double) pits / (unknown + frontierSize));
+    }
+
+    /**
+     * Lists the sets of up to the number of pits of the tiles next to the breezes that explain all
+     * of them, from the given tile of the frontier on, counting the sets listed and tried.
+     *
+     * @return <tt>false</tt> if there are too many
+     */
+    private boolean list(int index, int[] chosen, int count, int[] listed) {
+        if (++listed[1] > MAX_WAYS * 4) return false;
+        if (index == frontierSize) {
+            if (!isExplained(chosen, count)) return true;
+            if (++listed[0] > MAX_WAYS) return false;
+            ways.get(count).add(Arrays.copyOf(chosen, count));
+            return true;
+        }
+        if (!list(index + 1, chosen, count, listed)) return false;
+        if (count == pits) return true;
+        chosen[count] = frontier[index];
+        return list(index + 1, chosen, count + 1, listed);
+    }
+
+    private boolean isExplained(int[] chosen, int count) {
+        for (int i = 0; i < breezeCount; i++) {
+            boolean found = false;
+            for (int j = 0; j < count && !found; j++) {
+                found = Math.abs(chosen[j] % w - breezes[i] % w) + Math.abs(chosen[j] / w - breezes[i] / w) == 1;
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of combinations of <tt>k</tt> items out of <tt>n</tt>.
+     */
+    private static double getBinomial(int n, int k) {
+        if (k < 0 || k > n) return 0;
+        double value = 1;
+        for (int i = 0; i < k; i++) {
+            value = value * (n - i) / (i + 1);
+        }
+        return value;
+    }
+}
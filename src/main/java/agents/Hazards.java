@@ -0,0 +1,410 @@
+package agents;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes the probability of a pit and of the Wumpus at each tile from the perceptions told to a
+ * knowledge base, so the agent can take the least risky move when no move is surely safe.
+ * <p>
+ * Only the frontier tiles, the ones not visited next to a breeze, are constrained by the breezes.
+ * The frontier is split in components whose tiles share some breeze, each one is enumerated apart
+ * weighting every pit layout by the prior pit probability, and the result is cached by the shape of
+ * its evidence. The prior is the number of pits of the board over the tiles they can be at, see
+ * {@link #getPrior}. The Wumpus is equally likely at every tile next to all the stenches felt.
+ * <p>
+ * The cache is shared by the agents of every thread, and the least recently used results are
+ * evicted from each of the stripes the evidences are spread to, as the {@code ResultCache} does.
+ */
+class Hazards {
+    /**
+     * The number of pits the worlds place unless set otherwise.
+     */
+    static final int DEFAULT_PITS = 2;
+    // The largest component enumerated, the larger ones are assumed to have the prior probability
+    private static final int MAX_TILES = 20;
+    private static final int MAX_CACHED = 1 << 16;
+    private static final int STRIPES = 16;
+    // The components of every agent with the same evidence share the result
+    private static final Stripe[] CACHE = new Stripe[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            CACHE[i] = new Stripe(MAX_CACHED / STRIPES);
+        }
+    }
+    // The offsets of the adjacent tiles
+    private static final int[][] NEIGHBORS = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
+
+    /**
+     * The breezes over the tiles of a component, as a mask of the tiles of each breeze. The same
+     * instance is reused to look up the cache, only the ones stored are copied.
+     */
+    private static final class Evidence {
+        private double prior;
+        private int tiles;
+        private long[] breezes;
+        private int length;
+        private int hash;
+
+        Evidence set(double prior, int tiles, long[] breezes, int length) {
+            this.prior = prior;
+            this.tiles = tiles;
+            this.breezes = breezes;
+            this.length = length;
+            hash = 31 * Double.hashCode(prior) + tiles;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + Long.hashCode(breezes[i]);
+            }
+            return this;
+        }
+
+        Evidence copy() {
+            return new Evidence().set(prior, tiles, Arrays.copyOf(breezes, length), length);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof Evidence)) return false;
+            Evidence evidence = (Evidence) other;
+            if (prior != evidence.prior || tiles != evidence.tiles || length != evidence.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (breezes[i] != evidence.breezes[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The results of a stripe of the cache, in the order they were used.
+     */
+    private static final class Stripe extends LinkedHashMap<Evidence, double[]> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<Evidence, double[]> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private final KnowledgeBase kb;
+    private double prior;
+    private final int w;
+    private int[] breezes = new int[16];
+    private int breezeCount = 0;
+    private int[] stenches = new int[16];
+    private int stenchCount = 0;
+    // The tiles known to have no Wumpus
+    private final IntTable cleared = new IntTable();
+    private final int[] wumpus = new int[4];
+    private int wumpusCount = 0;
+    private boolean scream = false;
+    private boolean dirty = true;
+
+    // The probability of each frontier tile enumerated, by the tile
+    private final IntTable pits = new IntTable();
+    private double[] probabilities = new double[16];
+    // The scratch space to find the components of the frontier
+    private final IntTable parents = new IntTable();
+    private int[] constraints = new int[64];
+    private int[] starts = new int[17];
+    private long[] tiles = new long[16];
+    private long[] masks = new long[16];
+    private final Evidence probe = new Evidence();
+
+    /**
+     * The hazards constructor with the default number of pits.
+     *
+     * @param kb The knowledge base
+     */
+    Hazards(KnowledgeBase kb) {
+        this(kb, getPrior(DEFAULT_PITS, kb.getWidth(), kb.getHeight()));
+    }
+
+    /**
+     * The hazards constructor.
+     *
+     * @param kb    The knowledge base
+     * @param prior The probability of a pit at any tile
+     */
+    Hazards(KnowledgeBase kb, double prior) {
+        this.kb = kb;
+        this.prior = prior;
+        w = kb.getWidth();
+    }
+
+    /**
+     * Returns the probability of a pit at a tile away from the start, for a number of pits placed
+     * uniformly at the tiles other than the start corner and its two neighbors.
+     *
+     * @param pits   The number of pits
+     * @param width  The board width
+     * @param height The board height
+     * @return The probability
+     */
+    static double getPrior(int pits, int width, int height) {
+        return Math.min(1, (double) pits / Math.max(1, width * height - 3));
+    }
+
+    /**
+     * Sets the probability of a pit at any tile, before what was felt around.
+     *
+     * @param value The probability
+     */
+    void setPrior(double value) {
+        prior = value;
+        dirty = true;
+    }
+
+    /**
+     * Tells that the knowledge base has learned about a tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     */
+    void tell(int x, int y) {
+        if (kb.getTimesVisited(x, y) > 1) return;
+        int index = x + y * w;
+        if (kb.isBreeze(x, y)) {
+            if (breezeCount == breezes.length) breezes = Arrays.copyOf(breezes, breezeCount * 2);
+            breezes[breezeCount++] = index;
+        }
+        cleared.put(index, 1);
+        if (kb.isStench(x, y)) {
+            if (stenchCount == stenches.length) stenches = Arrays.copyOf(stenches, stenchCount * 2);
+            stenches[stenchCount++] = index;
+        } else {
+            for (int[] offset : NEIGHBORS) {
+                if (kb.isValid(x + offset[0], y + offset[1])) {
+                    cleared.put(x + offset[0] + (y + offset[1]) * w, 1);
+                }
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * Tells that the Wumpus was killed.
+     */
+    void setScream() {
+        scream = true;
+    }
+
+    /**
+     * Returns the probability of a pit at the tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return The probability
+     */
+    double getPitProbability(int x, int y) {
+        if (isClear(x, y, true)) return 0;
+        update();
+        int slot = pits.get(x + y * w, -1);
+        return slot == -1 ? prior : probabilities[slot];
+    }
+
+    /**
+     * Returns the probability of a live Wumpus at the tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return The probability
+     */
+    double getWumpusProbability(int x, int y) {
+        if (scream || isClear(x, y, false)) return 0;
+        update();
+        if (stenchCount == 0) {
+            // Every tile not cleared yet is a candidate
+            return 1.0 / Math.max(1, w * kb.getHeight() - cleared.size());
+        }
+        for (int i = 0; i < wumpusCount; i++) {
+            if (wumpus[i] == x + y * w) return 1.0 / wumpusCount;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the probability of dying when going to the tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return The probability
+     */
+    double getRisk(int x, int y) {
+        return 1 - (1 - getPitProbability(x, y)) * (1 - getWumpusProbability(x, y));
+    }
+
+    /**
+     * Returns weather the tile surely has no pit, or no Wumpus, because it was visited or a
+     * visited neighbor has no breeze, or no stench.
+     */
+    private boolean isClear(int x, int y, boolean pit) {
+        if (kb.isVisited(x, y)) return true;
+        return isClearedBy(x - 1, y, pit) || isClearedBy(x + 1, y, pit) ||
+                isClearedBy(x, y - 1, pit) || isClearedBy(x, y + 1, pit);
+    }
+
+    private boolean isClearedBy(int x, int y, boolean pit) {
+        return kb.isVisited(x, y) && !(pit ? kb.isBreeze(x, y) : kb.isStench(x, y));
+    }
+
+    /**
+     * Computes the probabilities of the frontier again if something was told since the last time.
+     */
+    private void update() {
+        if (!dirty) return;
+        dirty = false;
+        updatePits();
+        updateWumpus();
+    }
+
+    private void updateWumpus() {
+        wumpusCount = 0;
+        if (stenchCount == 0) return;
+        // The Wumpus is next to every stench, so the candidates are around the first one
+        int first = stenches[0];
+        for (int[] offset : NEIGHBORS) {
+            int x = first % w + offset[0];
+            int y = first / w + offset[1];
+            if (!kb.isValid(x, y) || isClear(x, y, false)) continue;
+            boolean all = true;
+            for (int i = 1; i < stenchCount && all; i++) {
+                all = Math.abs(stenches[i] % w - x) + Math.abs(stenches[i] / w - y) == 1;
+            }
+            if (all) wumpus[wumpusCount++] = x + y * w;
+        }
+    }
+
+    private void updatePits() {
+        pits.clear();
+        parents.clear();
+        // The frontier tiles of each breeze, one after the other
+        int count = 0, size = 0, frontier = 0;
+        for (int i = 0; i < breezeCount; i++) {
+            if (size + 4 > constraints.length) constraints = Arrays.copyOf(constraints, constraints.length * 2);
+            if (count + 2 > starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+            int start = size;
+            for (int[] offset : NEIGHBORS) {
+                int x = breezes[i] % w + offset[0];
+                int y = breezes[i] / w + offset[1];
+                if (!kb.isValid(x, y) || isClear(x, y, true)) continue;
+                int tile = x + y * w;
+                if (!parents.contains(tile)) {
+                    parents.put(tile, tile);
+                    if (frontier == tiles.length) tiles = Arrays.copyOf(tiles, frontier * 2);
+                    tiles[frontier++] = tile;
+                }
+                if (size > start) union(constraints[start], tile);
+                constraints[size++] = tile;
+            }
+            if (size > start) starts[count++] = start;
+        }
+        starts[count] = size;
+
+        // Sort the tiles by component and then by position
+        for (int i = 0; i < frontier; i++) {
+            int tile = (int) tiles[i];
+            tiles[i] = (long) find(tile) << 32 | tile;
+        }
+        Arrays.sort(tiles, 0, frontier);
+        if (probabilities.length < frontier) probabilities = new double[tiles.length];
+
+        for (int from = 0; from < frontier; ) {
+            int root = (int) (tiles[from] >>> 32);
+            int to = from + 1;
+            while (to < frontier && (int) (tiles[to] >>> 32) == root) to++;
+            if (to - from <= MAX_TILES) {
+                for (int i = from; i < to; i++) {
+                    pits.put((int) tiles[i], i);
+                }
+                int length = 0;
+                for (int c = 0; c < count; c++) {
+                    if (find(constraints[starts[c]]) != root) continue;
+                    long mask = 0;
+                    for (int i = starts[c]; i < starts[c + 1]; i++) {
+                        mask |= 1L << (pits.get(constraints[i], 0) - from);
+                    }
+                    if (length == masks.length) masks = Arrays.copyOf(masks, length * 2);
+                    masks[length++] = mask;
+                }
+                Arrays.sort(masks, 0, length);
+
+                probe.set(prior, to - from, masks, length);
+                Stripe stripe = CACHE[(probe.hashCode() * 0x9E3779B9) >>> 28];
+                double[] result;
+                synchronized (stripe) {
+                    result = stripe.get(probe);
+                }
+                if (result == null) {
+                    result = enumerate(to - from, masks, length);
+                    synchronized (stripe) {
+                        stripe.put(probe.copy(), result);
+                    }
+                }
+                System.arraycopy(result, 0, probabilities, from, to - from);
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Returns the probability of a pit at each tile of a component, given that every breeze has
+     * some pit among its tiles.
+     *
+     * @param tiles   The number of tiles
+     * @param breezes The mask of the tiles of each breeze
+     * @param length  The number of breezes
+     * @return The probability of each tile
+     */
+    private double[] enumerate(int tiles, long[] breezes, int length) {
+        double[] weights = new double[tiles];
+        double total = 0;
+        for (long layout = 0; layout < (1L << tiles); layout++) {
+            boolean consistent = true;
+            for (int i = 0; i < length && consistent; i++) {
+                consistent = (breezes[i] & layout) != 0;
+            }
+            if (!consistent) continue;
+            int count = Long.bitCount(layout);
+            double weight = Math.pow(prior, count) * Math.pow(1 - prior, tiles - count);
+            total += weight;
+            for (int i = 0; i < tiles; i++) {
+                if ((layout & (1L << i)) != 0) weights[i] += weight;
+            }
+        }
+        for (int i = 0; i < tiles; i++) {
+            weights[i] = total == 0 ? prior : weights[i] / total;
+        }
+        return weights;
+    }
+
+    private int find(int tile) {
+        int parent = parents.get(tile, tile);
+        while (parent != tile) {
+            // Halve the path on the way up
+            int grandparent = parents.get(parent, parent);
+            parents.put(tile, grandparent);
+            tile = parent;
+            parent = grandparent;
+        }
+        return tile;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB) parents.put(rootB, rootA);
+    }
+}
@@ -0,0 +1,276 @@
+package agents;
+
+import wumpus.Player.Direction;
+
+/**
+ * Derives which tiles are safe or have a pit or a Wumpus from the facts told to a knowledge base.
+ * The derived facts are kept as state: every time a tile is told, only the tiles within two
+ * blocks of it are queued to be evaluated again, and any change is propagated until nothing else
+ * changes.
+ */
+class Inference implements Reasoner {
+    // The offsets of the tiles within two blocks, which rules may read the told tile
+    private static final int[][] AFFECTED = {
+            {0, 0}, {-1, 0}, {1, 0}, {0, -1}, {0, 1},
+            {-1, -1}, {1, -1}, {-1, 1}, {1, 1},
+            {-2, 0}, {2, 0}, {0, -2}, {0, 2}
+    };
+    // The offsets of the adjacent tiles
+    private static final int[][] NEIGHBORS = {{-1, 0}, {0, 1}, {1, 0}, {0, -1}};
+
+    private final KnowledgeBase kb;
+    private boolean scream = false;
+    private int[] queue = new int[64];
+    private int head = 0, size = 0;
+
+    /**
+     * The inference constructor.
+     *
+     * @param kb The knowledge base to derive the facts from and to
+     */
+    Inference(KnowledgeBase kb) {
+        this.kb = kb;
+    }
+
+    /**
+     * Re-evaluates the facts affected by what was told about a tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     */
+    public void tell(int x, int y) {
+        enqueueAround(x, y);
+        propagate();
+    }
+
+    /**
+     * Tells that the Wumpus was killed, so no tile has a Wumpus anymore.
+     */
+    public void setScream() {
+        scream = true;
+    }
+
+    /**
+     * Returns weather the tile surely has no pit.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has no pit
+     */
+    public boolean isNotPit(int x, int y) {
+        return kb.isNotPit(x, y);
+    }
+
+    /**
+     * Returns weather the tile surely has no live Wumpus.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has no Wumpus
+     */
+    public boolean isNotWumpus(int x, int y) {
+        return scream || kb.isNotWumpus(x, y);
+    }
+
+    /**
+     * Returns weather the tile surely has a pit.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has a pit
+     */
+    public boolean isPit(int x, int y) {
+        return kb.isPit(x, y);
+    }
+
+    /**
+     * Returns weather the tile surely has a live Wumpus.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has a Wumpus
+     */
+    public boolean isWumpus(int x, int y) {
+        return !scream && kb.isWumpus(x, y);
+    }
+
+    /**
+     * Evaluates the queued tiles until no derived fact changes.
+     */
+    private void propagate() {
+        while (size > 0) {
+            int index = queue[head];
+            head = (head + 1) & (queue.length - 1);
+            size--;
+            int x = index % kb.getWidth();
+            int y = index / kb.getWidth();
+            kb.set(KnowledgeBase.QUEUED, x, y, false);
+
+            boolean notPit = deriveNotPit(x, y);
+            boolean notWumpus = deriveNotWumpus(x, y);
+            boolean changed = notPit != kb.isNotPit(x, y) || notWumpus != kb.isNotWumpus(x, y);
+            kb.set(KnowledgeBase.NOT_PIT, x, y, notPit);
+            kb.set(KnowledgeBase.NOT_WUMPUS, x, y, notWumpus);
+            kb.set(KnowledgeBase.PIT, x, y, derivePit(x, y));
+            kb.set(KnowledgeBase.WUMPUS, x, y, deriveWumpus(x, y));
+            // The pits and Wumpus of the tiles around depend on this one
+            if (changed) enqueueAround(x, y);
+        }
+    }
+
+    /**
+     * Queues the tiles whose facts may depend on the given tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     */
+    private void enqueueAround(int x, int y) {
+        for (int[] offset : AFFECTED) {
+            int nx = x + offset[0];
+            int ny = y + offset[1];
+            if (!kb.isValid(nx, ny) || kb.get(KnowledgeBase.QUEUED, nx, ny)) continue;
+            kb.set(KnowledgeBase.QUEUED, nx, ny, true);
+            if (size == queue.length) {
+                int[] larger = new int[queue.length * 2];
+                for (int i = 0; i < size; i++) {
+                    larger[i] = queue[(head + i) & (queue.length - 1)];
+                }
+                queue = larger;
+                head = 0;
+            }
+            queue[(head + size) & (queue.length - 1)] = nx + ny * kb.getWidth();
+            size++;
+        }
+    }
+
+    /**
+     * A tile has no pit if was visited or some visited neighbor has no breeze.
+     */
+    private boolean deriveNotPit(int x, int y) {
+        if (kb.isVisited(x, y)) return true;
+        for (int[] n : NEIGHBORS) {
+            if (kb.isVisited(x + n[0], y + n[1]) && !kb.isBreeze(x + n[0], y + n[1])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A tile has no Wumpus if was visited or some visited neighbor has no stench.
+     */
+    private boolean deriveNotWumpus(int x, int y) {
+        if (kb.isVisited(x, y)) return true;
+        for (int[] n : NEIGHBORS) {
+            if (kb.isVisited(x + n[0], y + n[1]) && !kb.isStench(x + n[0], y + n[1])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A tile has a pit if some neighbor has a breeze and all its other neighbors have no pit.
+     */
+    private boolean derivePit(int x, int y) {
+        if (kb.isNotPit(x, y)) return false;
+        for (int[] n : NEIGHBORS) {
+            int bx = x + n[0];
+            int by = y + n[1];
+            if (kb.isVisited(bx, by) && kb.isBreeze(bx, by) &&
+                    isOnlyCandidate(KnowledgeBase.NOT_PIT, bx, by, x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A tile has a Wumpus if some neighbor has a stench and all its other neighbors have no
+     * Wumpus, or if the stench and bumps around match one of the known patterns.
+     */
+    private boolean deriveWumpus(int x, int y) {
+        if (kb.isNotWumpus(x, y)) return false;
+        for (int[] n : NEIGHBORS) {
+            int sx = x + n[0];
+            int sy = y + n[1];
+            if (isStench(sx, sy) && isOnlyCandidate(KnowledgeBase.NOT_WUMPUS, sx, sy, x, y)) {
+                return true;
+            }
+        }
+        return isWumpusPattern(x, y);
+    }
+
+    /**
+     * Returns weather the given tile is the only neighbor of another one without the fact.
+     *
+     * @param fact The fact that discards a neighbor
+     * @param x    The tile X coordinate
+     * @param y    The tile Y coordinate
+     * @param cx   The candidate X coordinate
+     * @param cy   The candidate Y coordinate
+     * @return <tt>true</tt> if is the only candidate
+     */
+    private boolean isOnlyCandidate(int fact, int x, int y, int cx, int cy) {
+        for (int[] n : NEIGHBORS) {
+            int nx = x + n[0];
+            int ny = y + n[1];
+            if ((nx != cx || ny != cy) && kb.isValid(nx, ny) && !kb.get(fact, nx, ny)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns weather the tile was visited and has a stench.
+     */
+    private boolean isStench(int x, int y) {
+        return kb.isVisited(x, y) && kb.isStench(x, y);
+    }
+
+    /**
+     * The stench and bump patterns that locate the Wumpus.
+     */
+    private boolean isWumpusPattern(int x, int y) {
+        boolean west = isStench(x - 1, y);
+        boolean north = isStench(x, y + 1);
+        boolean east = isStench(x + 1, y);
+        boolean south = isStench(x, y - 1);
+
+        if (south) {
+            if (east && kb.isVisited(x + 1, y - 1)) return true;
+            if (west && kb.isVisited(x - 1, y - 1)) return true;
+            if (north) return true;
+        }
+        if (north) {
+            if (east && kb.isVisited(x + 1, y + 1)) return true;
+            if (west && kb.isVisited(x - 1, y + 1)) return true;
+        }
+        if (east && west) return true;
+
+        if (south && (!kb.isValid(x, y - 2) || kb.isVisited(x, y - 2))) {
+            Direction bump = kb.getBump(x, y - 1);
+            if ((kb.isVisited(x + 1, y - 1) && bump == Direction.W) ||
+                    (kb.isVisited(x - 1, y - 1) && bump == Direction.E)) {
+                return true;
+            }
+        }
+        if (north && (!kb.isValid(x, y + 2) || kb.isVisited(x, y + 2))) {
+            Direction bump = kb.getBump(x, y + 1);
+            if ((kb.isVisited(x + 1, y + 1) && bump == Direction.W) ||
+                    (kb.isVisited(x - 1, y + 1) && bump == Direction.E)) {
+                return true;
+            }
+        }
+        if (west && (!kb.isValid(x - 2, y) || kb.isVisited(x - 2, y))) {
+            Direction bump = kb.getBump(x - 1, y);
+            if ((kb.isVisited(x - 1, y - 1) && bump == Direction.N) ||
+                    (kb.isVisited(x - 1, y + 1) && bump == Direction.S)) {
+                return true;
+            }
+        }
+        if (east && (!kb.isValid(x + 2, y) || kb.isVisited(x + 2, y))) {
+            Direction bump = kb.getBump(x + 1, y);
+            if ((kb.isVisited(x + 1, y - 1) && bump == Direction.N) ||
+                    (kb.isVisited(x + 1, y + 1) && bump == Direction.S)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,94 @@
+package agents;
+
+/**
+ * A map from integer keys to integer values with open addressing, that is cleared in constant time
+ * by moving to a new generation. Nothing is allocated once it has grown to its working size.
+ */
+class IntTable {
+    private int[] keys = new int[64];
+    private int[] values = new int[64];
+    private int[] generations = new int[64];
+    private int generation = 1;
+    private int size = 0;
+
+    /**
+     * Removes all the entries.
+     */
+    void clear() {
+        generation++;
+        size = 0;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns weather there is an entry for the key.
+     *
+     * @param key The key
+     * @return <tt>true</tt> if has the key
+     */
+    boolean contains(int key) {
+        return generations[find(key)] == generation;
+    }
+
+    /**
+     * Returns the value of the key.
+     *
+     * @param key     The key
+     * @param missing The value returned when there is no entry for the key
+     * @return The value
+     */
+    int get(int key, int missing) {
+        int slot = find(key);
+        return generations[slot] == generation ? values[slot] : missing;
+    }
+
+    /**
+     * Sets the value of the key.
+     *
+     * @param key   The key
+     * @param value The value
+     */
+    void put(int key, int value) {
+        int slot = find(key);
+        if (generations[slot] != generation) {
+            if (size * 2 >= keys.length) {
+                grow();
+                slot = find(key);
+            }
+            generations[slot] = generation;
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = (key * 0x9E3779B9) >>> 7 & mask;
+        while (generations[slot] == generation && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys, oldValues = values, oldGenerations = generations;
+        int current = generation;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        generations = new int[oldKeys.length * 2];
+        generation = 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldGenerations[i] == current) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
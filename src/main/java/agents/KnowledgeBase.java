@@ -0,0 +1,365 @@
+package agents;
+
+import wumpus.Player.Direction;
+
+/**
+ * The facts an agent knows about each tile of the board. The board is split in pages of 64x64
+ * tiles that are only allocated when some fact of them is told, so the memory grows with the
+ * explored area instead of the board area.
+ * <p>
+ * The facts told by the player are also kept as a Zobrist hash, the exclusive or of a random key
+ * for each fact that holds, which is updated as they are told. The keys are derived from the fact
+ * and the tile instead of kept in tables, so it takes no memory on any board size.
+ */
+public class KnowledgeBase {
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // The boolean facts, the ones told by the player followed by the ones derived by the agent
+    static final int VISITED = 0;
+    static final int BREEZE = 1;
+    static final int STENCH = 2;
+    static final int NOT_PIT = 3;
+    static final int NOT_WUMPUS = 4;
+    static final int PIT = 5;
+    static final int WUMPUS = 6;
+    static final int QUEUED = 7;
+    static final int FRONTIER = 8;
+    private static final int FACTS = 9;
+    // The Zobrist keys of the bump directions follow the facts
+    private static final int BUMP = FACTS;
+
+    /**
+     * The facts of a 64x64 block of tiles: a bit per tile for the boolean facts and a byte per
+     * tile for the bump direction and the number of visits.
+     */
+    private static class Page {
+        final long[][] facts = new long[FACTS][PAGE_SIZE];
+        final byte[] bump = new byte[PAGE_SIZE * PAGE_SIZE];
+        final byte[] visits = new byte[PAGE_SIZE * PAGE_SIZE];
+    }
+
+    private final int w, h;
+    private final int columns;
+    private final Page[] pages;
+    private int allocated = 0;
+    private long hash = 0;
+
+    /**
+     * The knowledge base constructor.
+     *
+     * @param width  The board width
+     * @param height The board height
+     */
+    public KnowledgeBase(int width, int height) {
+        w = width;
+        h = height;
+        columns = (width + PAGE_SIZE - 1) >> PAGE_SHIFT;
+        pages = new Page[columns * ((height + PAGE_SIZE - 1) >> PAGE_SHIFT)];
+    }
+
+    /**
+     * Returns the board width.
+     *
+     * @return The width
+     */
+    public int getWidth() {
+        return w;
+    }
+
+    /**
+     * Returns the board height.
+     *
+     * @return The height
+     */
+    public int getHeight() {
+        return h;
+    }
+
+    /**
+     * Returns weather the coordinates are inside the board.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if inside the board
+     */
+    public boolean isValid(int x, int y) {
+        return x < w && x > -1 && y > -1 && y < h;
+    }
+
+    /**
+     * Returns weather the tile was visited, tiles outside the board were never visited.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if visited
+     */
+    public boolean isVisited(int x, int y) {
+        return get(VISITED, x, y);
+    }
+
+    /**
+     * Returns weather a breeze was felt at the tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if felt a breeze
+     */
+    public boolean isBreeze(int x, int y) {
+        return get(BREEZE, x, y);
+    }
+
+    /**
+     * Returns weather a stench was felt at the tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if felt a stench
+     */
+    public boolean isStench(int x, int y) {
+        return get(STENCH, x, y);
+    }
+
+    /**
+     * Returns weather the tile is known to have no pit.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has no pit
+     */
+    public boolean isNotPit(int x, int y) {
+        return get(NOT_PIT, x, y);
+    }
+
+    /**
+     * Returns weather the tile is known to have no Wumpus, not considering if it was killed.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has no Wumpus
+     */
+    public boolean isNotWumpus(int x, int y) {
+        return get(NOT_WUMPUS, x, y);
+    }
+
+    /**
+     * Returns weather the tile is known to have a pit.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has a pit
+     */
+    public boolean isPit(int x, int y) {
+        return get(PIT, x, y);
+    }
+
+    /**
+     * Returns weather the tile is known to have a Wumpus, not considering if it was killed.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has a Wumpus
+     */
+    public boolean isWumpus(int x, int y) {
+        return get(WUMPUS, x, y);
+    }
+
+    /**
+     * Returns a boolean fact of the tile, tiles outside the board have no facts.
+     *
+     * @param fact The fact
+     * @param x    The tile X coordinate
+     * @param y    The tile Y coordinate
+     * @return <tt>true</tt> if the fact holds
+     */
+    boolean get(int fact, int x, int y) {
+        Page page = getPage(x, y);
+        return page != null && (page.facts[fact][y & (PAGE_SIZE - 1)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Sets a boolean fact of the tile.
+     *
+     * @param fact  The fact
+     * @param x     The tile X coordinate
+     * @param y     The tile Y coordinate
+     * @param value The fact value
+     */
+    void set(int fact, int x, int y, boolean value) {
+        if (!value && getPage(x, y) == null) return;
+        long[] bits = getOrCreatePage(x, y).facts[fact];
+        if (value) {
+            bits[y & (PAGE_SIZE - 1)] |= 1L << x;
+        } else {
+            bits[y & (PAGE_SIZE - 1)] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Returns the direction the player was facing when felt a bump at the tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return The direction or null if none
+     */
+    public Direction getBump(int x, int y) {
+        Page page = getPage(x, y);
+        if (page == null) return null;
+        int bump = page.bump[getOffset(x, y)];
+        return bump == 0 ? null : DIRECTIONS[bump - 1];
+    }
+
+    /**
+     * Returns how many times the tile was visited.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return The number of visits
+     */
+    public int getTimesVisited(int x, int y) {
+        Page page = getPage(x, y);
+        return page == null ? 0 : page.visits[getOffset(x, y)];
+    }
+
+    /**
+     * Tells that the tile was visited once more.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     */
+    public void visit(int x, int y) {
+        Page page = getOrCreatePage(x, y);
+        if ((page.facts[VISITED][y & (PAGE_SIZE - 1)] & (1L << x)) == 0) hash ^= getKey(VISITED, x, y);
+        page.facts[VISITED][y & (PAGE_SIZE - 1)] |= 1L << x;
+        int offset = getOffset(x, y);
+        // Saturate the counter, it is only compared to small numbers
+        if (page.visits[offset] < Byte.MAX_VALUE) page.visits[offset]++;
+    }
+
+    /**
+     * Tells that a breeze was felt at the tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     */
+    public void setBreeze(int x, int y) {
+        if (!get(BREEZE, x, y)) hash ^= getKey(BREEZE, x, y);
+        set(BREEZE, x, y, true);
+    }
+
+    /**
+     * Tells that a stench was felt at the tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     */
+    public void setStench(int x, int y) {
+        if (!get(STENCH, x, y)) hash ^= getKey(STENCH, x, y);
+        set(STENCH, x, y, true);
+    }
+
+    /**
+     * Tells that a bump was felt at the tile facing the given direction.
+     *
+     * @param x         The tile X coordinate
+     * @param y         The tile Y coordinate
+     * @param direction The direction
+     */
+    public void setBump(int x, int y, Direction direction) {
+        byte[] bumps = getOrCreatePage(x, y).bump;
+        int offset = getOffset(x, y);
+        int bump = direction.ordinal() + 1;
+        if (bumps[offset] == bump) return;
+        if (bumps[offset] != 0) hash ^= getKey(BUMP + bumps[offset] - 1, x, y);
+        hash ^= getKey(BUMP + bump - 1, x, y);
+        bumps[offset] = (byte) bump;
+    }
+
+    /**
+     * Returns the Zobrist hash of the facts told: the visited tiles, the breezes, the stenches and
+     * the bumps. Two knowledge bases with the same facts have the same hash, no matter the order
+     * they were told.
+     *
+     * @return The hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the Zobrist key of a fact at a tile.
+     *
+     * @param fact The fact, or a bump direction after the facts
+     * @param x    The tile X coordinate
+     * @param y    The tile Y coordinate
+     * @return The key
+     */
+    private long getKey(int fact, int x, int y) {
+        return mix(((long) y * w + x) << 4 | fact);
+    }
+
+    /**
+     * Returns a random looking key for a value, by the SplitMix64 finalizer.
+     *
+     * @param value The value
+     * @return The key
+     */
+    static long mix(long value) {
+        // Shifted so that the zero value has a key too
+        long z = (value + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns how many pages have been allocated so far.
+     *
+     * @return The number of pages
+     */
+    public int getAllocatedPages() {
+        return allocated;
+    }
+
+    /**
+     * Returns the page of the tile or null if not allocated or outside the board.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return The page
+     */
+    private Page getPage(int x, int y) {
+        if (!isValid(x, y)) return null;
+        return pages[(y >> PAGE_SHIFT) * columns + (x >> PAGE_SHIFT)];
+    }
+
+    /**
+     * Returns the page of the tile allocating it on the first touch.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return The page
+     */
+    private Page getOrCreatePage(int x, int y) {
+        int index = (y >> PAGE_SHIFT) * columns + (x >> PAGE_SHIFT);
+        Page page = pages[index];
+        if (page == null) {
+            page = new Page();
+            pages[index] = page;
+            allocated++;
+        }
+        return page;
+    }
+
+    /**
+     * Returns the position of the tile inside its page.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return The offset
+     */
+    private static int getOffset(int x, int y) {
+        return ((y & (PAGE_SIZE - 1)) << PAGE_SHIFT) | (x & (PAGE_SIZE - 1));
+    }
+}
@@ -1,36 +1,50 @@
 package agents;
 
-import java.util.*;
+import java.util.Arrays;
 
 import wumpus.Agent;
-import wumpus.Environment;
 import wumpus.Environment.Action;
-import wumpus.MyPoint;
 import wumpus.Player;
 import wumpus.Player.Direction;
 
 /**
  * An Agent that implements a basic heuristic strategy. The heuristic actions are as following:
  * H1: Grab the gold if sees glitter;
- * H2: Shoots to every not visited tiles if feels a stench;
- * H3: Mark the adjacent, not visited tiles has dangerous if feels a breeze;
- * H4: If do not have gold, choose the branch the non visited branch with less turns to take;
- * H5: Choose the path that surely does not have a danger;
- * H5: If have found the gold get back by the visited path;
+ * H2: Go to the closest not visited tile that surely does not have a danger, by the visited path
+ *     with the less steps and turns;
+ * H3: Shoots the Wumpus if knows it is in an adjacent tile;
+ * H4: Otherwise go to the not visited tile with less risk of having a danger;
+ * H5: Exit if every not visited tile surely has a danger;
+ * <p>
+ * The plans decided can be kept at a {@link TranspositionTable} by the hash of what the agent knew,
+ * its position and heading, so it does not reason again when it knows the same.
  */
 public class LogicAgent implements Agent {
-    private int w, h;
-
-    private boolean debug = true;
-    private boolean[][] isVisited;
-    private boolean[][] isBREEZE;
-    private Player.Direction[][] isBUMP;
-    private boolean[][] isSTENCH;
-    private boolean isSCREAM;
-    private int[][] timesVisited;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    // The offsets of the adjacent tiles, in the order of the directions
+    private static final int[][] NEIGHBORS = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
 
+    private int w, h;
 
-    private LinkedList<Action> nextActions = new LinkedList<Action>();
+    private boolean debug = false;
+    private final KnowledgeBase kb;
+    private final Reasoner reasoner;
+    private final Hazards hazards;
+    private final Planner planner;
+    private final TranspositionTable table;
+    // The part of the hash that is fixed for the agent, its board, reasoner and pits
+    private long salt;
+    private boolean scream = false;
+    // The tiles not visited next to the visited ones, split in the ones not known to be safe and
+    // the safe ones, both in the order of the tiles
+    private int[] frontier = new int[16];
+    private int frontierSize = 0;
+    private int[] targets = new int[16];
+    private int targetsSize = 0;
+    // Weather something was learned since the frontier was last checked for safe tiles
+    private boolean learned = false;
+
+    private final ActionQueue nextActions = new ActionQueue();
 
     /**
      * The strategy constructor.
@@ -39,13 +53,59 @@ public class LogicAgent implements Agent {
      * @param height The board height
      */
     public LogicAgent(int width, int height) {
+        this(width, height, Reasoner.RULES);
+    }
+
+    /**
+     * The strategy constructor with a custom reasoner.
+     *
+     * @param width    The board width
+     * @param height   The board height
+     * @param reasoner The reasoner factory
+     */
+    public LogicAgent(int width, int height, Reasoner.Factory reasoner) {
+        this(width, height, reasoner, null);
+    }
+
+    /**
+     * The strategy constructor with a custom reasoner and a table of the plans decided, which may be
+     * shared by the agents of the same board dimensions.
+     *
+     * @param width    The board width
+     * @param height   The board height
+     * @param reasoner The reasoner factory
+     * @param table    The transposition table or null
+     */
+    public LogicAgent(int width, int height, Reasoner.Factory reasoner, TranspositionTable table) {
         w = width;
         h = height;
-        timesVisited = new int[w][h];
-        isVisited = new boolean[w][h];
-        isBREEZE = new boolean[w][h];
-        isSTENCH = new boolean[w][h];
-        isBUMP = new Player.Direction[w][h];
+        kb = new KnowledgeBase(w, h);
+        this.reasoner = reasoner.create(kb);
+        hazards = new Hazards(kb);
+        planner = new Planner(kb);
+        this.table = table;
+        salt = getSalt(Hazards.DEFAULT_PITS);
+    }
+
+    /**
+     * Sets the number of pits of the boards, 2 by default as the worlds place them, before the game
+     * starts, which weights the risk of the tiles that may have one.
+     *
+     * @param value The number of pits
+     */
+    public void setPits(int value) {
+        if (value < 0) throw new IllegalArgumentException("The pits must not be negative.");
+        hazards.setPrior(Hazards.getPrior(value, w, h));
+        salt = getSalt(value);
+    }
+
+    /**
+     * Returns the part of the hash fixed for the agent and a number of pits.
+     */
+    private long getSalt(int pits) {
+        // The reasoners and the priors may decide differently, so they do not share plans
+        long name = this.reasoner.getClass().getName().hashCode();
+        return KnowledgeBase.mix((long) w << 32 ^ h ^ name << 16 ^ (long) pits << 48);
     }
 
     /**
@@ -82,11 +142,16 @@ public class LogicAgent implements Agent {
             if (player.isDead()) {
                 System.out.println("GAME OVER!");
             }
-            // Turn on step-by-step
-            Environment.trace();
         }
     }
 
+    /**
+     * Drops the actions planned, since the one decided before them was not taken.
+     */
+    public void discardActions() {
+        nextActions.clear();
+    }
+
     /**
      * Implements the player artificial intelligence strategy.
      *
@@ -96,330 +161,211 @@ public class LogicAgent implements Agent {
 
     public Action getAction(Player player) {
 
-        if (nextActions.size() > 0) {
+        if (!nextActions.isEmpty()) {
             return nextActions.poll();
         }
-        int x = player.getX();
-        int y = player.getY();
         tell(player);
 
         if (player.hasGlitter()) {
             return Action.GRAB;
         }
-        int[][] neighbours = getNeighbors(x, y);
-        ArrayList<MyPoint> neibs = new ArrayList<MyPoint>();
-
-        for (int[] n : neighbours) {
-            if (!isVisited[n[0]][n[1]] && isNotWumpus(n[0], n[1]) && isNotPit(n[0], n[1])) {
-                ArrayList<Action> actions = getActionsTo(player, n);
-                nextActions.addAll(actions);
-                return nextActions.poll();
-            }else if(player.hasArrows() && isWumpus(n[0], n[1])){
-                ArrayList<Action> actions = getActionsToShoot(player, n);
-                nextActions.addAll(actions);
-                return nextActions.poll();
-            }
-        }
-        for (int[] n: neighbours) {
-            if (isVisited[n[0]][n[1]]) {
-                neibs.add(new MyPoint(n[0], n[1], timesVisited[n[0]][n[1]] == 3 ? 1 : 5));
-            }else if(!isVisited[n[0]][n[1]] && (isNotWumpus(n[0], n[1]) || isNotPit(n[0], n[1]))){
-                neibs.add(new MyPoint(n[0], n[1], 3));
+
+        if (table == null) {
+            decide(player);
+        } else {
+            long hash = getHash(player);
+            if (!table.get(hash, nextActions)) {
+                decide(player);
+                table.put(hash, nextActions);
             }
         }
-        Collections.sort(neibs, Collections.reverseOrder());
-        int[] next = {neibs.get(0).getX(), neibs.get(0).getY()};
-        ArrayList<Action> actions = getActionsTo(player, next);
-        nextActions.addAll(actions);
         return nextActions.poll();
     }
 
-    // add info about tile to 'knowledge base'
-    private void tell(Player player) {
+    /**
+     * Queues the actions of the next plan from what is known.
+     *
+     * @param player The player instance
+     */
+    private void decide(Player player) {
         int x = player.getX();
         int y = player.getY();
-        timesVisited[x][y] +=1;
-
-        isVisited[x][y] = true;
 
-        if (player.hasBreeze()) {
-            isBREEZE[x][y] = true;
+        // Go to the closest tile not visited that surely has no danger, the targets are kept in the
+        // order of the tiles so the ties are broken the same way whatever the path taken
+        if (learned) {
+            promote();
+            learned = false;
         }
-
-        if (player.hasStench()) {
-            isSTENCH[x][y] = true;
+        if (targetsSize > 0 && planner.plan(x, y, player.getDirection(), targets, targetsSize, nextActions)) {
+            return;
         }
 
-        if (player.hasBump()) {
-            isBUMP[x][y] = player.getDirection();
-        }
-
-        if (player.hasScream()) {
-            isSCREAM = true;
-        }
-    }
-
-    private boolean isWumpus(int x, int y) {
-        if (isSCREAM || isVisited[x][y]) {
-            return false;
-        }
-
-        int[] west = new int[]{x - 1, y};
-        int[] north = new int[]{x, y + 1};
-        int[] east = new int[]{x + 1, y};
-        int[] south = new int[]{x, y - 1};
-
-        if (isValid(south[0], south[1]) && isVisited[south[0]][south[1]] && isSTENCH[south[0]][south[1]]) {
-            if (isValid(east[0], east[1]) && isVisited[east[0]][east[1]] && isSTENCH[east[0]][east[1]] && isVisited[x + 1][y - 1]) {
-                return true;
-            }
-            if (isValid(west[0], west[1]) && isVisited[west[0]][west[1]] && isSTENCH[west[0]][west[1]] && isVisited[x - 1][y - 1]) {
-                return true;
-            }
-            if (isValid(north[0], north[1]) && isVisited[north[0]][north[1]] && isSTENCH[north[0]][north[1]]) {
-                return true;
-            }
-        }
-        if (isValid(north[0], north[1]) && isVisited[north[0]][north[1]] && isSTENCH[north[0]][north[1]]) {
-            if (isValid(east[0], east[1]) && isVisited[east[0]][east[1]] && isSTENCH[east[0]][east[1]] && isVisited[x + 1][y + 1]) {
-                return true;
-            }
-            if (isValid(west[0], west[1]) && isVisited[west[0]][west[1]] && isSTENCH[west[0]][west[1]] && isVisited[x - 1][y + 1]) {
-                return true;
-            }
-        }
-
-        if (isValid(east[0], east[1]) && isVisited[east[0]][east[1]] && isSTENCH[east[0]][east[1]] &&
-                isValid(west[0], west[1]) && isVisited[west[0]][west[1]] && isSTENCH[west[0]][west[1]]) {
-            return true;
-        }
-
-        if (isValid(south[0], south[1]) && isVisited[south[0]][south[1]] && isSTENCH[south[0]][south[1]]
-                && (!isValid(south[0], south[1] - 1) || isVisited[south[0]][south[1] - 1])){
-
-            if((isValid(x+1,y-1) && isVisited[x+1][y-1] && (isBUMP[south[0]][south[1]] == Direction.W))
-                || (isValid(x-1,y-1) && isVisited[x-1][y-1] && (isBUMP[south[0]][south[1]] == Direction.E))){
-                return true;
+        // Shoot the Wumpus next to the player
+        if (player.hasArrows()) {
+            for (Direction direction : DIRECTIONS) {
+                int[] offset = NEIGHBORS[direction.ordinal()];
+                if (isWumpus(x + offset[0], y + offset[1])) {
+                    Planner.turn(player.getDirection(), direction, nextActions);
+                    nextActions.add(Action.SHOOT_ARROW);
+                    return;
+                }
             }
         }
 
-        if (isValid(north[0], north[1]) && isVisited[north[0]][north[1]] && isSTENCH[north[0]][north[1]]
-                && (!isValid(north[0], north[1] + 1) || isVisited[north[0]][north[1] + 1])){
-
-            if((isValid(x+1,y+1) && isVisited[x+1][y+1] && (isBUMP[north[0]][north[1]] == Direction.W))
-                || (isValid(x-1,y+1) && isVisited[x-1][y+1] && (isBUMP[north[0]][north[1]] == Direction.E))){
-                return true;
+        // No tile is surely safe, take the least risky one
+        int leastRisky = -1;
+        double risk = 1;
+        for (int i = 0; i < frontierSize; i++) {
+            int tx = frontier[i] % w, ty = frontier[i] / w;
+            if (isWumpus(tx, ty) || isPit(tx, ty)) continue;
+            double tileRisk = hazards.getRisk(tx, ty);
+            if (tileRisk < risk) {
+                leastRisky = frontier[i];
+                risk = tileRisk;
             }
         }
-
-        if (isValid(west[0], west[1]) && isVisited[west[0]][west[1]] && isSTENCH[west[0]][west[1]]
-                && (!isValid(west[0]-1, west[1]) || isVisited[west[0]-1][west[1]])){
-
-            if ((isValid(x-1,y-1) && isVisited[x-1][y-1] && (isBUMP[west[0]][west[1]] == Direction.N))
-                || (isValid(x-1,y+1) && isVisited[x-1][y+1] && (isBUMP[west[0]][west[1]] == Direction.S))){
-                return true;
+        if (leastRisky != -1) {
+            targets[0] = leastRisky;
+            if (planner.route(x, y, player.getDirection(), targets, 1, nextActions)) {
+                return;
             }
         }
-
-        if (isValid(east[0], east[1]) && isVisited[east[0]][east[1]] && isSTENCH[east[0]][east[1]]
-                && (!isValid(east[0]+1, east[1]) || isVisited[east[0]+1][east[1]])){
-
-            if((isValid(x+1,y-1) && isVisited[x+1][y-1] && (isBUMP[east[0]][east[1]] == Direction.N))
-                || (isValid(x+1,y+1) && isVisited[x+1][y+1] && (isBUMP[east[0]][east[1]] == Direction.S))) {
-                return true;
-            }
-        }
-
-        return false;
+        // Every way out is a known danger
+        nextActions.add(Action.EXIT);
     }
 
-    private boolean isNotWumpus(int x, int y) {
-        if (isSCREAM || isVisited[x][y]) {
-            return true;
-        }
-
-        //neighbours are numbered from west to south
-        int[][] neighbours = new int[4][2];
-
-        neighbours[0] = new int[]{x - 1, y};
-        neighbours[1] = new int[]{x, y + 1};
-        neighbours[2] = new int[]{x + 1, y};
-        neighbours[3] = new int[]{x, y - 1};
-
-        for (int[] n : neighbours) {
-            if (isValid(n[0], n[1]) && isVisited[n[0]][n[1]] && !isSTENCH[n[0]][n[1]]) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean isNotPit(int x, int y) {
-
-        if (isVisited[x][y]) {
-            return true;
-        }
-
-        //neighbours are numbered from west to south
-        int[][] neighbours = new int[4][2];
-
-        neighbours[0] = new int[]{x - 1, y};
-        neighbours[1] = new int[]{x, y + 1};
-        neighbours[2] = new int[]{x + 1, y};
-        neighbours[3] = new int[]{x, y - 1};
-
-        for (int[] n : neighbours) {
-            if (isValid(n[0], n[1]) && isVisited[n[0]][n[1]] && !isBREEZE[n[0]][n[1]]) {
-                return true;
+    /**
+     * Moves the frontier tiles that are now known to be safe to the targets. What is known only
+     * grows, so a safe tile stays safe until visited and only the others are checked again.
+     */
+    private void promote() {
+        int kept = 0;
+        for (int i = 0; i < frontierSize; i++) {
+            int tile = frontier[i];
+            int tx = tile % w, ty = tile / w;
+            if (isNotWumpus(tx, ty) && isNotPit(tx, ty)) {
+                if (targetsSize == targets.length) targets = Arrays.copyOf(targets, targetsSize * 2);
+                insert(targets, targetsSize++, tile);
+            } else {
+                frontier[kept++] = tile;
             }
         }
-        return false;
-    }
-
-    private boolean isValid(int x, int y) {
-        return x < w && x > -1 && y > -1 && y < h;
+        frontierSize = kept;
     }
 
     /**
-     * Gets the adjacent tiles of the given coordinates.
+     * Inserts a tile in its place of a sorted array with room for it.
      *
-     * @param x The tile X coordinate
-     * @param y The tile Y coordinate
-     * @return An array of 2D coordinates
+     * @param tiles The sorted tiles
+     * @param size  The number of tiles before the insertion
+     * @param tile  The tile to insert
      */
-    private int[][] getNeighbors(int x, int y) {
-        HashMap<Direction, Integer> nodesMap = new HashMap<Direction, Integer>();
-
-        // Calculate the next block
-        int north = y - 1;
-        int south = y + 1;
-        int east = x + 1;
-        int west = x - 1;
-
-        // Check if branch is into bounds
-        if (north >= 0) nodesMap.put(Direction.N, north);
-        if (south < h) nodesMap.put(Direction.S, south);
-        if (east < w) nodesMap.put(Direction.E, east);
-        if (west >= 0) nodesMap.put(Direction.W, west);
-
-        // Build the branches array
-        int branch = 0;
-        int[][] nodes = new int[nodesMap.size()][2];
-        for (Direction direction : nodesMap.keySet()) {
-            switch (direction) {
-                case N:
-                    nodes[branch] = new int[]{x, north};
-                    break;
-                case S:
-                    nodes[branch] = new int[]{x, south};
-                    break;
-                case E:
-                    nodes[branch] = new int[]{east, y};
-                    break;
-                case W:
-                    nodes[branch] = new int[]{west, y};
-                    break;
-            }
-            branch++;
+    private static void insert(int[] tiles, int size, int tile) {
+        int i = size;
+        while (i > 0 && tiles[i - 1] > tile) {
+            tiles[i] = tiles[i - 1];
+            i--;
         }
-
-        return nodes;
+        tiles[i] = tile;
     }
 
     /**
-     * Returns the amount of turns player need to take to get into given position.
+     * Removes a tile from a sorted array if it is there.
      *
-     * @param player The player's instance
-     * @param to     The destination tile
-     * @return The number of turns
+     * @param tiles The sorted tiles
+     * @param size  The number of tiles
+     * @param tile  The tile to remove
+     * @return The number of tiles left
      */
-    private int getTurns(Player player, int[] to) {
-        // The current vector
-        int[] from = {1, 0};
-        switch (player.getDirection()) {
-            case N:
-                from[0] = 0;
-                from[1] = 1;
-                break;
-            case S:
-                from[0] = 0;
-                from[1] = -1;
-                break;
-            case W:
-                from[0] = -1;
-                from[1] = 0;
-                break;
-        }
-        // The destination vector
-        int[] dest = {to[0] - player.getX(), player.getY() - to[1]};
-        // The angle between the two vectors
-        double dotProduct = from[0] * dest[0] + from[1] * dest[1];
-        double lenProduct = Math.hypot(from[0], from[1]) * Math.hypot(dest[0], dest[1]);
-        double theta = Math.acos(dotProduct / lenProduct);
-        // Inverts when facing backwards
-        if (player.getDirection() == Direction.N && getDirection(dest) == Direction.E ||
-                player.getDirection() == Direction.E && getDirection(dest) == Direction.S ||
-                player.getDirection() == Direction.S && getDirection(dest) == Direction.W ||
-                player.getDirection() == Direction.W && getDirection(dest) == Direction.N) {
-            theta *= -1;
-        }
-        // Count how many turns
-        return (int) (theta / (Math.PI / 2));
+    private static int remove(int[] tiles, int size, int tile) {
+        int i = Arrays.binarySearch(tiles, 0, size, tile);
+        if (i < 0) return size;
+        System.arraycopy(tiles, i + 1, tiles, i, size - i - 1);
+        return size - 1;
     }
 
     /**
-     * Returns the actions that player must take to reach the given destination.
+     * Returns the hash of what the agent knows, where it is and where it faces, and weather it can
+     * still shoot.
      *
-     * @param player The player's instance
-     * @param to     The destination tile coordinates
-     * @return An array of actions
+     * @param player The player instance
+     * @return The hash
      */
-    private ArrayList<Action> getActionsTo(Player player, int[] to) {
-        ArrayList<Action> actions = new ArrayList<Action>();
-        int turns = getTurns(player, to);
-        for (int i = 0; i < Math.abs(turns); i++) {
-            if (turns < 0) actions.add(Action.TURN_RIGHT);
-            if (turns > 0) actions.add(Action.TURN_LEFT);
+    private long getHash(Player player) {
+        long state = ((long) player.getX() + (long) player.getY() * w) << 2 | player.getDirection().ordinal();
+        state = state << 2 | (player.hasArrows() ? 2 : 0) | (scream ? 1 : 0);
+        return kb.getHash() ^ KnowledgeBase.mix(salt ^ state);
+    }
 
+    // add info about tile to 'knowledge base'
+    private void tell(Player player) {
+        int x = player.getX();
+        int y = player.getY();
+        kb.visit(x, y);
+        boolean first = kb.getTimesVisited(x, y) == 1;
+
+        if (player.hasBreeze()) {
+            kb.setBreeze(x, y);
         }
-        // Go to the block
-        actions.add(Action.GO_FORWARD);
 
-        return actions;
-    }
+        if (player.hasStench()) {
+            kb.setStench(x, y);
+        }
 
-    /**
-     * Returns the actions that player must take to reach the given destination.
-     *
-     * @param player The player's instance
-     * @param to     The destination tile coordinates
-     * @return An array of actions
-     */
-    private ArrayList<Action> getActionsToShoot(Player player, int[] to) {
-        ArrayList<Action> actions = new ArrayList<Action>();
-        int turns = getTurns(player, to);
-        for (int i = 0; i < Math.abs(turns); i++) {
-            if (turns < 0) actions.add(Action.TURN_RIGHT);
-            if (turns > 0) actions.add(Action.TURN_LEFT);
+        if (player.hasBump()) {
+            kb.setBump(x, y, player.getDirection());
+        }
 
+        if (player.hasScream()) {
+            scream = true;
+            learned = true;
+            reasoner.setScream();
+            hazards.setScream();
+            planner.invalidate();
+        }
+
+        if (first) {
+            // The tiles around may become safe to go
+            planner.invalidate();
+            learned = true;
+            if (kb.get(KnowledgeBase.FRONTIER, x, y)) {
+                kb.set(KnowledgeBase.FRONTIER, x, y, false);
+                frontierSize = remove(frontier, frontierSize, x + y * w);
+                targetsSize = remove(targets, targetsSize, x + y * w);
+            }
+            for (int[] offset : NEIGHBORS) {
+                int nx = x + offset[0], ny = y + offset[1];
+                if (isValid(nx, ny) && !kb.isVisited(nx, ny) && !kb.get(KnowledgeBase.FRONTIER, nx, ny)) {
+                    kb.set(KnowledgeBase.FRONTIER, nx, ny, true);
+                    if (frontierSize == frontier.length) frontier = Arrays.copyOf(frontier, frontierSize * 2);
+                    insert(frontier, frontierSize++, nx + ny * w);
+                }
+            }
         }
-        // Go to the block
-        actions.add(Action.SHOOT_ARROW);
 
-        return actions;
+        // Only the tiles around the told one need to be derived again
+        reasoner.tell(x, y);
+        hazards.tell(x, y);
     }
 
-    /**
-     * Returns the direction based on the vector coordinates
-     *
-     * @param coords The 2D coordinates
-     * @return The direction
-     */
-    private Direction getDirection(int[] coords) {
-        if (coords[0] == +0 && coords[1] == +1) return Direction.N;
-        if (coords[0] == +1 && coords[1] == +0) return Direction.E;
-        if (coords[0] == +0 && coords[1] == -1) return Direction.S;
-        if (coords[0] == -1 && coords[1] == +0) return Direction.W;
-        return Direction.E;
+    private boolean isWumpus(int x, int y) {
+        return reasoner.isWumpus(x, y);
+    }
+
+    private boolean isNotWumpus(int x, int y) {
+        return reasoner.isNotWumpus(x, y);
+    }
+
+    private boolean isNotPit(int x, int y) {
+        return reasoner.isNotPit(x, y);
+    }
+
+    private boolean isPit(int x, int y) {
+        return reasoner.isPit(x, y);
+    }
+
+    private boolean isValid(int x, int y) {
+        return kb.isValid(x, y);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,540 @@
+package agents;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import wumpus.Agent;
+import wumpus.Environment.Action;
+import wumpus.Player;
+import wumpus.Player.Direction;
+
+/**
+ * An Agent that searches the next action with a Monte-Carlo tree over the boards it may be playing.
+ * For each simulation a board consistent with everything felt so far is drawn, the tree is followed
+ * by the actions of best upper confidence bound and the perceptions of that board, and the game is
+ * played to the end with a cautious policy from the first new node, see {@link Simulator#rollout}.
+ * The action most visited at the root is taken, and the tree is searched again for the next one.
+ * <p>
+ * The simulations run on the threads of a fork join pool for a time budget or a number of
+ * simulations per action. By default the threads share a single tree, spreading over its paths by
+ * the virtual losses of the actions being simulated. The threads can instead be split over several
+ * independent trees, whose visits are summed to choose, as in root parallelization, and each new
+ * node can be played to the end by several rollouts at once, as in leaf parallelization, see
+ * {@link #setRollouts}. With a single thread and a number of simulations the agent plays the same
+ * way for the same seed.
+ * <p>
+ * The boards are drawn as they are generated: a single Wumpus, the start tile and its neighbors
+ * free, and the number of pits the worlds place, see {@link #setPits}. The agent can instead assume
+ * that each tile has a pit with a probability, see {@link #setPitProbability}.
+ */
+public class MctsAgent implements Agent {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    // The offsets of the adjacent tiles, in the order of the directions
+    private static final int[][] NEIGHBORS = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
+    // The deepest path followed at the tree
+    private static final int MAX_DEPTH = 64;
+    // The boards drawn for each extra rollout until one feels the same along the path
+    private static final int MAX_ATTEMPTS = 16;
+
+    private final int w, h;
+    private final ForkJoinPool pool;
+    private final KnowledgeBase kb;
+    private Belief belief;
+    private final Planner planner;
+    private final ActionQueue nextActions = new ActionQueue();
+    private final int[] moves;
+    private final int[] targets = new int[4];
+
+    private boolean debug = false;
+    private long budget = TimeUnit.MILLISECONDS.toNanos(10);
+    private int iterations = Integer.MAX_VALUE;
+    private int parallelism;
+    private int trees = 1;
+    private int rollouts = 1;
+    private double exploration = 1;
+    private double risk = 0.4;
+    private long seed = 0;
+    private int move = 0;
+    private Worker[] workers = new Worker[0];
+
+    /**
+     * The strategy constructor, searching at the common pool.
+     *
+     * @param width  The board width
+     * @param height The board height
+     */
+    public MctsAgent(int width, int height) {
+        this(width, height, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The strategy constructor.
+     *
+     * @param width  The board width
+     * @param height The board height
+     * @param pool   The pool whose threads run the simulations
+     */
+    public MctsAgent(int width, int height, ForkJoinPool pool) {
+        w = width;
+        h = height;
+        this.pool = pool;
+        kb = new KnowledgeBase(w, h);
+        belief = new Belief(kb, Hazards.DEFAULT_PITS, Hazards.getPrior(Hazards.DEFAULT_PITS, w, h));
+        planner = new Planner(kb);
+        moves = new int[w * h * 2 + 1];
+        parallelism = pool.getParallelism();
+    }
+
+    /**
+     * Sets weather to show the debug messages or not.
+     *
+     * @param value <tt>true</tt> to display messages
+     */
+    public void setDebug(boolean value) {
+        debug = value;
+    }
+
+    /**
+     * Sets the most time searching each action, 10ms by default.
+     *
+     * @param time The time
+     * @param unit The time unit
+     */
+    public void setBudget(long time, TimeUnit unit) {
+        if (time <= 0) throw new IllegalArgumentException("The budget must be positive.");
+        budget = unit.toNanos(time);
+    }
+
+    /**
+     * Sets the most simulations for each action, unbounded by default. The search stops when the
+     * simulations or the budget are spent, whichever comes first.
+     *
+     * @param value The number of simulations
+     */
+    public void setIterations(int value) {
+        if (value < 1) throw new IllegalArgumentException("The iterations must be positive.");
+        iterations = value;
+    }
+
+    /**
+     * Sets the number of pits of the boards, 2 by default as the worlds place them, before the game
+     * starts.
+     *
+     * @param value The number of pits
+     */
+    public void setPits(int value) {
+        if (value < 0) throw new IllegalArgumentException("The pits must not be negative.");
+        belief = new Belief(kb, value, Hazards.getPrior(value, w, h));
+        workers = new Worker[0];
+    }
+
+    /**
+     * Assumes that each tile away from the start has a pit with a probability instead of a known
+     * number of pits, before the game starts.
+     *
+     * @param value The probability
+     */
+    public void setPitProbability(double value) {
+        if (value < 0 || value > 1) throw new IllegalArgumentException("The probability must be between 0 and 1.");
+        belief = new Belief(kb, -1, value);
+        workers = new Worker[0];
+    }
+
+    /**
+     * Sets the number of threads simulating at once, the pool parallelism by default.
+     *
+     * @param value The number of threads
+     */
+    public void setParallelism(int value) {
+        if (value < 1) throw new IllegalArgumentException("The parallelism must be positive.");
+        parallelism = value;
+    }
+
+    /**
+     * Sets the number of independent trees the threads are split over, a single shared tree by
+     * default.
+     *
+     * @param value The number of trees
+     */
+    public void setTrees(int value) {
+        if (value < 1) throw new IllegalArgumentException("The trees must be positive.");
+        trees = value;
+    }
+
+    /**
+     * Sets the number of rollouts played at once from each new node, 1 by default. The extra ones
+     * play on other boards that feel the same along the path to the node, and the mean of their
+     * returns is added to the tree as a single simulation.
+     *
+     * @param value The number of rollouts
+     */
+    public void setRollouts(int value) {
+        if (value < 1) throw new IllegalArgumentException("The rollouts must be positive.");
+        rollouts = value;
+    }
+
+    /**
+     * Sets the weight of the confidence bound over the mean return, in thousands of points.
+     *
+     * @param value The exploration weight
+     */
+    public void setExploration(double value) {
+        exploration = value;
+    }
+
+    /**
+     * Sets the highest probability of a danger the rollouts take when no tile is surely free,
+     * instead of exiting.
+     *
+     * @param value The probability
+     */
+    public void setRisk(double value) {
+        risk = value;
+    }
+
+    /**
+     * Sets the seed of the boards drawn.
+     *
+     * @param value The seed
+     */
+    public void setSeed(long value) {
+        seed = value;
+    }
+
+    /**
+     * Prints the player board and debug message.
+     *
+     * @param player The player instance
+     */
+    public void beforeAction(Player player) {
+        if (debug) {
+            System.out.println(player.render());
+            System.out.println(player.debug());
+        }
+    }
+
+    /**
+     * Prints the last action taken.
+     *
+     * @param player The player instance
+     */
+    public void afterAction(Player player) {
+        if (debug) {
+            System.out.println(player.getLastAction());
+            if (player.isDead()) {
+                System.out.println("GAME OVER!");
+            }
+        }
+    }
+
+    /**
+     * Drops the actions planned, since the one decided before them was not taken.
+     */
+    public void discardActions() {
+        nextActions.clear();
+    }
+
+    /**
+     * Implements the player artificial intelligence strategy.
+     *
+     * @param player The player instance
+     * @return The next action
+     */
+    public Action getAction(Player player) {
+        if (!nextActions.isEmpty()) {
+            return nextActions.poll();
+        }
+        belief.tell(player);
+        move++;
+        if (player.hasGlitter()) {
+            return Action.GRAB;
+        }
+
+        int best = search(player);
+        if (best == Simulator.EXIT || !queue(player, best)) {
+            return Action.EXIT;
+        }
+        return nextActions.poll();
+    }
+
+    /**
+     * Searches the trees from the player and returns the move most visited over all of them.
+     *
+     * @param player The player instance
+     * @return The move
+     */
+    private int search(Player player) {
+        if (workers.length != parallelism) {
+            // The workers draw from the belief of the agent
+            workers = new Worker[parallelism];
+            for (int i = 0; i < parallelism; i++) {
+                workers[i] = new Worker(i);
+            }
+        }
+        int tile = player.getX() + player.getY() * w;
+        int direction = player.getDirection().ordinal();
+        belief.update();
+        Simulator sim = workers[0].sim;
+        sim.start(tile, direction, player.hasArrows());
+        int count = sim.getMoves(moves);
+        if (count == 1) return moves[0];
+
+        SearchNode[] roots = new SearchNode[Math.min(trees, parallelism)];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = new SearchNode(moves, count);
+        }
+        long deadline = System.nanoTime() + budget;
+        int share = (int) Math.min(Integer.MAX_VALUE, ((long) iterations + parallelism - 1) / parallelism);
+        for (Worker worker : workers) {
+            worker.reset(roots[worker.index % roots.length], tile, direction, player.hasArrows(), share, deadline);
+        }
+        Search search = new Search(workers);
+        if (parallelism == 1 || ForkJoinTask.inForkJoinPool()) {
+            search.invoke();
+        } else {
+            pool.invoke(search);
+        }
+
+        int best = 0;
+        long bestVisits = -1;
+        for (int i = 0; i < count; i++) {
+            long visits = 0;
+            double value = 0;
+            for (SearchNode root : roots) {
+                visits += root.getVisits(i);
+                value += root.getValue(i) * root.getVisits(i);
+            }
+            if (visits > bestVisits) {
+                best = i;
+                bestVisits = visits;
+            }
+            if (debug) System.out.format("%s: %d visits, %.1f%n", getName(moves[i]), visits, visits == 0 ? 0 : value / visits);
+        }
+        return moves[best];
+    }
+
+    /**
+     * Queues the actions of a move: the route to the tile to enter, or to the closest visited tile
+     * next to the one to shoot, facing it.
+     *
+     * @return <tt>true</tt> if the tile can be reached
+     */
+    private boolean queue(Player player, int move) {
+        int target = move >> 1;
+        if ((move & 1) == 0) {
+            targets[0] = target;
+            return planner.route(player.getX(), player.getY(), player.getDirection(), targets, 1, nextActions);
+        }
+        int count = 0;
+        for (int[] offset : NEIGHBORS) {
+            int x = target % w + offset[0], y = target / w + offset[1];
+            if (kb.isVisited(x, y)) targets[count++] = x + y * w;
+        }
+        if (!planner.route(player.getX(), player.getY(), player.getDirection(), targets, count, nextActions)) {
+            return false;
+        }
+        // Follow the route to find where it ends and where it faces
+        int tile = player.getX() + player.getY() * w;
+        int direction = player.getDirection().ordinal();
+        for (int i = 0; i < nextActions.size(); i++) {
+            switch (nextActions.get(i)) {
+                case GO_FORWARD:
+                    tile += NEIGHBORS[direction][0] + NEIGHBORS[direction][1] * w;
+                    break;
+                case TURN_LEFT:
+                    direction = (direction + 3) & 3;
+                    break;
+                case TURN_RIGHT:
+                    direction = (direction + 1) & 3;
+                    break;
+                default:
+                    break;
+            }
+        }
+        int to = target == tile - w ? 0 : target == tile + 1 ? 1 : target == tile + w ? 2 : 3;
+        Planner.turn(DIRECTIONS[direction], DIRECTIONS[to], nextActions);
+        nextActions.add(Action.SHOOT_ARROW);
+        return true;
+    }
+
+    private String getName(int move) {
+        if (move == Simulator.EXIT) return "EXIT";
+        return ((move & 1) == 0 ? "ENTER " : "SHOOT ") + (move >> 1) % w + "," + (move >> 1) / w;
+    }
+
+    /**
+     * Runs every worker on the pool.
+     */
+    private static final class Search extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Worker[] workers;
+
+        Search(Worker[] workers) {
+            this.workers = workers;
+        }
+
+        protected void compute() {
+            if (workers.length == 1) {
+                workers[0].run();
+            } else {
+                invokeAll(workers);
+            }
+        }
+    }
+
+    /**
+     * Simulates games on a tree until its share of the simulations or the time is spent.
+     */
+    private final class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int index;
+        private final Simulator sim = new Simulator(belief, kb);
+        private final int[] moves = new int[w * h * 2 + 1];
+        private final SearchNode[] nodes = new SearchNode[MAX_DEPTH];
+        private final int[] indexes = new int[MAX_DEPTH];
+        private final int[] rewards = new int[MAX_DEPTH];
+        private final int[] observations = new int[MAX_DEPTH];
+        private Rollout[] extra = new Rollout[0];
+        private SearchNode root;
+        private int tile, direction;
+        private boolean arrow;
+        private int share;
+        private long deadline;
+
+        Worker(int index) {
+            this.index = index;
+        }
+
+        void reset(SearchNode root, int tile, int direction, boolean arrow, int share, long deadline) {
+            reinitialize();
+            this.root = root;
+            this.tile = tile;
+            this.direction = direction;
+            this.arrow = arrow;
+            this.share = share;
+            this.deadline = deadline;
+        }
+
+        protected void compute() {
+            run();
+        }
+
+        void run() {
+            if (extra.length != rollouts - 1) {
+                extra = new Rollout[rollouts - 1];
+                for (int i = 0; i < extra.length; i++) {
+                    extra[i] = new Rollout(this);
+                }
+            }
+            SplittableRandom random = new SplittableRandom(KnowledgeBase.mix(seed ^ (long) move << 16 ^ index));
+            int count = 0;
+            do {
+                simulate(random);
+            } while (++count < share && System.nanoTime() < deadline);
+        }
+
+        /**
+         * Plays a game on a board drawn, following the tree until a new node and then the rollout.
+         */
+        private void simulate(SplittableRandom random) {
+            belief.sample(random, sim);
+            sim.start(tile, direction, arrow);
+            SearchNode node = root;
+            int depth = 0;
+            double value = 0;
+            while (true) {
+                int index = node.select(exploration);
+                nodes[depth] = node;
+                indexes[depth] = index;
+                rewards[depth] = sim.play(node.getMove(index));
+                observations[depth++] = sim.getObservation();
+                if (sim.isTerminal()) break;
+                SearchNode child = node.getChild(index, sim.getObservation());
+                if (child == null || depth == MAX_DEPTH) {
+                    if (child == null) {
+                        node.addChild(index, sim.getObservation(), moves, sim.getMoves(moves));
+                    }
+                    value = rollout(random, depth);
+                    break;
+                }
+                node = child;
+            }
+            for (int i = depth - 1; i >= 0; i--) {
+                value += rewards[i];
+                nodes[i].update(indexes[i], value);
+            }
+        }
+
+        /**
+         * Plays the rollouts from the end of the path, the extra ones at once, and returns the mean.
+         */
+        private double rollout(SplittableRandom random, int depth) {
+            int value = sim.rollout(w * h, risk);
+            if (extra.length == 0) return value;
+            for (Rollout rollout : extra) {
+                rollout.reset(random.split(), depth);
+            }
+            if (ForkJoinTask.inForkJoinPool()) {
+                invokeAll(extra);
+            } else {
+                for (Rollout rollout : extra) rollout.invoke();
+            }
+            double total = value;
+            int count = 1;
+            for (Rollout rollout : extra) {
+                if (!rollout.found) continue;
+                total += rollout.value;
+                count++;
+            }
+            return total / count;
+        }
+    }
+
+    /**
+     * Plays the rest of a game from the end of the path of a worker on another board, drawn until
+     * one feels the same along the path.
+     */
+    private final class Rollout extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Worker worker;
+        private final Simulator sim = new Simulator(belief, kb);
+        private SplittableRandom random;
+        private int depth;
+        private boolean found;
+        private int value;
+
+        Rollout(Worker worker) {
+            this.worker = worker;
+        }
+
+        void reset(SplittableRandom random, int depth) {
+            reinitialize();
+            this.random = random;
+            this.depth = depth;
+        }
+
+        protected void compute() {
+            found = false;
+            for (int attempt = 0; attempt < MAX_ATTEMPTS && !found; attempt++) {
+                belief.sample(random, sim);
+                sim.start(worker.tile, worker.direction, worker.arrow);
+                found = follow();
+            }
+            if (found) value = sim.rollout(w * h, risk);
+        }
+
+        /**
+         * Plays the moves of the path, returning weather every perception is the same.
+         */
+        private boolean follow() {
+            for (int i = 0; i < depth; i++) {
+                sim.play(worker.nodes[i].getMove(worker.indexes[i]));
+                if (sim.isTerminal() || sim.getObservation() != worker.observations[i]) return false;
+            }
+            return true;
+        }
+    }
+}
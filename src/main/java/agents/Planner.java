@@ -0,0 +1,269 @@
+package agents;
+
+import java.util.Arrays;
+
+import wumpus.Environment.Action;
+import wumpus.Player.Direction;
+
+/**
+ * Plans the cheapest sequence of actions to reach one of some target tiles, going only through the
+ * visited tiles. The search is an A* over the tile and the direction faced, where each turn and each
+ * step forward cost one point as in the game score. The routes are cached by the starting tile and
+ * direction until the safe tiles change.
+ */
+class Planner {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    // Above this many targets the distance to the closest one is not worth computing
+    private static final int MAX_HEURISTIC_TARGETS = 8;
+
+    private final KnowledgeBase kb;
+    private final int w;
+    private final IntTable costs = new IntTable();
+    private final IntTable parents = new IntTable();
+    private final IntTable closed = new IntTable();
+    private final IntTable goals = new IntTable();
+    private long[] open = new long[64];
+    private int openSize = 0;
+    private Action[] route = new Action[16];
+
+    // The routes found since the safe tiles last changed by starting state, the actions of all of
+    // them are kept one after the other
+    private final IntTable cached = new IntTable();
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private int routeCount = 0;
+    private Action[] routes = new Action[64];
+    private int routesSize = 0;
+
+    /**
+     * The planner constructor.
+     *
+     * @param kb The knowledge base with the visited tiles
+     */
+    Planner(KnowledgeBase kb) {
+        this.kb = kb;
+        w = kb.getWidth();
+    }
+
+    /**
+     * Forgets the cached routes, since the tiles that are safe have changed.
+     */
+    void invalidate() {
+        cached.clear();
+        routeCount = 0;
+        routesSize = 0;
+    }
+
+    /**
+     * Queues the cheapest route to the closest safe target through the visited tiles, the targets
+     * themselves need not be visited. The safe tiles depend only on what is known, so the routes
+     * are cached by the starting state alone.
+     *
+     * @param x       The starting tile X coordinate
+     * @param y       The starting tile Y coordinate
+     * @param facing  The starting direction
+     * @param targets The target tiles as <tt>x + y * width</tt>
+     * @param count   The number of targets
+     * @param out     The queue of the route actions
+     * @return <tt>true</tt> if some target can be reached
+     */
+    boolean plan(int x, int y, Direction facing, int[] targets, int count, ActionQueue out) {
+        int start = (x + y * w) << 2 | facing.ordinal();
+        int index = cached.get(start, -1);
+        if (index == -1) {
+            int length = search(start, targets, count);
+            if (routeCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, routeCount * 2);
+                lengths = Arrays.copyOf(lengths, routeCount * 2);
+            }
+            if (routesSize + length > routes.length) {
+                routes = Arrays.copyOf(routes, Math.max(routes.length * 2, routesSize + length));
+            }
+            index = routeCount++;
+            offsets[index] = routesSize;
+            lengths[index] = length;
+            if (length > 0) {
+                System.arraycopy(route, 0, routes, routesSize, length);
+                routesSize += length;
+            }
+            cached.put(start, index);
+        }
+        if (lengths[index] == -1) return false;
+        out.add(routes, offsets[index], lengths[index]);
+        return true;
+    }
+
+    /**
+     * Queues the cheapest route to the closest target through the visited tiles, not cached.
+     *
+     * @param x       The starting tile X coordinate
+     * @param y       The starting tile Y coordinate
+     * @param facing  The starting direction
+     * @param targets The target tiles as <tt>x + y * width</tt>
+     * @param count   The number of targets
+     * @param out     The queue of the route actions
+     * @return <tt>true</tt> if some target can be reached
+     */
+    boolean route(int x, int y, Direction facing, int[] targets, int count, ActionQueue out) {
+        int length = search((x + y * w) << 2 | facing.ordinal(), targets, count);
+        if (length == -1) return false;
+        out.add(route, 0, length);
+        return true;
+    }
+
+    /**
+     * Queues the actions to face the given direction, turning to the shortest side.
+     *
+     * @param facing The current direction
+     * @param to     The direction to face
+     * @param out    The queue of the turns
+     */
+    static void turn(Direction facing, Direction to, ActionQueue out) {
+        switch ((to.ordinal() - facing.ordinal() + 4) & 3) {
+            case 1: out.add(Action.TURN_RIGHT); break;
+            case 2: out.add(Action.TURN_RIGHT); out.add(Action.TURN_RIGHT); break;
+            case 3: out.add(Action.TURN_LEFT); break;
+        }
+    }
+
+    /**
+     * Searches the route to the closest target, leaving its actions at the start of the route.
+     *
+     * @param start   The starting state
+     * @param targets The target tiles
+     * @param count   The number of targets
+     * @return The number of actions or -1 if no target can be reached
+     */
+    private int search(int start, int[] targets, int count) {
+        costs.clear();
+        parents.clear();
+        closed.clear();
+        goals.clear();
+        openSize = 0;
+        for (int i = 0; i < count; i++) {
+            goals.put(targets[i], 1);
+        }
+
+        costs.put(start, 0);
+        push(estimate(start, targets, count), start);
+        while (openSize > 0) {
+            int state = pop();
+            if (closed.contains(state)) continue;
+            closed.put(state, 1);
+            int tile = state >> 2;
+            if (goals.contains(tile)) return getRoute(start, state);
+            // The targets are reached but not crossed
+            if (!kb.isVisited(tile % w, tile / w)) continue;
+
+            int cost = costs.get(state, 0) + 1;
+            int direction = state & 3;
+            relax(state, tile << 2 | (direction + 3) & 3, cost, targets, count);
+            relax(state, tile << 2 | (direction + 1) & 3, cost, targets, count);
+            int next = getNeighbor(tile, direction);
+            if (next != -1 && (goals.contains(next) || kb.isVisited(next % w, next / w))) {
+                relax(state, next << 2 | direction, cost, targets, count);
+            }
+        }
+        return -1;
+    }
+
+    private void relax(int from, int state, int cost, int[] targets, int count) {
+        if (closed.contains(state) || costs.get(state, Integer.MAX_VALUE) <= cost) return;
+        costs.put(state, cost);
+        parents.put(state, from);
+        push(cost + estimate(state, targets, count), state);
+    }
+
+    /**
+     * Returns a lower bound of the cost to the closest target: the steps plus the turns needed to
+     * face the directions of the steps.
+     */
+    private int estimate(int state, int[] targets, int count) {
+        if (count > MAX_HEURISTIC_TARGETS) return 0;
+        int tile = state >> 2;
+        int x = tile % w, y = tile / w;
+        int facing = state & 3;
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int dx = targets[i] % w - x;
+            int dy = targets[i] / w - y;
+            // The directions needed, as in {N, E, S, W}
+            int horizontal = dx > 0 ? 1 : dx < 0 ? 3 : -1;
+            int vertical = dy > 0 ? 2 : dy < 0 ? 0 : -1;
+            int turns;
+            if (horizontal == -1 && vertical == -1) {
+                turns = 0;
+            } else if (horizontal == -1 || vertical == -1) {
+                int only = horizontal == -1 ? vertical : horizontal;
+                turns = only == facing ? 0 : (only + 2 & 3) == facing ? 2 : 1;
+            } else {
+                turns = horizontal == facing || vertical == facing ? 1 : 2;
+            }
+            best = Math.min(best, Math.abs(dx) + Math.abs(dy) + turns);
+        }
+        return best;
+    }
+
+    /**
+     * Writes the actions from the start to the goal at the start of the route.
+     *
+     * @return The number of actions
+     */
+    private int getRoute(int start, int goal) {
+        int length = costs.get(goal, 0);
+        if (length > route.length) route = new Action[Math.max(length, route.length * 2)];
+        int state = goal;
+        for (int i = length; state != start; ) {
+            int parent = parents.get(state, start);
+            if (parent >> 2 != state >> 2) {
+                route[--i] = Action.GO_FORWARD;
+            } else if (((parent & 3) + 1 & 3) == (state & 3)) {
+                route[--i] = Action.TURN_RIGHT;
+            } else {
+                route[--i] = Action.TURN_LEFT;
+            }
+            state = parent;
+        }
+        return length;
+    }
+
+    private int getNeighbor(int tile, int direction) {
+        int x = tile % w, y = tile / w;
+        switch (DIRECTIONS[direction]) {
+            case N: y--; break;
+            case E: x++; break;
+            case S: y++; break;
+            case W: x--; break;
+        }
+        return kb.isValid(x, y) ? x + y * w : -1;
+    }
+
+    private void push(int priority, int state) {
+        if (openSize == open.length) open = Arrays.copyOf(open, openSize * 2);
+        long entry = (long) priority << 32 | state;
+        int i = openSize++;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (open[parent] <= entry) break;
+            open[i] = open[parent];
+            i = parent;
+        }
+        open[i] = entry;
+    }
+
+    private int pop() {
+        int state = (int) open[0];
+        long last = open[--openSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= openSize) break;
+            if (child + 1 < openSize && open[child + 1] < open[child]) child++;
+            if (open[child] >= last) break;
+            open[i] = open[child];
+            i = child;
+        }
+        open[i] = last;
+        return state;
+    }
+}
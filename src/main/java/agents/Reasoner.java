@@ -0,0 +1,87 @@
+package agents;
+
+/**
+ * Derives where the dangers are from the facts told to a knowledge base. Every time the knowledge
+ * base is told about a tile the reasoner is told too, so it can keep its derivations up to date.
+ */
+public interface Reasoner {
+    /**
+     * Creates the reasoner of an agent, since reasoners keep state across the plays.
+     */
+    interface Factory {
+        /**
+         * Creates the reasoner over a knowledge base.
+         *
+         * @param kb The knowledge base
+         * @return The reasoner instance
+         */
+        Reasoner create(KnowledgeBase kb);
+    }
+
+    /**
+     * The hand written rules, fast but they miss some inferences.
+     */
+    Factory RULES = new Factory() {
+        public Reasoner create(KnowledgeBase kb) {
+            return new Inference(kb);
+        }
+    };
+
+    /**
+     * The propositional rules of the game solved by SAT, sound and complete for a single Wumpus.
+     */
+    Factory SAT = new Factory() {
+        public Reasoner create(KnowledgeBase kb) {
+            return new SatReasoner(kb);
+        }
+    };
+
+    /**
+     * Tells that the knowledge base has learned about a tile.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     */
+    void tell(int x, int y);
+
+    /**
+     * Tells that the Wumpus was killed, so no tile has a Wumpus anymore.
+     */
+    void setScream();
+
+    /**
+     * Returns weather the tile surely has no pit.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has no pit
+     */
+    boolean isNotPit(int x, int y);
+
+    /**
+     * Returns weather the tile surely has no live Wumpus.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has no Wumpus
+     */
+    boolean isNotWumpus(int x, int y);
+
+    /**
+     * Returns weather the tile surely has a pit.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has a pit
+     */
+    boolean isPit(int x, int y);
+
+    /**
+     * Returns weather the tile surely has a live Wumpus.
+     *
+     * @param x The tile X coordinate
+     * @param y The tile Y coordinate
+     * @return <tt>true</tt> if has a Wumpus
+     */
+    boolean isWumpus(int x, int y);
+}
@@ -0,0 +1,175 @@
+package agents;
+
+/**
+ * Encodes the rules of the game as propositional clauses and proves the safety of the tiles with
+ * an incremental SAT solver. There is a variable for a pit and one for the Wumpus at each tile:
+ * <ul>
+ *     <li>A breeze at a tile means some neighbor has a pit, no breeze means none has;</li>
+ *     <li>A stench at a tile means some neighbor has the Wumpus, no stench means none has;</li>
+ *     <li>A visited tile has no pit nor Wumpus;</li>
+ *     <li>There is exactly one Wumpus, the at most one encoded as a sequential counter.</li>
+ * </ul>
+ * The clauses of a tile are added the first time it is told, so the solver and everything it has
+ * learned are reused across the steps. A fact is proven when its negation has no solution, the
+ * proven facts are kept in the knowledge base since they never become false.
+ */
+class SatReasoner implements Reasoner {
+    private final KnowledgeBase kb;
+    private final Solver solver = new Solver();
+    private final int w, cells;
+    private final boolean[] told;
+    // The clauses version when each fact was last found unknown, per fact and tile
+    private final int[] unknown;
+    // The neighbors and the clause of a perception, reused by every tile told
+    private final int[] neighbors = new int[4];
+    private final int[] clause = new int[4];
+    private int version = 1;
+    private boolean scream = false;
+
+    /**
+     * The reasoner constructor.
+     *
+     * @param kb The knowledge base to derive the facts from and to
+     */
+    SatReasoner(KnowledgeBase kb) {
+        this.kb = kb;
+        w = kb.getWidth();
+        cells = w * kb.getHeight();
+        told = new boolean[cells];
+        unknown = new int[cells * 4];
+        for (int i = 0; i < cells * 2; i++) {
+            solver.newVar();
+        }
+
+        // At least one Wumpus
+        int[] any = new int[cells];
+        for (int i = 0; i < cells; i++) {
+            any[i] = wumpus(i);
+        }
+        solver.addClause(any);
+        // At most one Wumpus, each counter is true when some Wumpus is up to its tile
+        int previous = -1;
+        for (int i = 0; i < cells - 1; i++) {
+            int counter = solver.newVar() * 2;
+            solver.addClause(not(wumpus(i)), counter);
+            if (previous != -1) {
+                solver.addClause(not(previous), counter);
+                solver.addClause(not(wumpus(i)), not(previous));
+            }
+            previous = counter;
+        }
+        if (previous != -1) solver.addClause(not(wumpus(cells - 1)), not(previous));
+    }
+
+    public void tell(int x, int y) {
+        int index = x + y * w;
+        if (told[index]) return;
+        told[index] = true;
+        version++;
+
+        addUnit(not(pit(index)));
+        kb.set(KnowledgeBase.NOT_PIT, x, y, true);
+        addPerception(kb.isBreeze(x, y), x, y, true);
+        // The stench of a dead Wumpus is gone, so it tells nothing anymore
+        if (!scream) {
+            addUnit(not(wumpus(index)));
+            kb.set(KnowledgeBase.NOT_WUMPUS, x, y, true);
+            addPerception(kb.isStench(x, y), x, y, false);
+        }
+    }
+
+    public void setScream() {
+        scream = true;
+    }
+
+    public boolean isNotPit(int x, int y) {
+        return prove(KnowledgeBase.NOT_PIT, x, y, false);
+    }
+
+    public boolean isNotWumpus(int x, int y) {
+        return scream || prove(KnowledgeBase.NOT_WUMPUS, x, y, false);
+    }
+
+    public boolean isPit(int x, int y) {
+        return prove(KnowledgeBase.PIT, x, y, true);
+    }
+
+    public boolean isWumpus(int x, int y) {
+        return !scream && prove(KnowledgeBase.WUMPUS, x, y, true);
+    }
+
+    /**
+     * Adds the clauses of a breeze or stench felt, or not, at a tile.
+     *
+     * @param felt  Weather the perception was felt
+     * @param x     The tile X coordinate
+     * @param y     The tile Y coordinate
+     * @param isPit <tt>true</tt> for the breeze, <tt>false</tt> for the stench
+     */
+    private void addPerception(boolean felt, int x, int y, boolean isPit) {
+        int size = 0;
+        if (kb.isValid(x - 1, y)) neighbors[size++] = x - 1 + y * w;
+        if (kb.isValid(x + 1, y)) neighbors[size++] = x + 1 + y * w;
+        if (kb.isValid(x, y - 1)) neighbors[size++] = x + (y - 1) * w;
+        if (kb.isValid(x, y + 1)) neighbors[size++] = x + (y + 1) * w;
+
+        if (felt) {
+            for (int i = 0; i < size; i++) {
+                clause[i] = isPit ? pit(neighbors[i]) : wumpus(neighbors[i]);
+            }
+            solver.addClause(clause, size);
+        } else {
+            for (int i = 0; i < size; i++) {
+                addUnit(not(isPit ? pit(neighbors[i]) : wumpus(neighbors[i])));
+            }
+        }
+    }
+
+    /**
+     * Adds a clause of a single literal.
+     *
+     * @param literal The literal
+     */
+    private void addUnit(int literal) {
+        clause[0] = literal;
+        solver.addClause(clause, 1);
+    }
+
+    /**
+     * Returns weather the fact is implied by the clauses, remembering the answer until they change.
+     *
+     * @param fact     The fact
+     * @param x        The tile X coordinate
+     * @param y        The tile Y coordinate
+     * @param positive <tt>true</tt> to prove there is a danger, <tt>false</tt> to prove there is none
+     * @return <tt>true</tt> if proven
+     */
+    private boolean prove(int fact, int x, int y, boolean positive) {
+        if (!kb.isValid(x, y)) return false;
+        if (kb.get(fact, x, y)) return true;
+        int index = x + y * w;
+        int slot = (fact - KnowledgeBase.NOT_PIT) * cells + index;
+        if (unknown[slot] == version) return false;
+
+        boolean isPit = fact == KnowledgeBase.NOT_PIT || fact == KnowledgeBase.PIT;
+        int literal = isPit ? pit(index) : wumpus(index);
+        if (solver.isImplied(positive ? literal : not(literal))) {
+            kb.set(fact, x, y, true);
+            return true;
+        }
+        unknown[slot] = version;
+        return false;
+    }
+
+    private int pit(int index) {
+        return index * 2;
+    }
+
+    private int wumpus(int index) {
+        return (cells + index) * 2;
+    }
+
+    private static int not(int literal) {
+        return literal ^ 1;
+    }
+}
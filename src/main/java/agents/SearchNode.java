@@ -0,0 +1,165 @@
+package agents;
+
+import java.util.Arrays;
+
+/**
+ * A node of a Monte-Carlo search tree, for the moves played and the perceptions felt since the
+ * search started, see {@link Simulator}. It keeps the visits and the sum of the returns of each
+ * move, and the nodes that follow each move by the perceptions felt after it.
+ * <p>
+ * The node is shared by the threads of the search. A move chosen by a thread counts as a visit that
+ * lost the game until its return is known, the virtual loss, so the other threads spread to other
+ * moves instead of following the same path.
+ */
+class SearchNode {
+    // The returns are scaled to about one
+    private static final double SCALE = 1000;
+
+    private final int[] moves;
+    private final int[] visits;
+    private final int[] losses;
+    private final double[] values;
+    private int total = 0;
+
+    // The observations and nodes that follow each move
+    private final int[][] observations;
+    private final SearchNode[][] children;
+    private final int[] sizes;
+
+    /**
+     * The node constructor.
+     *
+     * @param moves The moves that can be played
+     * @param count The number of moves
+     */
+    SearchNode(int[] moves, int count) {
+        this.moves = Arrays.copyOf(moves, count);
+        visits = new int[count];
+        losses = new int[count];
+        values = new double[count];
+        observations = new int[count][];
+        children = new SearchNode[count][];
+        sizes = new int[count];
+    }
+
+    /**
+     * Returns the number of moves.
+     *
+     * @return The count
+     */
+    int getCount() {
+        return moves.length;
+    }
+
+    /**
+     * Returns a move.
+     *
+     * @param index The index of the move
+     * @return The move
+     */
+    int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Chooses the move to try by the upper confidence bound of its return, or a move never tried,
+     * and adds it a virtual loss.
+     *
+     * @param exploration The weight of the confidence bound
+     * @return The index of the move
+     */
+    synchronized int select(double exploration) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        double log = Math.log(total + 1);
+        for (int i = 0; i < moves.length; i++) {
+            int n = visits[i] + losses[i];
+            if (n == 0) {
+                best = i;
+                break;
+            }
+            double mean = (values[i] - losses[i] * SCALE) / n / SCALE;
+            double score = mean + exploration * Math.sqrt(log / n);
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        losses[best]++;
+        total++;
+        return best;
+    }
+
+    /**
+     * Adds the return of a move chosen, replacing its virtual loss.
+     *
+     * @param index The index of the move
+     * @param value The return
+     */
+    synchronized void update(int index, double value) {
+        losses[index]--;
+        visits[index]++;
+        values[index] += value;
+    }
+
+    /**
+     * Returns the node that follows a move by the perceptions felt after it.
+     *
+     * @param index       The index of the move
+     * @param observation The perceptions
+     * @return The node or null if not added
+     */
+    synchronized SearchNode getChild(int index, int observation) {
+        for (int i = 0; i < sizes[index]; i++) {
+            if (observations[index][i] == observation) return children[index][i];
+        }
+        return null;
+    }
+
+    /**
+     * Adds the node that follows a move by the perceptions felt after it, unless added already.
+     *
+     * @param index       The index of the move
+     * @param observation The perceptions
+     * @param moves       The moves that can be played at the node
+     * @param count       The number of moves
+     * @return The node
+     */
+    synchronized SearchNode addChild(int index, int observation, int[] moves, int count) {
+        SearchNode child = getChild(index, observation);
+        if (child != null) return child;
+        int size = sizes[index];
+        if (size == 0) {
+            observations[index] = new int[2];
+            children[index] = new SearchNode[2];
+        } else if (size == observations[index].length) {
+            observations[index] = Arrays.copyOf(observations[index], size * 2);
+            children[index] = Arrays.copyOf(children[index], size * 2);
+        }
+        child = new SearchNode(moves, count);
+        observations[index][size] = observation;
+        children[index][size] = child;
+        sizes[index] = size + 1;
+        return child;
+    }
+
+    /**
+     * Returns the number of returns added for a move.
+     *
+     * @param index The index of the move
+     * @return The visits
+     */
+    synchronized int getVisits(int index) {
+        return visits[index];
+    }
+
+    /**
+     * Returns the mean return of a move.
+     *
+     * @param index The index of the move
+     * @return The mean or zero if never visited
+     */
+    synchronized double getValue(int index) {
+        return visits[index] == 0 ? 0 : values[index] / visits[index];
+    }
+}
@@ -0,0 +1,530 @@
+package agents;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import wumpus.Environment;
+import wumpus.Environment.Action;
+import wumpus.Environment.Perception;
+
+/**
+ * A lightweight model of a game on a board drawn from a {@link Belief}, that takes the actions as
+ * the player does and scores them as the environment does, without the world and its listeners. The
+ * pits away from the breezes felt are drawn when first reached, so a board is set in constant time.
+ * <p>
+ * The search plays moves rather than single actions: entering a tile not visited by the shortest
+ * path through the visited ones, shooting a tile from the closest visited one around it, or
+ * exiting. The gold is grabbed as soon as the player steps on it, since the game ends when it is
+ * grabbed and there is no reason to wait. Each search thread has its own simulator.
+ */
+class Simulator {
+    /**
+     * The move that exits the game, the others are {@link #getEnter} and {@link #getShoot}.
+     */
+    static final int EXIT = -1;
+    // The offsets of the adjacent tiles, in the order of the directions
+    private static final int[][] NEIGHBORS = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
+    private static final int WIN = Environment.getScore(Action.GRAB) + 1000;
+    private static final int DEATH = -1000;
+    private static final int SCREAM = 1 << Perception.SCREAM.ordinal();
+    private static final int STENCH = 1 << Perception.STENCH.ordinal();
+    private static final int BREEZE = 1 << Perception.BREEZE.ordinal();
+
+    private final Belief belief;
+    private final KnowledgeBase kb;
+    private final int w, h;
+    private SplittableRandom random;
+    // The probability of a pit at the tiles not drawn with the board
+    private double prior;
+
+    // The board, the pits drawn so far are 1 and the tiles without are 0
+    private final IntTable pits = new IntTable();
+    private int wumpus = -1;
+    private int gold = -1;
+
+    // The player
+    private int tile;
+    private int direction;
+    private boolean arrow;
+    private boolean wumpusAlive;
+    private boolean scream;
+    // The tile shot without a scream by the simulated player
+    private int missed;
+    private boolean terminal;
+    private int observation;
+    // The tiles visited by the simulated player that were not visited by the real one
+    private final IntTable visited = new IntTable();
+
+    // The tiles reached by the searches of the paths and where they were reached from
+    private final IntTable parents = new IntTable();
+    private int[] queue = new int[64];
+
+    /**
+     * The simulator constructor.
+     *
+     * @param belief The observations of the real player
+     * @param kb     The knowledge base of the belief
+     */
+    Simulator(Belief belief, KnowledgeBase kb) {
+        this.belief = belief;
+        this.kb = kb;
+        w = kb.getWidth();
+        h = kb.getHeight();
+    }
+
+    /**
+     * Returns the move that enters a tile not visited.
+     *
+     * @param tile The tile as <tt>x + y * width</tt>
+     * @return The move
+     */
+    static int getEnter(int tile) {
+        return tile << 1;
+    }
+
+    /**
+     * Returns the move that shoots the arrow into a tile.
+     *
+     * @param tile The tile as <tt>x + y * width</tt>
+     * @return The move
+     */
+    static int getShoot(int tile) {
+        return tile << 1 | 1;
+    }
+
+    /**
+     * Removes the elements of the board, to draw a new one with the random generator.
+     *
+     * @param random The random generator
+     * @param prior  The probability of a pit at the tiles not drawn, when first reached
+     */
+    void clearBoard(SplittableRandom random, double prior) {
+        this.random = random;
+        this.prior = prior;
+        pits.clear();
+        wumpus = -1;
+        gold = -1;
+    }
+
+    void setWumpus(int tile) {
+        wumpus = tile;
+        if (tile != -1) pits.put(tile, 0);
+    }
+
+    int getWumpus() {
+        return wumpus;
+    }
+
+    void setGold(int tile) {
+        gold = tile;
+        if (tile != -1) pits.put(tile, 0);
+    }
+
+    void setPit(int tile, boolean value) {
+        pits.put(tile, value ? 1 : 0);
+    }
+
+    /**
+     * Returns weather the tile has a pit, drawing it if it was not yet.
+     *
+     * @param tile The tile as <tt>x + y * width</tt>
+     * @return <tt>true</tt> if has a pit
+     */
+    boolean isPit(int tile) {
+        int value = pits.get(tile, -1);
+        if (value == -1) {
+            value = prior > 0 && !belief.isNotPit(tile) && random.nextDouble() < prior ? 1 : 0;
+            pits.put(tile, value);
+        }
+        return value == 1;
+    }
+
+    /**
+     * Places the player as the real one is.
+     *
+     * @param tile      The tile of the player
+     * @param direction The direction ordinal
+     * @param arrow     Weather the player has the arrow
+     */
+    void start(int tile, int direction, boolean arrow) {
+        this.tile = tile;
+        this.direction = direction;
+        this.arrow = arrow;
+        wumpusAlive = wumpus != -1;
+        scream = false;
+        missed = -1;
+        terminal = false;
+        observation = 0;
+        visited.clear();
+    }
+
+    /**
+     * Returns weather the game has ended.
+     *
+     * @return <tt>true</tt> if ended
+     */
+    boolean isTerminal() {
+        return terminal;
+    }
+
+    /**
+     * Returns the perceptions after the last move, as a mask of the perception ordinals.
+     *
+     * @return The observation
+     */
+    int getObservation() {
+        return observation;
+    }
+
+    /**
+     * Lists the moves worth trying from what the simulated player knows, so the same for the same
+     * moves and perceptions: exiting, entering the tiles not visited next to the visited ones that
+     * are not surely deadly, only the surely free ones if any, and shooting the tiles that may have
+     * the Wumpus next to a stench.
+     *
+     * @param out The moves, with room for one more than twice the tiles
+     * @return The number of moves
+     */
+    int getMoves(int[] out) {
+        int count = 0;
+        out[count++] = EXIT;
+        boolean safe = false;
+        for (int t = 0; t < w * h; t++) {
+            if (isVisited(t) || !isNextTo(t, 0)) continue;
+            double risk = getRisk(t);
+            if (risk >= 1 || safe && risk > 0) continue;
+            if (!safe && risk == 0) {
+                // The risky ones are dropped once a surely free one is found
+                safe = true;
+                count = 1;
+            }
+            out[count++] = getEnter(t);
+        }
+        if (arrow && !isKilled()) {
+            for (int t = 0; t < w * h; t++) {
+                if (!isVisited(t) && !isNotWumpus(t) && isNextTo(t, STENCH)) out[count++] = getShoot(t);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Plays a move.
+     *
+     * @param move The move
+     * @return The sum of the scores of the actions taken
+     */
+    int play(int move) {
+        if (move == EXIT) return step(Action.EXIT);
+        int target = move >> 1;
+        if ((move & 1) == 0) {
+            return findPath(target, false) == -1 ? step(Action.EXIT) : walk(target);
+        }
+        int from = findPath(target, true);
+        if (from == -1) return step(Action.EXIT);
+        int total = walk(from);
+        total += face(getDirection(from, target));
+        total += step(Action.SHOOT_ARROW);
+        if (observation != SCREAM) missed = target;
+        return total;
+    }
+
+    /**
+     * Plays the rest of the game with a cautious policy: goes to the closest tile not visited that
+     * is surely free from what was felt so far, really or simulated, or otherwise to the least
+     * risky one if its risk is low enough, and exits when it is not.
+     *
+     * @param maxMoves The most tiles entered
+     * @param maxRisk  The highest probability of a danger taken when no tile is surely free
+     * @return The sum of the scores of the actions taken
+     */
+    int rollout(int maxMoves, double maxRisk) {
+        int total = 0;
+        for (int move = 0; move < maxMoves && !terminal; move++) {
+            int target = findTarget(maxRisk);
+            if (target == -1) return total + step(Action.EXIT);
+            total += walk(target);
+        }
+        return total;
+    }
+
+    /**
+     * Takes an action as the player does.
+     */
+    private int step(Action action) {
+        int reward = Environment.getScore(action);
+        observation = 0;
+        switch (action) {
+            case GO_FORWARD:
+                int neighbor = getNeighbor(tile, direction);
+                if (neighbor == -1) break;
+                tile = neighbor;
+                if (tile == wumpus && wumpusAlive || isPit(tile)) {
+                    terminal = true;
+                    return reward + DEATH;
+                }
+                if (tile == gold) {
+                    terminal = true;
+                    return reward + WIN;
+                }
+                if (!kb.isVisited(tile % w, tile / w)) visited.put(tile, 1);
+                observation = getPerceptions(tile);
+                break;
+            case TURN_LEFT:
+                direction = (direction + 3) & 3;
+                break;
+            case TURN_RIGHT:
+                direction = (direction + 1) & 3;
+                break;
+            case SHOOT_ARROW:
+                if (arrow) {
+                    arrow = false;
+                    if (wumpusAlive && getNeighbor(tile, direction) == wumpus) {
+                        wumpusAlive = false;
+                        scream = true;
+                        observation = SCREAM;
+                    }
+                }
+                break;
+            case EXIT:
+                terminal = true;
+                break;
+            default:
+                break;
+        }
+        return reward;
+    }
+
+    /**
+     * Searches from the player, through the visited tiles, the closest tile not visited that is
+     * surely free, or else the least risky one below the highest risk. Fills the parents to walk the
+     * path found.
+     */
+    private int findTarget(double maxRisk) {
+        parents.clear();
+        parents.put(tile, tile);
+        int head = 0, tail = 0;
+        queue[tail++] = tile;
+        int best = -1;
+        double bestRisk = maxRisk;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int d = 0; d < 4; d++) {
+                int neighbor = getNeighbor(current, d);
+                if (neighbor == -1 || parents.contains(neighbor)) continue;
+                if (isVisited(neighbor)) {
+                    parents.put(neighbor, current);
+                    tail = push(tail, neighbor);
+                    continue;
+                }
+                double risk = getRisk(neighbor);
+                if (risk == 0) {
+                    parents.put(neighbor, current);
+                    return neighbor;
+                }
+                if (risk < bestRisk) {
+                    parents.put(neighbor, current);
+                    best = neighbor;
+                    bestRisk = risk;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Searches from the player, through the visited tiles, the target or else the closest visited
+     * tile next to it. Fills the parents to walk the path found.
+     *
+     * @return The tile reached or -1 if none
+     */
+    private int findPath(int target, boolean nextTo) {
+        parents.clear();
+        parents.put(tile, tile);
+        if (nextTo && isAdjacent(tile, target)) return tile;
+        int head = 0, tail = 0;
+        queue[tail++] = tile;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int d = 0; d < 4; d++) {
+                int neighbor = getNeighbor(current, d);
+                if (neighbor == -1 || parents.contains(neighbor)) continue;
+                if (!nextTo && neighbor == target) {
+                    parents.put(neighbor, current);
+                    return neighbor;
+                }
+                if (!isVisited(neighbor)) continue;
+                parents.put(neighbor, current);
+                if (nextTo && isAdjacent(neighbor, target)) return neighbor;
+                tail = push(tail, neighbor);
+            }
+        }
+        return -1;
+    }
+
+    private int push(int tail, int tile) {
+        if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+        queue[tail] = tile;
+        return tail + 1;
+    }
+
+    /**
+     * Walks the path found to the target, turning the least to each tile.
+     */
+    private int walk(int target) {
+        // The path is found backwards from the target, so it is laid out at the start of the queue
+        int length = 0;
+        for (int t = target; t != tile; t = parents.get(t, tile)) length++;
+        if (queue.length < length) queue = Arrays.copyOf(queue, length);
+        int i = length;
+        for (int t = target; t != tile; t = parents.get(t, tile)) queue[--i] = t;
+
+        int total = 0;
+        for (i = 0; i < length && !terminal; i++) {
+            total += face(getDirection(tile, queue[i]));
+            total += step(Action.GO_FORWARD);
+        }
+        return total;
+    }
+
+    /**
+     * Turns to a direction by the shortest side.
+     */
+    private int face(int to) {
+        int turns = (to - direction) & 3;
+        if (turns == 3) return step(Action.TURN_LEFT);
+        int total = 0;
+        for (int k = 0; k < turns; k++) {
+            total += step(Action.TURN_RIGHT);
+        }
+        return total;
+    }
+
+    private int getDirection(int from, int to) {
+        return to == from - w ? 0 : to == from + 1 ? 1 : to == from + w ? 2 : 3;
+    }
+
+    private int getNeighbor(int tile, int direction) {
+        int x = tile % w + NEIGHBORS[direction][0];
+        int y = tile / w + NEIGHBORS[direction][1];
+        return kb.isValid(x, y) ? x + y * w : -1;
+    }
+
+    private boolean isAdjacent(int a, int b) {
+        return Math.abs(a % w - b % w) + Math.abs(a / w - b / w) == 1;
+    }
+
+    private boolean isVisited(int tile) {
+        return kb.isVisited(tile % w, tile / w) || visited.contains(tile);
+    }
+
+    /**
+     * Returns weather the Wumpus is known to be dead, by the real scream or the simulated one.
+     */
+    private boolean isKilled() {
+        return scream || belief.isScream();
+    }
+
+    /**
+     * Returns weather a visited tile around the tile felt all the perceptions of the mask.
+     */
+    private boolean isNextTo(int tile, int mask) {
+        for (int d = 0; d < 4; d++) {
+            int neighbor = getNeighbor(tile, d);
+            if (neighbor != -1 && isVisited(neighbor) && (getFelt(neighbor) & mask) == mask) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the breeze and stench felt at a visited tile, really or simulated.
+     */
+    private int getFelt(int tile) {
+        int x = tile % w, y = tile / w;
+        if (kb.isVisited(x, y)) return (kb.isBreeze(x, y) ? BREEZE : 0) | (kb.isStench(x, y) ? STENCH : 0);
+        return getPerceptions(tile);
+    }
+
+    /**
+     * Returns the breeze and stench at a tile of the board.
+     */
+    private int getPerceptions(int tile) {
+        int mask = 0;
+        for (int d = 0; d < 4; d++) {
+            int neighbor = getNeighbor(tile, d);
+            if (neighbor == -1) continue;
+            if (neighbor == wumpus && wumpusAlive) mask |= STENCH;
+            if (isPit(neighbor)) mask |= BREEZE;
+        }
+        return mask;
+    }
+
+    /**
+     * Estimates the probability of a danger at a tile not visited from what was felt around,
+     * really or simulated: each breeze or stench may be from any tile around it not known free, and
+     * a tile away from them has the prior risk.
+     */
+    private double getRisk(int tile) {
+        boolean notPit = isNotPit(tile);
+        boolean notWumpus = isKilled() || isNotWumpus(tile);
+        if (notPit && notWumpus) return 0;
+        double density = belief.getDensity();
+        double pit = notPit ? 0 : density;
+        double wumpus = notWumpus ? 0 : 1.0 / (w * h);
+        for (int d = 0; d < 4; d++) {
+            int neighbor = getNeighbor(tile, d);
+            if (neighbor == -1 || !isVisited(neighbor)) continue;
+            int felt = getFelt(neighbor);
+            if (!notPit && (felt & BREEZE) != 0) {
+                // The chance of a pit at the tile given at least one around the breeze
+                int count = countAround(neighbor, true);
+                pit = Math.max(pit, density / (1 - Math.pow(1 - density, count)));
+            }
+            if (!notWumpus && (felt & STENCH) != 0) {
+                wumpus = Math.max(wumpus, 1.0 / countAround(neighbor, false));
+            }
+        }
+        return 1 - (1 - pit) * (1 - wumpus);
+    }
+
+    /**
+     * Returns the number of tiles around a visited one that may have a pit, or the Wumpus.
+     */
+    private int countAround(int tile, boolean pit) {
+        int count = 0;
+        for (int d = 0; d < 4; d++) {
+            int neighbor = getNeighbor(tile, d);
+            if (neighbor != -1 && !(pit ? isNotPit(neighbor) : isNotWumpus(neighbor))) count++;
+        }
+        return Math.max(1, count);
+    }
+
+    /**
+     * Returns weather the tile surely has no pit, from the real perceptions or the simulated ones.
+     */
+    private boolean isNotPit(int tile) {
+        return belief.isNotPit(tile) || isClearedBy(tile, BREEZE);
+    }
+
+    /**
+     * Returns weather the tile surely has no Wumpus, from the real perceptions or the simulated ones.
+     */
+    private boolean isNotWumpus(int tile) {
+        return belief.isNotWumpus(tile) || tile == missed || isClearedBy(tile, STENCH);
+    }
+
+    /**
+     * Returns weather the tile or a tile around it was visited by the simulated player, without
+     * feeling the perception there.
+     */
+    private boolean isClearedBy(int tile, int perception) {
+        if (visited.contains(tile)) return true;
+        for (int d = 0; d < 4; d++) {
+            int neighbor = getNeighbor(tile, d);
+            if (neighbor != -1 && visited.contains(neighbor) && (getPerceptions(neighbor) & perception) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
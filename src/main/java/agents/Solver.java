@@ -0,0 +1,464 @@
+package agents;
+
+import java.util.Arrays;
+
+/**
+ * A small incremental CDCL SAT solver. Each clause is watched by two literals, conflicts are
+ * analysed to the first unique implication point and learned as new clauses with non chronological
+ * backjumping, decisions follow the variable activity with saved phases, and satisfiability can be
+ * checked under assumptions. Clauses may be added between the solves, everything learned is kept.
+ * <p>
+ * The variables are numbered from 0 and the literals are <tt>2 * var</tt> when positive and
+ * <tt>2 * var + 1</tt> when negated.
+ */
+class Solver {
+    private static final byte UNDEF = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+    private static final double DECAY = 1 / 0.95;
+    private static final int RESTART = 100;
+
+    private int vars = 0;
+    // The value of each literal, both polarities are kept to avoid the sign tests
+    private byte[] values = new byte[0];
+    private int[] levels = new int[0];
+    private int[] reasons = new int[0];
+    private boolean[] phases = new boolean[0];
+    private boolean[] seen = new boolean[0];
+    private boolean[] model = new boolean[0];
+    private boolean hasModel = false;
+
+    private int[] trail = new int[0];
+    private int trailSize = 0;
+    private int head = 0;
+    private int[] limits = new int[16];
+    private int level = 0;
+
+    private int[][] clauses = new int[64][];
+    private int clauseCount = 0;
+    private int[][] watches = new int[0][];
+    private int[] watchSizes = new int[0];
+
+    private double[] activity = new double[0];
+    private double increment = 1;
+    private int[] heap = new int[0];
+    private int[] heapIndex = new int[0];
+    private int heapSize = 0;
+
+    private int[] learnt = new int[16];
+    // The clause being added and the assumption being refuted, so neither allocates
+    private int[] added = new int[16];
+    private final int[] refuted = new int[1];
+    private boolean unsat = false;
+
+    /**
+     * Creates a new variable.
+     *
+     * @return The variable number
+     */
+    int newVar() {
+        int var = vars++;
+        if (var == levels.length) {
+            int capacity = Math.max(16, var * 2);
+            values = Arrays.copyOf(values, capacity * 2);
+            levels = Arrays.copyOf(levels, capacity);
+            reasons = Arrays.copyOf(reasons, capacity);
+            phases = Arrays.copyOf(phases, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            model = Arrays.copyOf(model, capacity);
+            trail = Arrays.copyOf(trail, capacity);
+            watches = Arrays.copyOf(watches, capacity * 2);
+            watchSizes = Arrays.copyOf(watchSizes, capacity * 2);
+            activity = Arrays.copyOf(activity, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            heapIndex = Arrays.copyOf(heapIndex, capacity);
+        }
+        watches[var * 2] = new int[4];
+        watches[var * 2 + 1] = new int[4];
+        heapIndex[var] = -1;
+        insert(var);
+        // A new variable is free in the last model, so it stays a model
+        return var;
+    }
+
+    /**
+     * Returns the number of variables.
+     *
+     * @return The number of variables
+     */
+    int getVars() {
+        return vars;
+    }
+
+    /**
+     * Returns the number of clauses kept, either added or learned.
+     *
+     * @return The number of clauses
+     */
+    int getClauses() {
+        return clauseCount;
+    }
+
+    /**
+     * Returns weather the clauses added so far have no solution at all.
+     *
+     * @return <tt>true</tt> if unsatisfiable
+     */
+    boolean isUnsat() {
+        return unsat;
+    }
+
+    /**
+     * Adds a clause, it must be called between the solves.
+     *
+     * @param literals The clause literals
+     */
+    void addClause(int... literals) {
+        addClause(literals, literals.length);
+    }
+
+    /**
+     * Adds the first literals of an array as a clause, it must be called between the solves. The
+     * array is not kept, so it can be reused, and only the clauses of two literals or more are
+     * copied to be kept.
+     *
+     * @param literals The clause literals
+     * @param count    The number of literals
+     */
+    void addClause(int[] literals, int count) {
+        if (unsat) return;
+        if (count > added.length) added = new int[Math.max(count, added.length * 2)];
+        int[] clause = added;
+        System.arraycopy(literals, 0, clause, 0, count);
+        Arrays.sort(clause, 0, count);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int literal = clause[i];
+            // Satisfied clauses and tautologies are useless
+            if (values[literal] == TRUE || (size > 0 && clause[size - 1] == (literal ^ 1))) return;
+            if (values[literal] == FALSE || (size > 0 && clause[size - 1] == literal)) continue;
+            clause[size++] = literal;
+        }
+        if (hasModel && !isSatisfied(clause, size)) hasModel = false;
+        if (size == 0) {
+            unsat = true;
+        } else if (size == 1) {
+            assign(clause[0], -1);
+            if (propagate() != -1) unsat = true;
+        } else {
+            attach(Arrays.copyOf(clause, size));
+        }
+    }
+
+    /**
+     * Returns weather the literal holds in every solution of the clauses. When the clauses have no
+     * solution nothing is implied, so an inconsistent knowledge proves nothing.
+     *
+     * @param literal The literal
+     * @return <tt>true</tt> if implied
+     */
+    boolean isImplied(int literal) {
+        if (unsat) return false;
+        if (values[literal] != UNDEF) return values[literal] == TRUE;
+        // The last solution may already be a counterexample
+        if (hasModel && model[literal >> 1] == ((literal & 1) == 1)) return false;
+        refuted[0] = literal ^ 1;
+        return !solve(refuted) && !unsat;
+    }
+
+    /**
+     * Returns weather the clauses have a solution where all the assumptions hold.
+     *
+     * @param assumptions The assumed literals
+     * @return <tt>true</tt> if satisfiable
+     */
+    boolean solve(int... assumptions) {
+        if (unsat) return false;
+        int conflicts = 0;
+        int restart = RESTART;
+        while (true) {
+            int conflict = propagate();
+            if (conflict != -1) {
+                if (level == 0) {
+                    unsat = true;
+                    return false;
+                }
+                learn(conflict);
+                increment *= DECAY;
+                conflicts++;
+                continue;
+            }
+            if (conflicts >= restart) {
+                conflicts = 0;
+                restart += restart >> 1;
+                backtrack(0);
+            }
+            int next = -1;
+            while (level < assumptions.length) {
+                int assumption = assumptions[level];
+                if (values[assumption] == FALSE) {
+                    backtrack(0);
+                    return false;
+                }
+                if (values[assumption] == UNDEF) {
+                    next = assumption;
+                    break;
+                }
+                // Already holds, keep the decision levels aligned with the assumptions
+                newLevel();
+            }
+            if (next == -1) next = decide();
+            if (next == -1) {
+                for (int var = 0; var < vars; var++) {
+                    model[var] = values[var * 2] == TRUE;
+                }
+                hasModel = true;
+                backtrack(0);
+                return true;
+            }
+            newLevel();
+            assign(next, -1);
+        }
+    }
+
+    /**
+     * Returns weather some literal of the clause holds in the last model.
+     */
+    private boolean isSatisfied(int[] clause, int size) {
+        for (int i = 0; i < size; i++) {
+            if (model[clause[i] >> 1] == ((clause[i] & 1) == 0)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the clause and watches its first two literals.
+     *
+     * @param clause The clause literals
+     * @return The clause number
+     */
+    private int attach(int[] clause) {
+        if (clauseCount == clauses.length) clauses = Arrays.copyOf(clauses, clauseCount * 2);
+        int index = clauseCount++;
+        clauses[index] = clause;
+        watch(clause[0], index);
+        watch(clause[1], index);
+        return index;
+    }
+
+    private void watch(int literal, int clause) {
+        int size = watchSizes[literal];
+        if (size == watches[literal].length) {
+            watches[literal] = Arrays.copyOf(watches[literal], size * 2);
+        }
+        watches[literal][size] = clause;
+        watchSizes[literal] = size + 1;
+    }
+
+    private void assign(int literal, int reason) {
+        int var = literal >> 1;
+        values[literal] = TRUE;
+        values[literal ^ 1] = FALSE;
+        levels[var] = level;
+        reasons[var] = reason;
+        trail[trailSize++] = literal;
+    }
+
+    private void newLevel() {
+        if (level + 1 == limits.length) limits = Arrays.copyOf(limits, limits.length * 2);
+        limits[++level] = trailSize;
+    }
+
+    /**
+     * Assigns the literals implied by the clauses until a fix point or a conflict.
+     *
+     * @return The conflicting clause or -1 if none
+     */
+    private int propagate() {
+        while (head < trailSize) {
+            int falsified = trail[head++] ^ 1;
+            int[] watching = watches[falsified];
+            int size = watchSizes[falsified];
+            int i = 0, j = 0;
+            while (i < size) {
+                int index = watching[i++];
+                int[] clause = clauses[index];
+                // Keep the falsified literal as the second one
+                if (clause[0] == falsified) {
+                    clause[0] = clause[1];
+                    clause[1] = falsified;
+                }
+                if (values[clause[0]] == TRUE) {
+                    watching[j++] = index;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < clause.length; k++) {
+                    if (values[clause[k]] != FALSE) {
+                        clause[1] = clause[k];
+                        clause[k] = falsified;
+                        watch(clause[1], index);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) continue;
+                watching[j++] = index;
+                if (values[clause[0]] == FALSE) {
+                    while (i < size) {
+                        watching[j++] = watching[i++];
+                    }
+                    watchSizes[falsified] = j;
+                    head = trailSize;
+                    return index;
+                }
+                assign(clause[0], index);
+            }
+            watchSizes[falsified] = j;
+        }
+        return -1;
+    }
+
+    /**
+     * Learns the first unique implication point clause of the conflict and backjumps to where it
+     * becomes unit.
+     *
+     * @param conflict The conflicting clause
+     */
+    private void learn(int conflict) {
+        int size = 1;
+        int pending = 0;
+        int literal = -1;
+        int index = trailSize - 1;
+        int reason = conflict;
+        do {
+            int[] clause = clauses[reason];
+            for (int k = literal == -1 ? 0 : 1; k < clause.length; k++) {
+                int var = clause[k] >> 1;
+                if (seen[var] || levels[var] == 0) continue;
+                seen[var] = true;
+                bump(var);
+                if (levels[var] == level) {
+                    pending++;
+                } else {
+                    if (size == learnt.length) learnt = Arrays.copyOf(learnt, size * 2);
+                    learnt[size++] = clause[k];
+                }
+            }
+            while (!seen[trail[index] >> 1]) index--;
+            literal = trail[index--];
+            reason = reasons[literal >> 1];
+            seen[literal >> 1] = false;
+            pending--;
+        } while (pending > 0);
+        learnt[0] = literal ^ 1;
+
+        // Backjump to the second highest level of the clause, which is watched next
+        int jump = 0;
+        for (int i = 1; i < size; i++) {
+            seen[learnt[i] >> 1] = false;
+            if (levels[learnt[i] >> 1] > levels[learnt[1] >> 1]) {
+                int swap = learnt[1];
+                learnt[1] = learnt[i];
+                learnt[i] = swap;
+            }
+        }
+        if (size > 1) jump = levels[learnt[1] >> 1];
+        backtrack(jump);
+        if (size == 1) {
+            assign(learnt[0], -1);
+        } else {
+            assign(learnt[0], attach(Arrays.copyOf(learnt, size)));
+        }
+    }
+
+    /**
+     * Undoes the assignments above the given level, saving their phases.
+     *
+     * @param target The decision level to keep
+     */
+    private void backtrack(int target) {
+        if (level <= target) return;
+        for (int i = trailSize - 1; i >= limits[target + 1]; i--) {
+            int literal = trail[i];
+            int var = literal >> 1;
+            phases[var] = (literal & 1) == 0;
+            values[literal] = UNDEF;
+            values[literal ^ 1] = UNDEF;
+            insert(var);
+        }
+        trailSize = limits[target + 1];
+        head = trailSize;
+        level = target;
+    }
+
+    /**
+     * Returns the saved phase of the most active unassigned variable.
+     *
+     * @return The literal to decide or -1 if all are assigned
+     */
+    private int decide() {
+        while (heapSize > 0) {
+            int var = pop();
+            if (values[var * 2] == UNDEF) return phases[var] ? var * 2 : var * 2 + 1;
+        }
+        return -1;
+    }
+
+    private void bump(int var) {
+        activity[var] += increment;
+        if (activity[var] > 1e100) {
+            for (int i = 0; i < vars; i++) {
+                activity[i] *= 1e-100;
+            }
+            increment *= 1e-100;
+        }
+        if (heapIndex[var] != -1) up(heapIndex[var]);
+    }
+
+    private void insert(int var) {
+        if (heapIndex[var] != -1) return;
+        heap[heapSize] = var;
+        heapIndex[var] = heapSize;
+        up(heapSize++);
+    }
+
+    private int pop() {
+        int var = heap[0];
+        heapIndex[var] = -1;
+        if (--heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            down(0);
+        }
+        return var;
+    }
+
+    private void up(int i) {
+        int var = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (activity[heap[parent]] >= activity[var]) break;
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = var;
+        heapIndex[var] = i;
+    }
+
+    private void down(int i) {
+        int var = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) child++;
+            if (activity[heap[child]] <= activity[var]) break;
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = var;
+        heapIndex[var] = i;
+    }
+}
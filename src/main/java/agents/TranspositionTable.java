@@ -0,0 +1,117 @@
+package agents;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import wumpus.Environment.Action;
+
+/**
+ * Keeps the plans decided by the agents by the hash of what they knew when deciding, so an agent
+ * that knows the same again, in a loop or in another game with a similar opening, takes the plan
+ * without reasoning. It has a fixed number of slots, each plan replacing the one at its slot, and
+ * it can be shared by the agents of every thread without locks.
+ * <p>
+ * Each slot keeps the plan and the plan mixed with the hash by an exclusive or, as in the lockless
+ * tables of the chess engines, so a slot half written by another thread, or taken by another hash,
+ * fails the check instead of returning a wrong plan. The plans are kept as the 3-bit ordinals of up
+ * to {@link #MAX_ACTIONS} actions, the longer ones are not kept.
+ */
+public class TranspositionTable {
+    /**
+     * The longest plan kept.
+     */
+    public static final int MAX_ACTIONS = 19;
+    private static final int LENGTH_BITS = 5;
+    private static final int ACTION_BITS = 3;
+    private static final Action[] ACTIONS = Action.values();
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The transposition table constructor.
+     *
+     * @param capacity The number of plans kept, rounded up to a power of two
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity < 1 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^29.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        slots = new AtomicLongArray(size * 2);
+        mask = size - 1;
+    }
+
+    /**
+     * Queues the plan kept for a hash.
+     *
+     * @param hash The hash of the knowledge
+     * @param out  The queue of the plan actions
+     * @return <tt>true</tt> if there was a plan
+     */
+    boolean get(long hash, ActionQueue out) {
+        int slot = (int) hash & mask;
+        long plan = slots.get(slot * 2 + 1);
+        long check = slots.get(slot * 2);
+        if (plan == 0 || (check ^ plan) != hash) {
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        int length = (int) (plan & ((1 << LENGTH_BITS) - 1));
+        for (int i = 0; i < length; i++) {
+            out.add(ACTIONS[(int) (plan >>> (LENGTH_BITS + i * ACTION_BITS)) & ((1 << ACTION_BITS) - 1)]);
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the plan queued for a hash, unless too long.
+     *
+     * @param hash The hash of the knowledge
+     * @param in   The queue of the plan actions
+     */
+    void put(long hash, ActionQueue in) {
+        int length = in.size();
+        if (length == 0 || length > MAX_ACTIONS) return;
+        long plan = length;
+        for (int i = 0; i < length; i++) {
+            plan |= (long) in.get(i).ordinal() << (LENGTH_BITS + i * ACTION_BITS);
+        }
+        int slot = (int) hash & mask;
+        slots.set(slot * 2, hash ^ plan);
+        slots.set(slot * 2 + 1, plan);
+    }
+
+    /**
+     * Returns the number of plans found.
+     *
+     * @return The hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of plans not found, which were decided.
+     *
+     * @return The misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Forgets every plan kept and the hits and misses so far.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, 0);
+        }
+        hits.reset();
+        misses.reset();
+    }
+}
@@ -24,4 +24,11 @@ public interface Agent {
      * @param player The player instance
      */
     void afterAction(Player player);
+
+    /**
+     * Executes when an action decided was discarded, since the agent was late and the fallback of the
+     * {@link Deadline} was taken instead, before the agent is asked again. The actions planned after
+     * the discarded one must be dropped too, since the player may not be where they were planned.
+     */
+    void discardActions();
 }
@@ -0,0 +1,183 @@
+package wumpus;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Result;
+
+/**
+ * Plays many agents at once on the same board, each one with its own player, see
+ * {@link World#addPlayer}. The players share the dangers and the gold, so the first one to grab
+ * it is the only winner, and a Wumpus killed by one is dead for all.
+ * <p>
+ * The game is played in steps, and at each one:
+ * <ol>
+ *     <li>Every agent decides its action at once across all cores, while the board stays still;</li>
+ *     <li>The arrows are shot and the gold grabbed, one player at a time in an order that rotates
+ *         at each step, so the conflicts are resolved the same way no matter the threads;</li>
+ *     <li>Every other action is taken at once across all cores, the players moving freely and
+ *         sharing the tiles, after the Wumpus killed in the step are gone.</li>
+ * </ol>
+ * A player stops playing when it dies, wins or exits, and the game ends when all have stopped or
+ * after the maximum steps of the world. The world must keep the bitboard storage, whose layers
+ * the moving players read without locks while the hunter marks change.
+ * <p>
+ * The {@link GameListener} events follow a single player, so a world with listeners can only
+ * play an arena of one agent; e.g. a {@link TraceRecorder} could not replay the moves of a player
+ * on a board changed by the others.
+ */
+public class Arena {
+    private static final int PLAYERS_PER_TASK = 64;
+
+    private final World world;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // The state of the game being played
+    private Agent[] agents;
+    private Action[] actions;
+    private boolean[] playing;
+
+    /**
+     * Creates an arena on a world.
+     * @param world The world instance with the bitboard storage
+     */
+    public Arena(World world) {
+        if (world.getStorage() != World.Storage.BITBOARD) {
+            throw new IllegalArgumentException("The arena needs a world with the bitboard storage.");
+        }
+        this.world = world;
+    }
+
+    /**
+     * Sets the number of threads playing the agents, defaults to the available processors.
+     * @param value
+     */
+    public void setParallelism(int value) {
+        parallelism = value;
+    }
+
+    /**
+     * Returns the world of the arena.
+     * @return The world instance
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Plays a game on a new board with an agent for each player, adding the players needed. The
+     * outcome of each player can be found at the world afterwards.
+     * @param agents The agents, one for each player
+     * @return The statistics of all the players
+     * @throws InterruptedException When the board cannot be generated
+     * @throws IllegalStateException When the world has listeners and many agents
+     */
+    public Tournament.Stats play(List<? extends Agent> agents) throws InterruptedException {
+        while (world.getPlayerCount() < agents.size()) world.addPlayer();
+        if (world.getPlayerCount() != agents.size()) {
+            throw new IllegalArgumentException("There must be an agent for each player.");
+        }
+        if (agents.size() > 1 && world.getListeners().length > 0) {
+            throw new IllegalStateException("The listeners follow a single player, not an arena of many.");
+        }
+        int count = agents.size();
+        this.agents = agents.toArray(new Agent[count]);
+        actions = new Action[count];
+        playing = new boolean[count];
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            world.reset();
+            world.prepareMoves();
+            GameListener[] listeners = world.getListeners();
+            for (GameListener listener : listeners) listener.onEpisodeStart(world);
+
+            int active = count;
+            Arrays.fill(playing, true);
+            for (int step = 0; step < world.getMaxSteps() && active > 0; step++) {
+                pool.invoke(new Phase(0, count, true));
+                // The conflicting actions, one player at a time
+                for (int k = 0; k < count; k++) {
+                    int i = (step + k) % count;
+                    if (playing[i] && isConflicting(actions[i])) world.getPlayer(i).setAction(actions[i]);
+                }
+                pool.invoke(new Phase(0, count, false));
+                world.modified();
+
+                for (int i = 0; i < count; i++) {
+                    if (!playing[i]) continue;
+                    Player player = world.getPlayer(i);
+                    for (GameListener listener : listeners) listener.onStep(player, actions[i]);
+                    if (player.isDead()) {
+                        for (GameListener listener : listeners) listener.onDeath(player);
+                    } else if (world.getResult(player) == Result.WIN) {
+                        for (GameListener listener : listeners) listener.onWin(player);
+                    }
+                    if (player.isDead() || player.hasGold() || actions[i] == Action.EXIT) {
+                        playing[i] = false;
+                        active--;
+                    }
+                }
+            }
+
+            Result result = world.getResult();
+            for (GameListener listener : listeners) listener.onEpisodeEnd(world, result);
+        } finally {
+            pool.shutdown();
+            this.agents = null;
+        }
+
+        Tournament.Stats stats = new Tournament.Stats();
+        for (int i = 0; i < count; i++) {
+            Player player = world.getPlayer(i);
+            stats.add(player, world.getResult(player));
+        }
+        return stats;
+    }
+
+    /**
+     * Returns weather the action changes the board shared by the players.
+     */
+    private static boolean isConflicting(Action action) {
+        return action == Action.GRAB || action == Action.SHOOT_ARROW;
+    }
+
+    /**
+     * A range of players that is split until small enough to be played by a single thread, either
+     * deciding their actions or taking the ones that do not conflict.
+     */
+    private class Phase extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+        private final boolean decide;
+
+        Phase(int from, int to, boolean decide) {
+            this.from = from;
+            this.to = to;
+            this.decide = decide;
+        }
+
+        protected void compute() {
+            if (to - from > PLAYERS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Phase(from, middle, decide), new Phase(middle, to, decide));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (!playing[i]) continue;
+                Player player = world.getPlayer(i);
+                if (decide) {
+                    agents[i].beforeAction(player);
+                    actions[i] = agents[i].getAction(player);
+                } else {
+                    // The world is marked as changed once for all of them
+                    if (!isConflicting(actions[i])) player.take(actions[i]);
+                    agents[i].afterAction(player);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package wumpus;
+
+import java.util.Arrays;
+
+/**
+ * Packed storage of the board where each layer is a bit set indexed by the tile linear position.
+ * A layer usually maps to the ordinal of an environment enum, e.g. {@link Environment.Element}.
+ * <p>
+ * The layers are split in pages of 4096 tiles that can be shared between boards, a page is only
+ * copied when some of them writes on it (copy-on-write), so forking a board does not depend on its
+ * size but on the pages changed afterwards.
+ */
+class Bitboard {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_WORDS = 1 << (PAGE_SHIFT - 6);
+
+    private final int size;
+    private final int words;
+    private final long[][][] pages;
+    private final boolean[][] shared;
+
+    /**
+     * The Bitboard constructor.
+     * @param layers The number of layers
+     * @param size The number of tiles of each layer
+     */
+    Bitboard(int layers, int size) {
+        this.size = size;
+        this.words = (size + 63) >>> 6;
+        int count = (words + PAGE_WORDS - 1) / PAGE_WORDS;
+        pages = new long[layers][count][];
+        shared = new boolean[layers][count];
+        for (int i = 0; i < layers; i++) {
+            for (int j = 0; j < count; j++) {
+                pages[i][j] = new long[Math.min(PAGE_WORDS, words - j * PAGE_WORDS)];
+            }
+        }
+    }
+
+    /**
+     * Creates a board sharing all the pages of another one.
+     * @param other The source board
+     */
+    private Bitboard(Bitboard other) {
+        size = other.size;
+        words = other.words;
+        pages = new long[other.pages.length][][];
+        shared = new boolean[other.pages.length][];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = other.pages[i].clone();
+            shared[i] = new boolean[pages[i].length];
+        }
+        share(other);
+    }
+
+    /**
+     * Returns the number of tiles of each layer.
+     * @return The layer size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns weather the bit is set at the given layer and position.
+     * @param layer The layer
+     * @param index The tile linear position
+     * @return <tt>true</tt> if the bit is set
+     */
+    boolean get(int layer, int index) {
+        return (pages[layer][index >>> PAGE_SHIFT][(index >>> 6) & (PAGE_WORDS - 1)] & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets the bit at the given layer and position.
+     * @param layer The layer
+     * @param index The tile linear position
+     */
+    void set(int layer, int index) {
+        if (get(layer, index)) return;
+        getPage(layer, index >>> PAGE_SHIFT)[(index >>> 6) & (PAGE_WORDS - 1)] |= 1L << index;
+    }
+
+    /**
+     * Clears the bit at the given layer and position.
+     * @param layer The layer
+     * @param index The tile linear position
+     */
+    void clear(int layer, int index) {
+        if (!get(layer, index)) return;
+        getPage(layer, index >>> PAGE_SHIFT)[(index >>> 6) & (PAGE_WORDS - 1)] &= ~(1L << index);
+    }
+
+    /**
+     * Clears every layer at the given position.
+     * @param index The tile linear position
+     */
+    void clearAll(int index) {
+        for (int i = 0; i < pages.length; i++) {
+            clear(i, index);
+        }
+    }
+
+    /**
+     * Returns weather no layer has the bit set at the given position.
+     * @param index The tile linear position
+     * @return <tt>true</tt> if the position is empty
+     */
+    boolean isEmpty(int index) {
+        int page = index >>> PAGE_SHIFT;
+        int word = (index >>> 6) & (PAGE_WORDS - 1);
+        long mask = 1L << index;
+        for (int i = 0; i < pages.length; i++) {
+            if ((pages[i][page][word] & mask) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the next position with the bit set at the given layer starting from an index.
+     * @param layer The layer
+     * @param from The first position to check
+     * @return The position or -1 if none
+     */
+    int next(int layer, int from) {
+        if (from >= size) return -1;
+        long[][] bits = pages[layer];
+        int word = from >>> 6;
+        long current = bits[word / PAGE_WORDS][word % PAGE_WORDS] & (-1L << from);
+        while (true) {
+            if (current != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(current);
+                return index < size ? index : -1;
+            }
+            if (++word == words) return -1;
+            current = bits[word / PAGE_WORDS][word % PAGE_WORDS];
+        }
+    }
+
+    /**
+     * Clears all the bits of every layer.
+     */
+    void reset() {
+        for (int i = 0; i < pages.length; i++) {
+            for (int j = 0; j < pages[i].length; j++) {
+                if (shared[i][j]) {
+                    pages[i][j] = new long[pages[i][j].length];
+                    shared[i][j] = false;
+                } else {
+                    Arrays.fill(pages[i][j], 0L);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets all the bits that are set on another board with the same dimensions.
+     * @param other The source board
+     */
+    void merge(Bitboard other) {
+        for (int i = 0; i < pages.length; i++) {
+            for (int j = 0; j < pages[i].length; j++) {
+                long[] source = other.pages[i][j];
+                long[] target = null;
+                for (int k = 0; k < source.length; k++) {
+                    if (source[k] == 0) continue;
+                    if (target == null) target = getPage(i, j);
+                    target[k] |= source[k];
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the pages of a layer that are shared with other boards, so that its bits can be
+     * changed from many threads at once as long as each word is changed by one at a time.
+     * @param layer The layer
+     */
+    void own(int layer) {
+        for (int j = 0; j < pages[layer].length; j++) {
+            getPage(layer, j);
+        }
+    }
+
+    /**
+     * Creates a copy of this board, the pages are shared until one of the boards changes them.
+     * @return The board copy
+     */
+    Bitboard fork() {
+        return new Bitboard(this);
+    }
+
+    /**
+     * Sets the content of this board to the content of another board with the same dimensions, the
+     * pages are shared until one of the boards changes them.
+     * @param other The source board
+     */
+    void restore(Bitboard other) {
+        for (int i = 0; i < pages.length; i++) {
+            System.arraycopy(other.pages[i], 0, pages[i], 0, pages[i].length);
+        }
+        share(other);
+    }
+
+    /**
+     * Marks all pages of both boards as shared.
+     * @param other The other board
+     */
+    private void share(Bitboard other) {
+        for (int i = 0; i < pages.length; i++) {
+            Arrays.fill(shared[i], true);
+            Arrays.fill(other.shared[i], true);
+        }
+    }
+
+    /**
+     * Returns a page that can be changed by this board, copying it if shared.
+     * @param layer The layer
+     * @param page The page number
+     * @return The page words
+     */
+    private long[] getPage(int layer, int page) {
+        if (shared[layer][page]) {
+            pages[layer][page] = pages[layer][page].clone();
+            shared[layer][page] = false;
+        }
+        return pages[layer][page];
+    }
+}
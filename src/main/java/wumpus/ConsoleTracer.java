@@ -0,0 +1,67 @@
+package wumpus;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Result;
+
+/**
+ * Prints the board and player information at every step, optionally waiting for the user to hit
+ * ENTER before continuing. Meant for interactive sessions only.
+ */
+public class ConsoleTracer extends GameAdapter {
+    private final boolean stepByStep;
+
+    /**
+     * Creates a step-by-step tracer.
+     */
+    public ConsoleTracer() {
+        this(true);
+    }
+
+    /**
+     * The tracer constructor.
+     * @param stepByStep <tt>true</tt> to wait for the ENTER after each step
+     */
+    public ConsoleTracer(boolean stepByStep) {
+        this.stepByStep = stepByStep;
+    }
+
+    /**
+     * Prints the player board and debug message.
+     * @param world The world instance
+     */
+    public void onEpisodeStart(World world) {
+        Player player = world.getPlayer();
+        System.out.println(player.render());
+        System.out.println(player.debug());
+    }
+
+    /**
+     * Prints the action taken and the resulting board.
+     * @param player The player instance
+     * @param action The action taken
+     */
+    public void onStep(Player player, Action action) {
+        System.out.println(action);
+        // Turn on step-by-step
+        if (stepByStep) Environment.trace();
+        System.out.println(player.render());
+        System.out.println(player.debug());
+    }
+
+    /**
+     * Show a very happy message.
+     * @param player The player instance
+     */
+    public void onDeath(Player player) {
+        System.out.println("GAME OVER!");
+    }
+
+    /**
+     * Show the outcome of the game.
+     * @param world The world instance
+     * @param result The outcome of the game
+     */
+    public void onEpisodeEnd(World world, Result result) {
+        System.out.println(result);
+    }
+}
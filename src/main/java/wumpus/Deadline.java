@@ -0,0 +1,216 @@
+package wumpus;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import wumpus.Environment.Action;
+
+/**
+ * Bounds the time an agent has to decide each action, and all the actions of a game, see
+ * {@link World#setDeadline}. The decisions run on another thread, a virtual one when the Java
+ * runtime has them, and when one is late the player takes the fallback action instead, exiting
+ * the game by default.
+ * <p>
+ * A late decision is not stopped, since it cannot be, but its action is discarded. The agent decides
+ * on a detached copy of the player, so the game goes on without waiting for it, and it is not
+ * called back until the late decision returns, so it is never called by two threads at once.
+ * Meanwhile, and once the game budget is spent, every action is the fallback one. Before the agent
+ * is asked again it is told by {@link Agent#discardActions} to drop the plan of the late decision,
+ * which matters when the fallback does not end the game. A decision still running when the game
+ * ends is interrupted, and the agent should not play again.
+ */
+public class Deadline {
+    private final long moveBudget;
+    private final long gameBudget;
+    private final Action fallback;
+
+    /**
+     * The threads running the decisions, created on the first deadline enforced.
+     */
+    private static final class Executor {
+        static final ExecutorService INSTANCE = Threads.newPerTaskExecutor("wumpus-decision");
+    }
+
+    /**
+     * Creates a deadline for each move, exiting the game when the agent is late.
+     * @param moveBudget The time to decide each action
+     * @param unit The unit of the time
+     */
+    public Deadline(long moveBudget, TimeUnit unit) {
+        this(moveBudget, Long.MAX_VALUE, unit, Action.EXIT);
+    }
+
+    /**
+     * Creates a deadline for each move and the whole game, exiting the game when the agent is late.
+     * @param moveBudget The time to decide each action
+     * @param gameBudget The time to decide all the actions of a game
+     * @param unit The unit of the times
+     */
+    public Deadline(long moveBudget, long gameBudget, TimeUnit unit) {
+        this(moveBudget, gameBudget, unit, Action.EXIT);
+    }
+
+    /**
+     * The deadline constructor.
+     * @param moveBudget The time to decide each action
+     * @param gameBudget The time to decide all the actions of a game
+     * @param unit The unit of the times
+     * @param fallback The action taken when the agent is late
+     */
+    public Deadline(long moveBudget, long gameBudget, TimeUnit unit, Action fallback) {
+        if (moveBudget <= 0 || gameBudget <= 0) {
+            throw new IllegalArgumentException("The budgets must be positive.");
+        }
+        if (fallback == null) throw new IllegalArgumentException("The fallback must be set.");
+        this.moveBudget = unit.toNanos(moveBudget);
+        this.gameBudget = unit.toNanos(gameBudget);
+        this.fallback = fallback;
+    }
+
+    /**
+     * Returns the time to decide each action.
+     * @param unit The unit of the time
+     * @return The move budget
+     */
+    public long getMoveBudget(TimeUnit unit) {
+        return unit.convert(moveBudget, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time to decide all the actions of a game.
+     * @param unit The unit of the time
+     * @return The game budget
+     */
+    public long getGameBudget(TimeUnit unit) {
+        return unit.convert(gameBudget, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the action taken when the agent is late.
+     * @return The fallback action
+     */
+    public Action getFallback() {
+        return fallback;
+    }
+
+    /**
+     * Starts enforcing the deadline to the decisions of an agent during a game.
+     * @param agent The agent instance
+     * @return The game session
+     */
+    Session start(Agent agent) {
+        return new Session(agent);
+    }
+
+    /**
+     * The decisions of an agent during a single game.
+     */
+    final class Session {
+        private final Agent agent;
+        private long remaining = gameBudget;
+        private Future<Action> pending;
+        // The time the late decision has been charged until
+        private long charged;
+        private int timeouts = 0;
+        // Weather the agent has to be told its last decision was discarded
+        private boolean discarded = false;
+
+        private Session(Agent agent) {
+            this.agent = agent;
+        }
+
+        /**
+         * Asks the agent for the next action, waiting until the deadline at most.
+         * @param player The player instance
+         * @return The action decided or the fallback one
+         * @throws InterruptedException When interrupted while waiting
+         */
+        Action decide(Player player) throws InterruptedException {
+            // The agent is still busy with a late decision, as checked by isLate before
+            if (pending != null || remaining <= 0) {
+                timeouts++;
+                return fallback;
+            }
+
+            if (discarded) {
+                discarded = false;
+                agent.discardActions();
+            }
+
+            long budget = Math.min(moveBudget, remaining);
+            long start = System.nanoTime();
+            // The game goes on while a late decision still reads the copy
+            final Player copy = player.detach();
+            Future<Action> future = Executor.INSTANCE.submit(new Callable<Action>() {
+                public Action call() {
+                    return agent.getAction(copy);
+                }
+            });
+            try {
+                Action action = future.get(budget, TimeUnit.NANOSECONDS);
+                remaining -= System.nanoTime() - start;
+                return action;
+            } catch (TimeoutException error) {
+                remaining -= budget;
+                charged = start + budget;
+                pending = future;
+                discarded = true;
+                timeouts++;
+                return fallback;
+            } catch (InterruptedException error) {
+                // The decision is not waited for anymore
+                future.cancel(true);
+                throw error;
+            } catch (ExecutionException error) {
+                // The agent errors are thrown as if it was called directly
+                Throwable cause = error.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new InternalError(cause.getMessage(), cause);
+            }
+        }
+
+        /**
+         * Interrupts the late decision still running, if any.
+         */
+        void finish() {
+            if (pending != null) pending.cancel(true);
+            pending = null;
+        }
+
+        /**
+         * Returns weather a decision was late and is still running, so the agent must not be called,
+         * charging the time it took since the last check to the game budget.
+         * @return <tt>true</tt> if late
+         */
+        boolean isLate() {
+            if (pending == null) return false;
+            long now = System.nanoTime();
+            remaining -= now - charged;
+            charged = now;
+            if (!pending.isDone()) return true;
+            pending = null;
+            return false;
+        }
+
+        /**
+         * Returns the number of fallback actions taken.
+         * @return The timeouts
+         */
+        int getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * Returns weather the decisions took longer than the game budget.
+         * @return <tt>true</tt> if overrun
+         */
+        boolean isOverrun() {
+            return remaining <= 0;
+        }
+    }
+}
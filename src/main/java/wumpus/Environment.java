@@ -49,7 +49,7 @@ public class Environment {
     }
 
     /**
-     * Returns the player score based on his list of actions and current state.
+     * Returns the player score based on his actions and current state.
      * @param player The player instance
      * @return The current score
      */
@@ -59,23 +59,29 @@ public class Environment {
         if (player.isDead()) sum += -1000;
         // Score if have picked the gold
         if (player.hasGold()) sum += +1000;
-        // Calculate the score for each action
-        for(Action action : player.getActions()) {
-            switch (action) {
-                case GO_FORWARD:
-                case TURN_LEFT:
-                case TURN_RIGHT:
-                case GRAB:
-                    sum += -1;
-                    break;
-                case SHOOT_ARROW:
-                    sum += -10;
-                    break;
-            }
-        }
+        // The sum of the score for each action
+        sum += player.getActionsScore();
         return sum;
     }
 
+    /**
+     * Returns the score of taking a single action.
+     * @param action The action
+     * @return The action score
+     */
+    public static int getScore(Action action) {
+        switch (action) {
+            case GO_FORWARD:
+            case TURN_LEFT:
+            case TURN_RIGHT:
+            case GRAB:
+                return -1;
+            case SHOOT_ARROW:
+                return -10;
+        }
+        return 0;
+    }
+
     /**
      * Returns the icon for a environment element.
      * @param element The element
@@ -113,7 +119,16 @@ public class Environment {
     protected static String getIcon(Player player) {
         if (player.isDead()) return "†";
 
-        switch (player.getDirection()) {
+        return getIcon(player.getDirection());
+    }
+
+    /**
+     * Return the icon of the player facing a direction.
+     * @param direction The direction
+     * @return The icon
+     */
+    protected static String getIcon(Player.Direction direction) {
+        switch (direction) {
             case N: return "↑";
             case E: return "→";
             case S: return "↓";
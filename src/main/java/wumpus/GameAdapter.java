@@ -0,0 +1,19 @@
+package wumpus;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Result;
+
+/**
+ * An empty game listener, to be extended by the listeners that only need some of the events.
+ */
+public class GameAdapter implements GameListener {
+    public void onEpisodeStart(World world) {}
+
+    public void onStep(Player player, Action action) {}
+
+    public void onDeath(Player player) {}
+
+    public void onWin(Player player) {}
+
+    public void onEpisodeEnd(World world, Result result) {}
+}
@@ -0,0 +1,209 @@
+package wumpus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.Socket;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Perception;
+import wumpus.Environment.Result;
+
+/**
+ * Plays games at a {@link GameServer} through a single connection, one game at a time. It is the
+ * reference of the protocol for the clients in other languages, and what the
+ * {@link LoadGenerator} uses.
+ * <p>
+ * After a new game is requested the client holds the perceptions of the player until an action is
+ * taken, and once the game ends, the outcome.
+ */
+public class GameClient implements Closeable {
+    private static final int BUFFER_SIZE = 64;
+    private static final Player.Direction[] DIRECTIONS = Player.Direction.values();
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    // The state of the game being played
+    private boolean playing = false;
+    private int senses;
+    private Player.Direction direction;
+    private int x, y;
+    private int outcome;
+    private int score;
+    private int steps;
+
+    /**
+     * Connects to a server.
+     * @param host The server host
+     * @param port The server port
+     * @throws IOException When the server cannot be reached
+     */
+    public GameClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            Protocol.writeHello(out);
+            out.flush();
+            Protocol.readHello(in);
+        } catch (IOException error) {
+            socket.close();
+            throw error;
+        }
+    }
+
+    /**
+     * Starts a new game on a random board.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     * @throws IOException
+     */
+    public void newGame(int width, int height) throws IOException {
+        newGame(width, height, 0, false);
+    }
+
+    /**
+     * Starts a new game, with the board generator of the session reseeded.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     * @param seed The seed of the boards
+     * @throws IOException
+     */
+    public void newGame(int width, int height, long seed) throws IOException {
+        newGame(width, height, seed, true);
+    }
+
+    private void newGame(int width, int height, long seed, boolean seeded) throws IOException {
+        if (playing) throw new IllegalStateException("The game has not ended.");
+        out.writeByte(Protocol.NEW_GAME);
+        out.writeShort(width);
+        out.writeShort(height);
+        out.writeByte(seeded ? Protocol.SEEDED : 0);
+        if (seeded) out.writeLong(seed);
+        out.flush();
+        read();
+    }
+
+    /**
+     * Takes an action and waits for the next perceptions, or the outcome if the game ends.
+     * @param action The action
+     * @throws IOException
+     */
+    public void setAction(Action action) throws IOException {
+        if (!playing) throw new IllegalStateException("There is no game being played.");
+        out.writeByte(action.ordinal());
+        out.flush();
+        read();
+    }
+
+    /**
+     * Reads the next frame of the game.
+     */
+    private void read() throws IOException {
+        int type = in.readUnsignedByte();
+        if (type == Protocol.PERCEPT) {
+            playing = true;
+            senses = in.readUnsignedByte();
+            direction = DIRECTIONS[in.readUnsignedByte() & 3];
+            x = in.readUnsignedShort();
+            y = in.readUnsignedShort();
+        } else if (type == Protocol.END) {
+            playing = false;
+            outcome = in.readUnsignedByte();
+            score = in.readInt();
+            steps = in.readInt();
+        } else {
+            throw new ProtocolException("Unknown frame " + type + ".");
+        }
+    }
+
+    /**
+     * Returns weather a game is being played, i.e. it has started and not ended.
+     * @return <tt>true</tt> if playing
+     */
+    public boolean isPlaying() { return playing; }
+
+    /**
+     * Returns weather the perception was sensed from the current tile.
+     * @param perception The perception
+     * @return <tt>true</tt> if sensed
+     */
+    public boolean hasPerception(Perception perception) {
+        return (senses & (1 << perception.ordinal())) != 0;
+    }
+
+    /**
+     * Returns weather the player still has arrows.
+     * @return <tt>true</tt> if has arrows
+     */
+    public boolean hasArrows() { return (senses & Protocol.ARROWS) != 0; }
+
+    /**
+     * Returns weather the player holds the gold.
+     * @return <tt>true</tt> if has gold
+     */
+    public boolean hasGold() { return (senses & Protocol.GOLD) != 0; }
+
+    /**
+     * Returns the direction the player is facing.
+     * @return The direction
+     */
+    public Player.Direction getDirection() { return direction; }
+
+    /**
+     * Returns the horizontal position of the player.
+     * @return The X coordinate
+     */
+    public int getX() { return x; }
+
+    /**
+     * Returns the vertical position of the player.
+     * @return The Y coordinate
+     */
+    public int getY() { return y; }
+
+    /**
+     * Returns the outcome of the last game ended.
+     * @return The result
+     */
+    public Result getResult() { return (outcome & Trace.WIN) != 0 ? Result.WIN : Result.LOOSE; }
+
+    /**
+     * Returns weather the player died at the last game ended.
+     * @return <tt>true</tt> if dead
+     */
+    public boolean isDead() { return (outcome & Trace.DEAD) != 0; }
+
+    /**
+     * Returns the score of the last game ended.
+     * @return The score
+     */
+    public int getScore() { return score; }
+
+    /**
+     * Returns the number of actions taken at the last game ended.
+     * @return The number of steps
+     */
+    public int getSteps() { return steps; }
+
+    /**
+     * Says bye to the server and closes the connection, aborting the game being played.
+     */
+    public void close() throws IOException {
+        try {
+            if (!playing) {
+                out.writeByte(Protocol.BYE);
+                out.flush();
+            }
+        } finally {
+            socket.close();
+        }
+    }
+}
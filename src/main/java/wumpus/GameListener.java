@@ -0,0 +1,42 @@
+package wumpus;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Result;
+
+/**
+ * Listens to the events of the games executed by a world, e.g. to debug or record them. The events
+ * are the ones of a single player, so an {@link Arena} of many agents rejects worlds with listeners.
+ */
+public interface GameListener {
+    /**
+     * Executes when a game starts, after the board is reset.
+     * @param world The world instance
+     */
+    void onEpisodeStart(World world);
+
+    /**
+     * Executes after the player takes an action.
+     * @param player The player instance
+     * @param action The action taken
+     */
+    void onStep(Player player, Action action);
+
+    /**
+     * Executes when the player dies.
+     * @param player The player instance
+     */
+    void onDeath(Player player);
+
+    /**
+     * Executes when the player wins the game.
+     * @param player The player instance
+     */
+    void onWin(Player player);
+
+    /**
+     * Executes when a game ends.
+     * @param world The world instance
+     * @param result The outcome of the game
+     */
+    void onEpisodeEnd(World world, Result result);
+}
@@ -0,0 +1,392 @@
+package wumpus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Result;
+
+/**
+ * Serves the games to agents running in other processes, written in any language, through the
+ * binary protocol of TCP sessions described at {@link Protocol}. The agent is sent the perceptions
+ * of each step and answers with the action, while the game is played at the server by a world of
+ * the session, so the listeners, metrics and deadlines apply as for the local agents.
+ * <p>
+ * Each session is served by its own thread, a virtual one when the Java runtime has them, so a
+ * single server can play as many games at once as there are connections. The {@link Metrics} and
+ * the {@link TraceRecorder} spread the threads over a fixed number of stripes, so they take the same
+ * memory and segments for any number of sessions. A session whose agent
+ * misbehaves, e.g. an unknown action or a decision still running when the game ends, is closed and
+ * the game counted as an error.
+ */
+public class GameServer implements Closeable {
+    private static final int BACKLOG = 4096;
+    private static final int BUFFER_SIZE = 64;
+    private static final Action[] ACTIONS = Action.values();
+
+    private final InetSocketAddress address;
+    private World.Storage storage = World.Storage.BITBOARD;
+    private int pits = -1;
+    private int wumpus = -1;
+    private int maxSteps = -1;
+    private final List<GameListener> listeners = new ArrayList<GameListener>();
+    private Metrics metrics;
+    private Deadline deadline;
+
+    private ServerSocket server;
+    private ExecutorService executor;
+    private final Set<Socket> connections = ConcurrentHashMap.<Socket>newKeySet();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicInteger peakSessions = new AtomicInteger();
+    private final Tournament.Stats stats = new Tournament.Stats();
+
+    /**
+     * Creates a server listening on a port of the loopback interface.
+     * @param port The port, or zero for any free one
+     */
+    public GameServer(int port) {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * The game server constructor.
+     * @param address The address to listen on
+     */
+    public GameServer(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * Sets the tile storage of the worlds.
+     * @param value The storage
+     */
+    public void setStorage(World.Storage value) {
+        storage = value;
+    }
+
+    /**
+     * Set the number of pits on each board.
+     * @param value
+     */
+    public void setPits(int value) {
+        pits = value;
+    }
+
+    /**
+     * Set the number of Wumpus on each board.
+     * @param value
+     */
+    public void setWumpus(int value) {
+        wumpus = value;
+    }
+
+    /**
+     * Sets the maximus steps to finish each game.
+     * @param value
+     */
+    public void setMaxSteps(int value) {
+        maxSteps = value;
+    }
+
+    /**
+     * Registers a listener of the game events at the world of every session. Since it is called
+     * from all of them at once it must be thread safe, e.g. the {@link TraceRecorder}.
+     * @param listener The listener
+     */
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the metrics to measure the games of every session.
+     * @param value The metrics
+     */
+    public void setMetrics(Metrics value) {
+        metrics = value;
+    }
+
+    /**
+     * Sets the time each remote agent has to decide its actions, including the round trip.
+     * @param value The deadline
+     */
+    public void setDeadline(Deadline value) {
+        deadline = value;
+    }
+
+    /**
+     * Starts listening and serving the sessions on the background.
+     * @throws IOException When the address cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) throw new IllegalStateException("The server has already started.");
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(address, BACKLOG);
+        executor = Threads.newPerTaskExecutor("wumpus-session");
+
+        final ServerSocket server = this.server;
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept(server);
+            }
+        }, "wumpus-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     * @return The local port
+     */
+    public synchronized int getPort() {
+        if (server == null) throw new IllegalStateException("The server has not started.");
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the number of sessions connected.
+     * @return The number of sessions
+     */
+    public int getSessions() {
+        return sessions.get();
+    }
+
+    /**
+     * Returns the largest number of sessions connected at once.
+     * @return The number of sessions
+     */
+    public int getPeakSessions() {
+        return peakSessions.get();
+    }
+
+    /**
+     * Returns the statistics of the games finished so far.
+     * @return The statistics of all sessions
+     */
+    public Tournament.Stats getStats() {
+        Tournament.Stats copy = new Tournament.Stats();
+        synchronized (stats) {
+            copy.merge(stats);
+        }
+        return copy;
+    }
+
+    /**
+     * Stops listening and closes every session, aborting their games.
+     */
+    public synchronized void close() {
+        if (server == null) return;
+        try {
+            server.close();
+        } catch (IOException error) {
+            // Nothing left to do
+        }
+        for (Socket socket : connections) closeQuietly(socket);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Accepts the connections until the server socket is closed.
+     */
+    private void accept(ServerSocket server) {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException error) {
+                // Closed or out of descriptors, retry a bit later until closed
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                continue;
+            }
+            connections.add(socket);
+            int count = sessions.incrementAndGet();
+            int peak = peakSessions.get();
+            while (count > peak && !peakSessions.compareAndSet(peak, count)) {
+                peak = peakSessions.get();
+            }
+            try {
+                executor.execute(new Session(socket));
+            } catch (RuntimeException error) {
+                // Rejected after closing
+                closeQuietly(socket);
+                connections.remove(socket);
+                sessions.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Creates a new world following the server specification.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     * @return The world instance
+     * @throws InterruptedException
+     */
+    protected World createWorld(int width, int height) throws InterruptedException {
+        World world = new World(width, height, storage);
+        if (pits >= 0) world.setPits(pits);
+        if (wumpus >= 0) world.setWumpus(wumpus);
+        if (maxSteps >= 0) world.setMaxSteps(maxSteps);
+        for (GameListener listener : listeners) world.addListener(listener);
+        world.setMetrics(metrics);
+        world.setDeadline(deadline);
+        return world;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException error) {
+            // Nothing left to do
+        }
+    }
+
+    /**
+     * The games played through a single connection.
+     */
+    private class Session implements Runnable {
+        private final Socket socket;
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        public void run() {
+            try {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                Protocol.readHello(in);
+                Protocol.writeHello(out);
+                out.flush();
+                play(in, out);
+            } catch (IOException error) {
+                // The client is gone or does not speak the protocol
+            } catch (InterruptedException error) {
+                // The server is closing
+            } finally {
+                closeQuietly(socket);
+                connections.remove(socket);
+                sessions.decrementAndGet();
+            }
+        }
+
+        /**
+         * Plays the games requested until the client says bye.
+         */
+        private void play(DataInputStream in, DataOutputStream out)
+                throws IOException, InterruptedException {
+            RemoteAgent agent = new RemoteAgent(in, out);
+            World world = null;
+            while (true) {
+                int type = in.read();
+                if (type < 0 || type == Protocol.BYE) return;
+                if (type != Protocol.NEW_GAME) throw new ProtocolException("Unknown frame " + type + ".");
+                int width = in.readUnsignedShort();
+                int height = in.readUnsignedShort();
+                int flags = in.readUnsignedByte();
+                if (width * height < 2 || width > Protocol.MAX_SIZE || height > Protocol.MAX_SIZE) {
+                    throw new ProtocolException("Invalid size " + width + "x" + height + ".");
+                }
+                if (world == null || world.getWidth() != width || world.getHeight() != height) {
+                    world = createWorld(width, height);
+                }
+                if ((flags & Protocol.SEEDED) != 0) world.setSeed(in.readLong());
+
+                try {
+                    world.execute(agent);
+                } catch (RuntimeException error) {
+                    synchronized (stats) {
+                        stats.addError();
+                    }
+                    if (error instanceof UncheckedIOException) throw ((UncheckedIOException) error).getCause();
+                    return;
+                }
+                // A late decision would read the frames of the next game
+                if (agent.busy) {
+                    synchronized (stats) {
+                        stats.addError();
+                    }
+                    return;
+                }
+                Player player = world.getPlayer();
+                Result result = world.getResult();
+                synchronized (stats) {
+                    stats.add(world);
+                }
+
+                int outcome = (result == Result.WIN ? Trace.WIN : 0) | (player.isDead() ? Trace.DEAD : 0);
+                out.writeByte(Protocol.END);
+                out.writeByte(outcome);
+                out.writeInt(player.getScore());
+                out.writeInt(player.getActions().size());
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * The agent at the other end of a connection, sent the perceptions and asked for the action.
+     */
+    private static class RemoteAgent implements Agent {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        // Set from before the decision until its answer, even when taken by a deadline thread
+        volatile boolean busy = false;
+
+        RemoteAgent(DataInputStream in, DataOutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        public void beforeAction(Player player) {
+            busy = true;
+        }
+
+        public Action getAction(Player player) {
+            try {
+                out.writeByte(Protocol.PERCEPT);
+                out.writeByte(Protocol.getSenses(player));
+                out.writeByte(player.getDirection().ordinal());
+                out.writeShort(player.getX());
+                out.writeShort(player.getY());
+                out.flush();
+                int ordinal = in.read();
+                if (ordinal < 0) throw new SocketException("The agent has disconnected.");
+                if (ordinal >= ACTIONS.length) throw new ProtocolException("Unknown action " + ordinal + ".");
+                busy = false;
+                return ACTIONS[ordinal];
+            } catch (IOException error) {
+                throw new UncheckedIOException(error);
+            }
+        }
+
+        public void afterAction(Player player) {}
+
+        // The client decides again on the perceptions of every step
+        public void discardActions() {}
+    }
+}
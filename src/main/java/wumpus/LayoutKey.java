@@ -0,0 +1,88 @@
+package wumpus;
+
+import java.util.Arrays;
+
+import wumpus.Environment.Element;
+
+/**
+ * Identifies the start of a game: the board dimensions, the maximum steps, the Wumpus, pits and
+ * gold placed, and the direction the player faces, so the games with the same key play the same
+ * way for a deterministic agent, see {@link ResultCache}. The agent is not part of the key, a cache
+ * is bound to the agents of a single factory instead.
+ * <p>
+ * A square board is mapped to itself by the reflection over the diagonal of the start corner,
+ * which swaps the columns with the rows counted from that corner, and turns the east into the north
+ * and the west into the south. A key can be made canonical for that mirror, the smallest of both
+ * images, so a board and its mirror started facing the mirrored direction share the key. Since the
+ * reflection also swaps the left and right turns, they only play the same way for agents that do
+ * not favor a side.
+ */
+public final class LayoutKey {
+    private static final Element[] LAYERS = Trace.LAYERS;
+    private static final Player.Direction[] MIRRORED = {
+        Player.Direction.E, Player.Direction.N, Player.Direction.W, Player.Direction.S
+    };
+
+    private final long[] words;
+    private final int hash;
+
+    private LayoutKey(long[] words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    /**
+     * Creates the key of the board of a world, as it is before the first action.
+     * @param world The world instance
+     * @param mirror Weather to make it canonical for the mirror of square boards
+     * @return The key
+     */
+    public static LayoutKey of(World world, boolean mirror) {
+        long[] words = encode(world, world.getStartDirection(), false);
+        if (mirror && world.getWidth() == world.getHeight()) {
+            Player.Direction direction = MIRRORED[world.getStartDirection().ordinal()];
+            long[] mirrored = encode(world, direction, true);
+            if (compare(mirrored, words) < 0) words = mirrored;
+        }
+        return new LayoutKey(words);
+    }
+
+    /**
+     * Packs the dimensions and the direction in the first word and the maximum steps in the second,
+     * followed by a bitmap of the tiles of each element.
+     */
+    private static long[] encode(World world, Player.Direction direction, boolean mirrored) {
+        int width = world.getWidth();
+        int height = world.getHeight();
+        int size = width * height;
+        long[] words = new long[2 + (int) (((long) size * LAYERS.length + 63) >>> 6)];
+        words[0] = (long) width << 32 | (long) height << 8 | direction.ordinal();
+        words[1] = world.getMaxSteps();
+        for (int k = 0; k < LAYERS.length; k++) {
+            for (int i = 0; i < size; i++) {
+                if (!world.hasElement(LAYERS[k], i)) continue;
+                int x = i % width, y = i / width;
+                // The columns and rows counted from the start corner are swapped
+                int index = mirrored ? (height - 1 - y) + (height - 1 - x) * width : i;
+                long bit = (long) k * size + index;
+                words[2 + (int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+        return words;
+    }
+
+    private static int compare(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) return a[i] + Long.MIN_VALUE < b[i] + Long.MIN_VALUE ? -1 : 1;
+        }
+        return 0;
+    }
+
+    public boolean equals(Object other) {
+        return other instanceof LayoutKey && Arrays.equals(words, ((LayoutKey) other).words);
+    }
+
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,110 @@
+package wumpus;
+
+import wumpus.Environment.Element;
+
+/**
+ * Every legal board of a world specification, i.e. each way to place its Wumpus, pits and gold in
+ * distinct blocks away from the start position and its neighbors, as the random boards are. Each
+ * one is numbered so that a range of numbers can be played by each thread without listing them:
+ * the number is split in a digit per element, the rank of its blocks among the combinations of the
+ * blocks still free, in lexicographic order.
+ * <p>
+ * Since the random boards are drawn uniformly from the same set, the results of an agent over every
+ * layout are the exact expectation that sampling approaches.
+ */
+final class Layouts {
+    private static final Element[] LAYERS = Trace.LAYERS;
+
+    // The blocks where the elements can be placed, in ascending order
+    private final int[] cells;
+    private final int[] counts = new int[LAYERS.length];
+    // The number of combinations of each element given the blocks left by the previous ones
+    private final long[] sizes = new long[LAYERS.length];
+    private final int count;
+
+    /**
+     * Lists the layouts of a world specification.
+     * @param world The world instance
+     * @throws IllegalArgumentException When there are too many to be numbered by an integer
+     */
+    Layouts(World world) {
+        int size = world.getWidth() * world.getHeight();
+        int free = 0;
+        for (int i = 0; i < size; i++) {
+            if (!world.isSafe(i)) free++;
+        }
+        cells = new int[free];
+        for (int i = 0, j = 0; i < size; i++) {
+            if (!world.isSafe(i)) cells[j++] = i;
+        }
+
+        long total = 1;
+        for (int k = 0; k < LAYERS.length; k++) {
+            counts[k] = world.getCount(LAYERS[k]);
+            sizes[k] = getBinomial(free, counts[k]);
+            free -= counts[k];
+            if (sizes[k] != 0 && total > Integer.MAX_VALUE / sizes[k]) {
+                throw new IllegalArgumentException("Too many layouts to enumerate.");
+            }
+            total *= sizes[k];
+        }
+        count = (int) total;
+    }
+
+    /**
+     * Returns the number of layouts.
+     * @return The count
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Places the elements of a layout at every reset of the world.
+     * @param world The world instance, with the same specification
+     * @param number The layout number, from zero to the count
+     */
+    void set(World world, int number) {
+        long[] digits = new long[LAYERS.length];
+        long rest = number;
+        for (int k = LAYERS.length - 1; k >= 0; k--) {
+            digits[k] = rest % sizes[k];
+            rest /= sizes[k];
+        }
+
+        int[] available = cells.clone();
+        int[] positions = new int[available.length];
+        int left = available.length;
+        for (int k = 0; k < LAYERS.length; k++) {
+            long rank = digits[k];
+            int found = 0, kept = 0;
+            for (int j = 0; j < left; j++) {
+                // The combinations of the next blocks when this one is taken
+                long taken = found < counts[k] ? getBinomial(left - j - 1, counts[k] - found - 1) : 0;
+                if (rank < taken) {
+                    positions[found++] = available[j];
+                } else {
+                    rank -= taken;
+                    available[kept++] = available[j];
+                }
+            }
+            left = kept;
+            world.setItems(LAYERS[k], positions, found);
+        }
+    }
+
+    /**
+     * Returns the number of combinations of <tt>k</tt> items out of <tt>n</tt>.
+     */
+    private static long getBinomial(int n, int k) {
+        if (k < 0 || k > n) return 0;
+        k = Math.min(k, n - k);
+        long value = 1;
+        for (int i = 0; i < k; i++) {
+            value = value * (n - i) / (i + 1);
+            // Saturates, since it is already too many
+            if (value > Integer.MAX_VALUE) return Integer.MAX_VALUE + 1L;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,290 @@
+package wumpus;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Perception;
+import wumpus.Environment.Result;
+
+/**
+ * Loads a {@link GameServer} with many sessions at once, each one playing games with a random
+ * walker through its own {@link GameClient}. Every session connects before any game starts, so
+ * they are all open at the same time, and the round trip of each action is measured.
+ */
+public class LoadGenerator {
+    private final String host;
+    private final int port;
+    private int sessions = 1000;
+    private int width = 4;
+    private int height = 4;
+    private Long seed = null;
+
+    /**
+     * Creates a load generator for a server.
+     * @param host The server host
+     * @param port The server port
+     */
+    public LoadGenerator(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Sets the number of sessions open at once, defaults to a thousand.
+     * @param value
+     */
+    public void setSessions(int value) {
+        sessions = value;
+    }
+
+    /**
+     * Sets the dimensions of the boards, defaults to 4x4.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     */
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Sets the seed of the boards and the walks, so that the games of each session are
+     * reproducible.
+     * @param value The seed
+     */
+    public void setSeed(long value) {
+        seed = value;
+    }
+
+    /**
+     * Plays the games of every session and returns the report once all have finished.
+     * @param games The number of games of each session
+     * @return The report of all sessions
+     * @throws InterruptedException When interrupted while waiting
+     */
+    public Report run(final int games) throws InterruptedException {
+        final Report report = new Report();
+        final CountDownLatch connected = new CountDownLatch(sessions);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(sessions);
+        ExecutorService executor = Threads.newPerTaskExecutor("wumpus-load");
+        try {
+            for (int i = 0; i < sessions; i++) {
+                final int session = i;
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            play(session, games, report, connected, start);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            connected.await();
+            long time = System.nanoTime();
+            start.countDown();
+            done.await();
+            report.elapsed = System.nanoTime() - time;
+        } finally {
+            start.countDown();
+            executor.shutdownNow();
+        }
+        return report;
+    }
+
+    /**
+     * Plays the games of a single session.
+     */
+    private void play(int session, int games, Report report, CountDownLatch connected,
+            CountDownLatch start) {
+        // The counters of the session, the latencies go straight to the shared histogram
+        Report part = new Report(report.latency);
+        GameClient client = null;
+        try {
+            try {
+                client = new GameClient(host, port);
+                part.sessions++;
+            } finally {
+                connected.countDown();
+            }
+            start.await();
+
+            long game = seed != null ? Tournament.getSeed(seed, session) : System.nanoTime() + session;
+            SplittableRandom random = new SplittableRandom(game);
+            for (int i = 0; i < games; i++) {
+                if (i == 0 && seed != null) {
+                    client.newGame(width, height, game);
+                } else {
+                    client.newGame(width, height);
+                }
+                while (client.isPlaying()) {
+                    Action action = walk(client, random);
+                    long time = System.nanoTime();
+                    client.setAction(action);
+                    part.latency.record(System.nanoTime() - time);
+                }
+                part.add(client);
+            }
+        } catch (IOException error) {
+            part.errors++;
+        } catch (InterruptedException error) {
+            part.errors++;
+        } finally {
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (IOException error) {
+                    // Nothing left to do
+                }
+            }
+            report.merge(part);
+        }
+    }
+
+    /**
+     * Returns the next action of a random walker that grabs the gold when it glitters and shoots
+     * when it smells the Wumpus.
+     */
+    private static Action walk(GameClient client, SplittableRandom random) {
+        if (client.hasPerception(Perception.GLITTER)) return Action.GRAB;
+        if (client.hasPerception(Perception.STENCH) && client.hasArrows()) return Action.SHOOT_ARROW;
+        int value = random.nextInt(10);
+        if (value < 7 && !client.hasPerception(Perception.BUMP)) return Action.GO_FORWARD;
+        return (value & 1) == 0 ? Action.TURN_LEFT : Action.TURN_RIGHT;
+    }
+
+    /**
+     * The outcome of the sessions, as seen by the clients.
+     */
+    public static class Report {
+        private int sessions = 0;
+        private long games = 0;
+        private long wins = 0;
+        private long deaths = 0;
+        private long errors = 0;
+        private long score = 0;
+        private long steps = 0;
+        private long elapsed = 0;
+        private final Histogram latency;
+
+        /**
+         * Creates an empty report.
+         */
+        public Report() {
+            this(new Histogram());
+        }
+
+        /**
+         * Creates a report recording the latencies to a histogram, which may be shared.
+         */
+        private Report(Histogram latency) {
+            this.latency = latency;
+        }
+
+        /**
+         * Adds the outcome of the last game played by a client.
+         */
+        private void add(GameClient client) {
+            games++;
+            if (client.getResult() == Result.WIN) wins++;
+            if (client.isDead()) deaths++;
+            score += client.getScore();
+            steps += client.getSteps();
+        }
+
+        /**
+         * Adds the outcome of another session.
+         */
+        private synchronized void merge(Report other) {
+            sessions += other.sessions;
+            games += other.games;
+            wins += other.wins;
+            deaths += other.deaths;
+            errors += other.errors;
+            score += other.score;
+            steps += other.steps;
+            if (other.latency != latency) latency.merge(other.latency);
+        }
+
+        /**
+         * Returns the number of sessions that were open at once.
+         * @return The number of sessions
+         */
+        public int getSessions() { return sessions; }
+
+        /**
+         * Returns the number of games that have finished.
+         * @return The number of games
+         */
+        public long getGames() { return games; }
+
+        /**
+         * Returns the number of games won.
+         * @return The number of wins
+         */
+        public long getWins() { return wins; }
+
+        /**
+         * Returns the number of games where the player died.
+         * @return The number of deaths
+         */
+        public long getDeaths() { return deaths; }
+
+        /**
+         * Returns the number of sessions that failed to connect or were dropped.
+         * @return The number of errors
+         */
+        public long getErrors() { return errors; }
+
+        /**
+         * Returns the mean score of the games.
+         * @return The mean score
+         */
+        public double getMeanScore() { return games == 0 ? 0 : (double) score / games; }
+
+        /**
+         * Returns the mean steps of the games.
+         * @return The mean steps
+         */
+        public double getMeanSteps() { return games == 0 ? 0 : (double) steps / games; }
+
+        /**
+         * Returns the elapsed time to play all games in nanoseconds.
+         * @return The elapsed time
+         */
+        public long getElapsed() { return elapsed; }
+
+        /**
+         * Returns how many games were played per second.
+         * @return The throughput
+         */
+        public double getGamesPerSecond() { return elapsed == 0 ? 0 : games / (elapsed / 1e9); }
+
+        /**
+         * Returns the round trip of the actions, from sent to the next perceptions received.
+         * @return The latency in nanoseconds
+         */
+        public Metrics.Latency getLatency() { return new Metrics.Latency(latency); }
+
+        /**
+         * Renders the report as a ASCII string.
+         * @return The report table
+         */
+        public String render() {
+            return String.format(
+                    "+----------------------------------------------------------------------+%n" +
+                    "| Sessions | Errors | Games      | Mean score | Mean steps | Games/sec    |%n" +
+                    "| -------- | ------ | ---------- | ---------- | ---------- | ------------ |%n" +
+                    "| %8d | %6d | %10d | %10.2f | %10.2f | %12.1f |%n" +
+                    "+----------------------------------------------------------------------+%n" +
+                    "Round trip: %s%n",
+                    sessions, errors, games, getMeanScore(), getMeanSteps(), getGamesPerSecond(),
+                    getLatency()
+                );
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package wumpus;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Result;
+
+/**
+ * Measures the games played by the worlds it is set to, see {@link World#setMetrics}: the latency
+ * of each agent decision, player action and board reset, and the number of games, steps, deaths,
+ * wins and arrows shot. It can be published as an MXBean to watch a tournament from any JMX
+ * console.
+ * <p>
+ * The threads record the latencies to a fixed number of stripes of histograms, twice the processors,
+ * picked by the thread id and merged when read, and the counters are added once per game, so the
+ * worlds of every thread can share the same metrics. The histograms are lock free, so the threads
+ * that share a stripe do not wait on each other, and the metrics take the same memory for a pool
+ * of a few threads as for a server with a thread per connection.
+ */
+public class Metrics implements MetricsMXBean {
+    private static final int STRIPES =
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+
+    private final LongAdder episodes = new LongAdder();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder deaths = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder arrows = new LongAdder();
+    private final Recorder[] recorders = new Recorder[STRIPES];
+    private ObjectName name;
+
+    /**
+     * The histograms of the latencies recorded by the threads of a stripe.
+     */
+    static final class Recorder {
+        final Histogram getAction = new Histogram();
+        final Histogram setAction = new Histogram();
+        final Histogram reset = new Histogram();
+    }
+
+    /**
+     * The metrics constructor.
+     */
+    public Metrics() {
+        for (int i = 0; i < STRIPES; i++) recorders[i] = new Recorder();
+    }
+
+    /**
+     * A summary of the latencies of a phase in nanoseconds.
+     */
+    public static class Latency {
+        private final long count;
+        private final double mean;
+        private final long p50, p90, p99, p999, max;
+
+        Latency(Histogram histogram) {
+            count = histogram.getCount();
+            mean = histogram.getMean();
+            p50 = histogram.getValueAtPercentile(50);
+            p90 = histogram.getValueAtPercentile(90);
+            p99 = histogram.getValueAtPercentile(99);
+            p999 = histogram.getValueAtPercentile(99.9);
+            max = histogram.getMax();
+        }
+
+        /**
+         * Returns the number of values.
+         * @return The count
+         */
+        public long getCount() { return count; }
+
+        /**
+         * Returns the mean latency.
+         * @return The latency
+         */
+        public double getMean() { return mean; }
+
+        /**
+         * Returns the median latency.
+         * @return The latency
+         */
+        public long getP50() { return p50; }
+
+        /**
+         * Returns the 90th percentile latency.
+         * @return The latency
+         */
+        public long getP90() { return p90; }
+
+        /**
+         * Returns the 99th percentile latency.
+         * @return The latency
+         */
+        public long getP99() { return p99; }
+
+        /**
+         * Returns the 99.9th percentile latency.
+         * @return The latency
+         */
+        public long getP999() { return p999; }
+
+        /**
+         * Returns the largest latency.
+         * @return The latency
+         */
+        public long getMax() { return max; }
+
+        /**
+         * Returns the summary as a single line.
+         * @return The summary
+         */
+        public String toString() {
+            return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                    count, mean, p50, p90, p99, p999, max);
+        }
+    }
+
+    /**
+     * Publishes the metrics to the platform MBean server as <tt>wumpus:type=Metrics,name=...</tt>.
+     * @param name The name of the metrics
+     * @throws JMException When the name is not valid or already taken
+     */
+    public synchronized void register(String name) throws JMException {
+        unregister();
+        ObjectName objectName = new ObjectName("wumpus:type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.name = objectName;
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if published.
+     * @throws JMException When they cannot be removed
+     */
+    public synchronized void unregister() throws JMException {
+        if (name == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name)) server.unregisterMBean(name);
+        name = null;
+    }
+
+    /**
+     * Returns the histograms of the stripe of the current thread.
+     * @return The recorder
+     */
+    Recorder getRecorder() {
+        return recorders[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+    }
+
+    /**
+     * Counts a game that has ended.
+     * @param world The world instance
+     * @param result The outcome of the game
+     */
+    void addEpisode(World world, Result result) {
+        Player player = world.getPlayer();
+        episodes.increment();
+        steps.add(player.getActions().size());
+        arrows.add(player.getActionCount(Action.SHOOT_ARROW));
+        if (player.isDead()) deaths.increment();
+        if (result == Result.WIN) wins.increment();
+    }
+
+    public long getEpisodes() { return episodes.sum(); }
+
+    public long getSteps() { return steps.sum(); }
+
+    public long getDeaths() { return deaths.sum(); }
+
+    public long getWins() { return wins.sum(); }
+
+    public long getArrows() { return arrows.sum(); }
+
+    public Latency getGetActionLatency() {
+        Histogram histogram = new Histogram();
+        for (Recorder recorder : recorders) histogram.merge(recorder.getAction);
+        return new Latency(histogram);
+    }
+
+    public Latency getSetActionLatency() {
+        Histogram histogram = new Histogram();
+        for (Recorder recorder : recorders) histogram.merge(recorder.setAction);
+        return new Latency(histogram);
+    }
+
+    public Latency getResetLatency() {
+        Histogram histogram = new Histogram();
+        for (Recorder recorder : recorders) histogram.merge(recorder.reset);
+        return new Latency(histogram);
+    }
+
+    public void reset() {
+        episodes.reset();
+        steps.reset();
+        deaths.reset();
+        wins.reset();
+        arrows.reset();
+        for (Recorder recorder : recorders) {
+            recorder.getAction.reset();
+            recorder.setAction.reset();
+            recorder.reset.reset();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package wumpus;
+
+/**
+ * The management interface of the {@link Metrics}, published to JMX.
+ */
+public interface MetricsMXBean {
+    /**
+     * Returns the number of games played.
+     * @return The number of episodes
+     */
+    long getEpisodes();
+
+    /**
+     * Returns the number of actions taken.
+     * @return The number of steps
+     */
+    long getSteps();
+
+    /**
+     * Returns the number of games where the player died.
+     * @return The number of deaths
+     */
+    long getDeaths();
+
+    /**
+     * Returns the number of games won.
+     * @return The number of wins
+     */
+    long getWins();
+
+    /**
+     * Returns the number of arrows shot.
+     * @return The number of arrows
+     */
+    long getArrows();
+
+    /**
+     * Returns the latency of the agent decisions.
+     * @return The latency in nanoseconds
+     */
+    Metrics.Latency getGetActionLatency();
+
+    /**
+     * Returns the latency of the player actions.
+     * @return The latency in nanoseconds
+     */
+    Metrics.Latency getSetActionLatency();
+
+    /**
+     * Returns the latency of the board resets.
+     * @return The latency in nanoseconds
+     */
+    Metrics.Latency getResetLatency();
+
+    /**
+     * Forgets the counters and latencies so far.
+     */
+    void reset();
+}
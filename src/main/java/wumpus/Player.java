@@ -1,6 +1,9 @@
 package wumpus;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
 
 import wumpus.Environment.Action;
 import wumpus.Environment.Element;
@@ -15,13 +18,36 @@ public class Player extends Object {
          N, E, S, W
     }
 
+    private static final Action[] ACTIONS = Action.values();
+
     private final World world;
     private int x, y;
 
-    private Tile tile;
+    private int tile = -1;
+
+    private int perceptions = 0;
+    private int extraPerceptions = 0;
+    private boolean sensed = false;
+    // Actions log packed as two 4-bit ordinals per byte, shared with the snapshots until changed
+    private byte[] actions = new byte[32];
+    private boolean actionsShared = false;
+    // The actions log is read by a copy up to its steps, so it is not rewritten from the start
+    private boolean actionsLent = false;
+    // A copy of the state that does not read the board, see detach
+    private boolean detached = false;
+    private int steps = 0;
+    private final int[] actionsCount = new int[ACTIONS.length];
+    private int actionsScore = 0;
+    private final List<Action> actionsView = new AbstractList<Action>() {
+        public Action get(int index) {
+            if (index < 0 || index >= steps) throw new IndexOutOfBoundsException("Index: " + index);
+            return getAction(index);
+        }
 
-    private ArrayList<Perception> perceptions = new ArrayList<Perception>();
-    private ArrayList<Action> actions = new ArrayList<Action>();
+        public int size() {
+            return steps;
+        }
+    };
     private Direction direction = Direction.E;
     private boolean alive = true;
     private boolean gold = false;
@@ -40,7 +66,7 @@ public class Player extends Object {
      * @return The X position
      */
     public int getX() {
-        return tile.getX();
+        return x;
     }
 
     /**
@@ -48,7 +74,7 @@ public class Player extends Object {
      * @return The Y position
      */
     public int getY() {
-        return tile.getY();
+        return y;
     }
 
     /**
@@ -57,8 +83,69 @@ public class Player extends Object {
     protected void reset() {
         arrows = 1;
         gold = false;
-        direction = Direction.E;
-        actions.clear();
+        direction = world.getStartDirection();
+        if (actionsLent) {
+            actions = new byte[32];
+            actionsShared = false;
+            actionsLent = false;
+        }
+        steps = 0;
+        actionsScore = 0;
+        Arrays.fill(actionsCount, 0);
+        setPerceptions();
+    }
+
+    /**
+     * Copies the whole state of this player to another one, which may belong to another world.
+     * @param other The target player
+     */
+    protected void copyTo(Player other) {
+        copyState(other);
+        // Both are copied on the next change
+        actionsShared = true;
+    }
+
+    /**
+     * Copies the whole state of this player to another one, lending it the actions log instead of
+     * sharing it, since this player only appends past the steps of the other until the next reset,
+     * which starts a new log. The other one copies the log on its first change.
+     * @param other The target player
+     */
+    void lendTo(Player other) {
+        copyState(other);
+        actionsLent = true;
+    }
+
+    private void copyState(Player other) {
+        other.x = x;
+        other.y = y;
+        other.tile = tile;
+        other.direction = direction;
+        other.alive = alive;
+        other.gold = gold;
+        other.arrows = arrows;
+        other.perceptions = perceptions;
+        other.extraPerceptions = extraPerceptions;
+        other.sensed = sensed;
+        other.actions = actions;
+        other.actionsShared = true;
+        other.steps = steps;
+        other.actionsScore = actionsScore;
+        System.arraycopy(actionsCount, 0, other.actionsCount, 0, actionsCount.length);
+    }
+
+    /**
+     * Returns a copy of the current state that does not change with the game, e.g. for an agent
+     * deciding on another thread. The perceptions are sensed now and the actions log is lent, see
+     * {@link #lendTo}.
+     * @return The detached copy
+     */
+    Player detach() {
+        Player copy = new Player(world);
+        getPerceptionsMask();
+        lendTo(copy);
+        copy.detached = true;
+        return copy;
     }
 
     /**
@@ -66,7 +153,7 @@ public class Player extends Object {
      * @return The Tile instance
      */
     protected Tile getTile() {
-        return tile;
+        return world.getPosition(tile);
     }
 
     /**
@@ -74,17 +161,23 @@ public class Player extends Object {
      * sensed from the new tile.
      */
     protected void setTile(int index) {
-        // Remove the Hunter from the
-        if (tile != null) {
-            tile.remove(Element.HUNTER);
-        }
-        tile = world.getPosition(index);
-        tile.setItem(Environment.Element.HUNTER);
+        // Move the Hunter between the tiles
+        world.moveHunter(tile, index);
+        tile = index;
         // 2D coordinates
-        x = tile.getX();
-        y = tile.getY();
+        x = tile % world.getWidth();
+        y = tile / world.getWidth();
         // Check if player is still alive
-        alive = !(tile.contains(Element.WUMPUS) || tile.contains(Element.PIT));
+        alive = !(world.hasElement(Element.WUMPUS, tile) || world.hasElement(Element.PIT, tile));
+    }
+
+    /**
+     * Places the agent at a tile of a board just reset, where it was not marked yet.
+     * @param index The tile position
+     */
+    void place(int index) {
+        tile = -1;
+        setTile(index);
     }
 
     /**
@@ -100,26 +193,11 @@ public class Player extends Object {
     public Perception shootArrow() {
         if (arrows > 0) {
             arrows--;
-            int[] neighbors = getTile().getNeighbors();
             // Select the right neighbor to shoot
-            Tile neighbor = null;
-            switch (direction) {
-                case N:
-                    if (neighbors[0] > -1) neighbor = world.getPosition(neighbors[0]);
-                    break;
-                case E:
-                    if (neighbors[1] > -1) neighbor = world.getPosition(neighbors[1]);
-                    break;
-                case S:
-                    if (neighbors[2] > -1) neighbor = world.getPosition(neighbors[2]);
-                    break;
-                case W:
-                    if (neighbors[3] > -1) neighbor = world.getPosition(neighbors[3]);
-                    break;
-            }
+            int neighbor = world.getNeighbor(tile, direction);
             // Hear a scream after if killed Wumpus
-            if (neighbor != null && neighbor.contains(Element.WUMPUS)) {
-                neighbor.remove(Element.WUMPUS);
+            if (neighbor > -1 && world.hasElement(Element.WUMPUS, neighbor)) {
+                world.killWumpus(neighbor);
                 // Add the Scream to the current perception
                 return Perception.SCREAM;
             }
@@ -135,26 +213,22 @@ public class Player extends Object {
      * @param action The action to take
      */
     protected void setAction(Action action) {
-        actions.add(action);
+        world.modified();
+        take(action);
+    }
+
+    /**
+     * Executes an action without marking the world as changed, for the players that move at once
+     * from many threads, see {@link Arena}.
+     * @param action The action to take
+     */
+    void take(Action action) {
+        addAction(action);
         // Execute the action
         switch (action) {
             case GO_FORWARD:
-                int[] neighbors = tile.getNeighbors();
-                switch (direction) {
-                    case N:
-                        if (neighbors[0] > -1) setTile(neighbors[0]);
-                        break;
-                    case E:
-                        if (neighbors[1] > -1) setTile(neighbors[1]);
-                        break;
-                    case S:
-                        if (neighbors[2] > -1) setTile(neighbors[2]);
-                        break;
-                    case W:
-
-                        if (neighbors[3] > -1) setTile(neighbors[3]);
-                        break;
-                }
+                int neighbor = world.getNeighbor(tile, direction);
+                if (neighbor > -1) setTile(neighbor);
                 break;
             case TURN_LEFT:
                 // Mover counter clockwise
@@ -176,8 +250,8 @@ public class Player extends Object {
                 break;
             case GRAB:
                 // If tile has gold store and remove from the tile
-                if (tile.contains(Element.GOLD)) {
-                    tile.remove(Element.GOLD);
+                if (world.hasElement(Element.GOLD, tile)) {
+                    world.removeElement(Element.GOLD, tile);
                     gold = true;
                 }
                 break;
@@ -190,12 +264,58 @@ public class Player extends Object {
         setPerceptions();
     }
 
+    /**
+     * Appends the action to the log and updates the score.
+     * @param action The action taken
+     */
+    private void addAction(Action action) {
+        int index = steps >> 1;
+        if (index == actions.length) {
+            actions = Arrays.copyOf(actions, actions.length * 2);
+            actionsShared = false;
+        } else if (actionsShared) {
+            actions = actions.clone();
+            actionsShared = false;
+        }
+        int shift = (steps & 1) << 2;
+        actions[index] = (byte) ((actions[index] & ~(0xF << shift)) | (action.ordinal() << shift));
+        steps++;
+        actionsCount[action.ordinal()]++;
+        actionsScore += Environment.getScore(action);
+    }
+
+    /**
+     * Returns the action taken at the given step.
+     * @param index The step
+     * @return The action
+     */
+    private Action getAction(int index) {
+        return ACTIONS[(actions[index >> 1] >> ((index & 1) << 2)) & 0xF];
+    }
+
     /**
      * Returns the player actions so far.
-     * @return The list of actions
+     * @return The read-only list of actions
      */
-    public ArrayList<Action> getActions() {
-        return actions;
+    public List<Action> getActions() {
+        return actionsView;
+    }
+
+    /**
+     * Returns how many times the player has taken an action.
+     * @param action The action
+     * @return The number of times
+     */
+    public int getActionCount(Action action) {
+        return actionsCount[action.ordinal()];
+    }
+
+    /**
+     * Returns the sum of the score of all actions taken so far.
+     * @return The actions score
+     */
+    protected int getActionsScore() {
+        return actionsScore;
     }
 
     /**
@@ -203,8 +323,8 @@ public class Player extends Object {
      * @return The last action
      */
     public Action getLastAction() {
-        if (actions.size() == 0) return null;
-        return actions.get(actions.size() - 1);
+        if (steps == 0) return null;
+        return getAction(steps - 1);
     }
 
     /**
@@ -216,54 +336,55 @@ public class Player extends Object {
     }
 
     /**
-     * Get the list of perceptions sensed from the current tile.
-     * @return The list of perceptions
+     * Get the set of perceptions sensed from the current tile.
+     * @return The set of perceptions
      */
-    protected ArrayList<Perception> getPerceptions() {
+    protected EnumSet<Perception> getPerceptions() {
+        EnumSet<Perception> set = EnumSet.noneOf(Perception.class);
+        int mask = getPerceptionsMask();
+        for (Perception perception : Perception.values()) {
+            if ((mask & (1 << perception.ordinal())) != 0) set.add(perception);
+        }
+        return set;
+    }
+
+    /**
+     * Returns the perceptions sensed from the current tile as a bitmask of {@link Perception}
+     * ordinals, they are only calculated on the first call after each action.
+     * @return The perceptions bitmask
+     */
+    protected int getPerceptionsMask() {
+        if (!sensed) {
+            perceptions = world.getPerceptions(tile, direction) | extraPerceptions;
+            sensed = true;
+        }
         return perceptions;
     }
 
     /**
-     * Sets the list of perceptions sensed from the current tile.
+     * Sets the perceptions to be sensed again from the current tile.
      */
     protected void setPerceptions() {
-        perceptions.clear();
-        // Senses in the current tile
-        if (tile.contains(Environment.Element.GOLD)) {
-            perceptions.add(Perception.GLITTER);
-        }
-        // Get the neighbors and find the senses
-        int[] neighbors = tile.getNeighbors();
-        for (int i = 0; i < neighbors.length; i++) {
-            // Sense bumps
-            if (neighbors[i] == -1) {
-                if (    (i == 0 && direction == Direction.N) ||
-                        (i == 1 && direction == Direction.E) ||
-                        (i == 2 && direction == Direction.S) ||
-                        (i == 3 && direction == Direction.W)) {
-                    perceptions.add(Perception.BUMP);
-                }
-            } else {
-                Tile neighbor = world.getPosition(neighbors[i]);
-                // Sense a breeze when near a pit
-                if (neighbor.contains(Element.PIT)) {
-                    perceptions.add(Perception.BREEZE);
-                }
-                // Sense a stench when near a Wumpus
-                if (neighbor.contains(Element.WUMPUS)) {
-                    perceptions.add(Perception.STENCH);
-                }
-            }
-        }
+        sensed = false;
+        extraPerceptions = 0;
     }
 
     /**
-     * Sets the list of perceptions sensed from the current tile.
+     * Sets the perceptions to be sensed again from the current tile plus the given one.
      * @param value The perception to add to the list
      */
     protected void setPerceptions(Perception value) {
-        setPerceptions();
-        perceptions.add(value);
+        sensed = false;
+        extraPerceptions = 1 << value.ordinal();
+    }
+
+    /**
+     * Returns weather the perception was sensed from the current tile.
+     * @param perception The perception
+     * @return <tt>true</tt> if sensed
+     */
+    private boolean hasPerception(Perception perception) {
+        return (getPerceptionsMask() & (1 << perception.ordinal())) != 0;
     }
 
     /**
@@ -295,7 +416,7 @@ public class Player extends Object {
      * @return If has a bump perception
      */
     public boolean hasBump() {
-        return perceptions.contains(Perception.BUMP);
+        return hasPerception(Perception.BUMP);
     }
 
     /**
@@ -303,7 +424,7 @@ public class Player extends Object {
      * @return <tt>true</tt> if player's feels a breeze
      */
     public boolean hasBreeze() {
-        return perceptions.contains(Perception.BREEZE);
+        return hasPerception(Perception.BREEZE);
     }
 
     /**
@@ -311,7 +432,7 @@ public class Player extends Object {
      * @return <tt>true</tt> if player's feels a stench
      */
     public boolean hasStench() {
-        return perceptions.contains(Perception.STENCH);
+        return hasPerception(Perception.STENCH);
     }
 
     /**
@@ -319,7 +440,7 @@ public class Player extends Object {
      * @return <tt>true</tt> if player's hears a scream
      */
     public boolean hasScream() {
-        return perceptions.contains(Perception.SCREAM);
+        return hasPerception(Perception.SCREAM);
     }
 
     /**
@@ -327,7 +448,7 @@ public class Player extends Object {
      * @return <tt>true</tt> if player's sees the glitter.
      */
     public boolean hasGlitter() {
-        return perceptions.contains(Perception.GLITTER);
+        return hasPerception(Perception.GLITTER);
     }
 
     /**
@@ -335,6 +456,8 @@ public class Player extends Object {
      * @return The board representation
      */
     public String render() {
+        // The board may have changed since the copy
+        if (detached) return Renderer.render(world.getWidth(), world.getHeight(), tile, this);
         return world.render();
     }
 
@@ -350,7 +473,7 @@ public class Player extends Object {
         // Score
         output.append("Score: ").append(getScore()).append("\n");
         // Perceptions
-        output.append("Perceptions: ").append(perceptions.toString());
+        output.append("Perceptions: ").append(getPerceptions().toString());
 
         return output.toString();
     }
@@ -0,0 +1,82 @@
+package wumpus;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+
+/**
+ * The binary protocol of the remote agents, see {@link GameServer}. Every integer is big endian and
+ * each session starts with the same hello from the client and the server, followed by any number
+ * of games requested by the client until it says bye or closes the connection:
+ * <pre>
+ *     session  = hello hello game* bye?
+ *     hello    = magic:int32 version:u8
+ *     game     = new-game (percept action)* end
+ *     new-game = NEW_GAME:u8 width:u16 height:u16 flags:u8 seed:int64?
+ *     percept  = PERCEPT:u8 senses:u8 direction:u8 x:u16 y:u16
+ *     action   = ordinal:u8
+ *     end      = END:u8 outcome:u8 score:int32 steps:int32
+ *     bye      = BYE:u8
+ * </pre>
+ * The seed follows only when the flags have {@link #SEEDED}. The senses are the bitmask of the
+ * {@link Environment.Perception} ordinals plus {@link #ARROWS} and {@link #GOLD}, the direction and
+ * the actions are their ordinals, and the outcome has the {@link Trace#WIN} and {@link Trace#DEAD}
+ * flags as in the traces. So a step costs a single byte up and seven down.
+ */
+final class Protocol {
+    /**
+     * The first bytes of every session, i.e. <tt>WGSP</tt>.
+     */
+    static final int MAGIC = 0x57475350;
+    static final int VERSION = 1;
+    static final int MAX_SIZE = 256;
+
+    // The frame types
+    static final int BYE = 0;
+    static final int NEW_GAME = 1;
+    static final int PERCEPT = 2;
+    static final int END = 3;
+
+    // The new game flags
+    static final int SEEDED = 1;
+
+    // The senses besides the perceptions
+    static final int ARROWS = 1 << 6;
+    static final int GOLD = 1 << 7;
+
+    private Protocol() {}
+
+    /**
+     * Writes the hello of a session.
+     * @param out The output
+     * @throws IOException
+     */
+    static void writeHello(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    /**
+     * Reads the hello of a session, checking it speaks the same protocol.
+     * @param in The input
+     * @throws IOException When it does not
+     */
+    static void readHello(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new ProtocolException("Not a game session.");
+        int version = in.readUnsignedByte();
+        if (version != VERSION) throw new ProtocolException("Unsupported version " + version + ".");
+    }
+
+    /**
+     * Returns the senses of a player for a percept frame.
+     * @param player The player instance
+     * @return The senses
+     */
+    static int getSenses(Player player) {
+        int senses = player.getPerceptionsMask();
+        if (player.hasArrows()) senses |= ARROWS;
+        if (player.hasGold()) senses |= GOLD;
+        return senses;
+    }
+}
@@ -0,0 +1,226 @@
+package wumpus;
+
+import java.io.IOException;
+
+import wumpus.Environment.Element;
+import wumpus.Environment.Perception;
+import wumpus.Player.Direction;
+
+/**
+ * Renders the world board as ASCII straight into an output, using a precomputed table with every
+ * line a block can have. The last frame of each board is cached until the world changes.
+ */
+class Renderer {
+    // The glyphs of the hunter: none, one for each direction and dead
+    private static final int HUNTER_GLYPHS = Direction.values().length + 2;
+    private static final String[] HUNTERS = new String[HUNTER_GLYPHS];
+    // The glyphs of the dangers: none, Wumpus, pit and gold
+    private static final String[] DANGERS = new String[4];
+    // The glyphs of the hunter followed by the perceptions: none, glitter, stench and breeze
+    private static final String[] SENSES = new String[HUNTER_GLYPHS * 4];
+
+    static {
+        String[] hunters = new String[HUNTER_GLYPHS];
+        hunters[0] = " ";
+        for (Direction direction : Direction.values()) {
+            hunters[direction.ordinal() + 1] = Environment.getIcon(direction);
+        }
+        hunters[HUNTER_GLYPHS - 1] = "†";
+        String[] perceptions = {
+                " ",
+                Environment.getIcon(Perception.GLITTER),
+                Environment.getIcon(Perception.STENCH),
+                Environment.getIcon(Perception.BREEZE)
+        };
+        for (int i = 0; i < HUNTER_GLYPHS; i++) {
+            HUNTERS[i] = " " + hunters[i] + " |";
+            for (int j = 0; j < perceptions.length; j++) {
+                SENSES[i * perceptions.length + j] = " " + hunters[i] + " " + perceptions[j] + " |";
+            }
+        }
+        DANGERS[0] = "     |";
+        DANGERS[1] = "   " + Environment.getIcon(Element.WUMPUS) + " |";
+        DANGERS[2] = "   " + Environment.getIcon(Element.PIT) + " |";
+        DANGERS[3] = "   " + Environment.getIcon(Element.GOLD) + " |";
+    }
+
+    private final World world;
+    private String border, borderAll;
+    private String frame, frameAll;
+    private int version = -1, versionAll = -1;
+
+    /**
+     * The renderer constructor.
+     * @param world The world to render
+     */
+    Renderer(World world) {
+        this.world = world;
+    }
+
+    /**
+     * Returns the simplified version of the game board, only the hunter is shown.
+     * @return The board representation
+     */
+    String render() {
+        if (frame == null || version != world.getVersion()) {
+            StringBuilder out = new StringBuilder(world.getWidth() * world.getHeight() * 10);
+            try {
+                render(out);
+            } catch (IOException error) {
+                throw new InternalError(error.getMessage(), error);
+            }
+            frame = out.toString();
+            version = world.getVersion();
+        }
+        return frame;
+    }
+
+    /**
+     * Returns the simplified version of a board with a single hunter, e.g. for a player detached
+     * from its world.
+     * @param width The board width
+     * @param height The board height
+     * @param tile The position of the hunter
+     * @param player The hunter
+     * @return The board representation
+     */
+    static String render(int width, int height, int tile, Player player) {
+        String border = getBorder(width, "---+");
+        StringBuilder out = new StringBuilder(width * height * 10);
+        for (int y = 0; y < height; y++) {
+            out.append(border).append('\n');
+            out.append('|');
+            for (int x = 0; x < width; x++) {
+                out.append(HUNTERS[y * width + x == tile ? getHunter(player) : 0]);
+            }
+            out.append('\n');
+        }
+        return out.append(border).toString();
+    }
+
+    /**
+     * Writes the simplified version of the game board, only the hunter is shown.
+     * @param out The output
+     * @throws IOException
+     */
+    void render(Appendable out) throws IOException {
+        int width = world.getWidth();
+        int height = world.getHeight();
+        if (border == null) border = getBorder(width, "---+");
+        int hunter = getHunter(world.getPlayer());
+
+        for (int y = 0; y < height; y++) {
+            out.append(border).append('\n');
+            out.append('|');
+            for (int x = 0; x < width; x++) {
+                boolean here = world.hasElement(Element.HUNTER, world.getIndex(x, y));
+                out.append(HUNTERS[here ? hunter : 0]);
+            }
+            out.append('\n');
+        }
+        out.append(border);
+    }
+
+    /**
+     * Returns the full game board.
+     * @return The board representation
+     */
+    String renderAll() {
+        if (frameAll == null || versionAll != world.getVersion()) {
+            StringBuilder out = new StringBuilder(world.getWidth() * world.getHeight() * 20);
+            try {
+                renderAll(out);
+            } catch (IOException error) {
+                throw new InternalError(error.getMessage(), error);
+            }
+            frameAll = out.toString();
+            versionAll = world.getVersion();
+        }
+        return frameAll;
+    }
+
+    /**
+     * Writes the full game board.
+     * @param out The output
+     * @throws IOException
+     */
+    void renderAll(Appendable out) throws IOException {
+        int width = world.getWidth();
+        int height = world.getHeight();
+        if (borderAll == null) borderAll = getBorder(width, "-----+");
+        int hunter = getHunter(world.getPlayer());
+
+        for (int y = 0; y < height; y++) {
+            out.append(borderAll).append('\n');
+            // The dangers line
+            out.append('|');
+            for (int x = 0; x < width; x++) {
+                out.append(DANGERS[getDanger(world.getIndex(x, y))]);
+            }
+            out.append('\n');
+            // The hunter and perceptions line
+            out.append('|');
+            for (int x = 0; x < width; x++) {
+                int index = world.getIndex(x, y);
+                boolean here = world.hasElement(Element.HUNTER, index);
+                out.append(SENSES[(here ? hunter : 0) * 4 + getSense(index)]);
+            }
+            out.append('\n');
+        }
+        out.append(borderAll);
+    }
+
+    /**
+     * Returns the border line of the board.
+     * @param width The board width
+     * @param block The border of each block
+     * @return The border line
+     */
+    private static String getBorder(int width, String block) {
+        StringBuilder border = new StringBuilder(1 + width * block.length());
+        border.append('+');
+        for (int i = 0; i < width; i++) {
+            border.append(block);
+        }
+        return border.toString();
+    }
+
+    /**
+     * Returns the hunter glyph based in the player direction or if its dead.
+     * @param player The hunter
+     * @return The glyph index
+     */
+    private static int getHunter(Player player) {
+        if (player.isDead()) return HUNTER_GLYPHS - 1;
+        return player.getDirection().ordinal() + 1;
+    }
+
+    /**
+     * Returns the danger glyph of a block, the Wumpus first, then the pit and the gold.
+     * @param index The block position
+     * @return The glyph index
+     */
+    private int getDanger(int index) {
+        if (world.hasElement(Element.WUMPUS, index)) return 1;
+        if (world.hasElement(Element.PIT, index)) return 2;
+        if (world.hasElement(Element.GOLD, index)) return 3;
+        return 0;
+    }
+
+    /**
+     * Returns the perception glyph of a block, the glitter first, then the first neighbor with
+     * some danger in clockwise order {N, E, S, W}.
+     * @param index The block position
+     * @return The glyph index
+     */
+    private int getSense(int index) {
+        if (world.hasElement(Element.GOLD, index)) return 1;
+        for (Direction direction : World.DIRECTIONS) {
+            int neighbor = world.getNeighbor(index, direction);
+            if (neighbor == -1) continue;
+            if (world.hasElement(Element.WUMPUS, neighbor)) return 2;
+            if (world.hasElement(Element.PIT, neighbor)) return 3;
+        }
+        return 0;
+    }
+}
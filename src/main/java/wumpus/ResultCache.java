@@ -0,0 +1,198 @@
+package wumpus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import wumpus.Environment.Result;
+
+/**
+ * Keeps the outcome of the games by their {@link LayoutKey}, so a tournament can skip the boards it
+ * has already played, see {@link Tournament#setCache}. The random 4x4 boards come from a few
+ * thousand layouts, so most games of a large tournament are repeated ones, and with the mirror the
+ * boards started facing east and their mirrors started facing north are played once.
+ * <p>
+ * It only holds for deterministic agents, and for the mirror, agents that do not favor a side. The
+ * keys do not tell the agents apart, so the cache is bound to the factory of the first tournament
+ * that plays with it, and refuses any other until cleared. The least recently used outcomes are evicted once the capacity is reached, from each of the stripes
+ * the keys are spread to, so the threads of a tournament rarely wait on each other.
+ */
+public class ResultCache {
+    private static final int STRIPES = 16;
+
+    private final boolean mirror;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private Tournament.AgentFactory factory;
+
+    /**
+     * The outcome of a game.
+     */
+    static final class Outcome {
+        final Result result;
+        final boolean dead;
+        final int score;
+        final int steps;
+
+        Outcome(World world) {
+            Player player = world.getPlayer();
+            result = world.getResult();
+            dead = player.isDead();
+            score = player.getScore();
+            steps = player.getActions().size();
+        }
+    }
+
+    /**
+     * The outcomes of the keys of a stripe, in the order they were used.
+     */
+    private static final class Stripe extends LinkedHashMap<LayoutKey, Outcome> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<LayoutKey, Outcome> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Creates a cache of the exact boards.
+     * @param capacity The number of outcomes kept
+     */
+    public ResultCache(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * The result cache constructor.
+     * @param capacity The number of outcomes kept
+     * @param mirror Weather square boards share the outcome with their mirror
+     */
+    public ResultCache(int capacity, boolean mirror) {
+        if (capacity < 1) throw new IllegalArgumentException("The capacity must be positive.");
+        this.mirror = mirror;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(Math.max(1, (capacity + STRIPES - 1) / STRIPES));
+        }
+    }
+
+    /**
+     * Returns weather square boards share the outcome with their mirror.
+     * @return <tt>true</tt> if mirrored
+     */
+    public boolean isMirror() {
+        return mirror;
+    }
+
+    /**
+     * Binds the cache to the factory of the agents whose outcomes it keeps, on the first call.
+     * @param value The agent factory
+     * @throws IllegalStateException When the cache is bound to another factory
+     */
+    synchronized void bind(Tournament.AgentFactory value) {
+        if (factory == null) {
+            factory = value;
+        } else if (factory != value) {
+            throw new IllegalStateException("The cache keeps the outcomes of another agent factory.");
+        }
+    }
+
+    /**
+     * Returns the key of the board of a world, as it is before the first action.
+     * @param world The world instance
+     * @return The key
+     */
+    LayoutKey getKey(World world) {
+        return LayoutKey.of(world, mirror);
+    }
+
+    /**
+     * Returns the outcome of a board.
+     * @param key The key of the board
+     * @return The outcome or null if not kept
+     */
+    Outcome get(LayoutKey key) {
+        Stripe stripe = getStripe(key);
+        Outcome outcome;
+        synchronized (stripe) {
+            outcome = stripe.get(key);
+        }
+        if (outcome != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return outcome;
+    }
+
+    /**
+     * Keeps the outcome of the game just played on a board.
+     * @param key The key of the board
+     * @param world The world instance
+     */
+    void put(LayoutKey key, World world) {
+        Outcome outcome = new Outcome(world);
+        Stripe stripe = getStripe(key);
+        synchronized (stripe) {
+            stripe.put(key, outcome);
+        }
+    }
+
+    private Stripe getStripe(LayoutKey key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return stripes[hash >>> 28];
+    }
+
+    /**
+     * Returns the number of games found at the cache.
+     * @return The hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of games not found at the cache, which were played.
+     * @return The misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of outcomes kept.
+     * @return The size
+     */
+    public int getSize() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Forgets every outcome kept, the hits and misses so far and the factory bound, so the cache
+     * can be used with another agent.
+     */
+    public void clear() {
+        synchronized (this) {
+            factory = null;
+        }
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+}
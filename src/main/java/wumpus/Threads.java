@@ -0,0 +1,37 @@
+package wumpus;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads of the tasks that spend most of their time waiting, e.g. for an agent or a
+ * socket.
+ */
+final class Threads {
+    private Threads() {}
+
+    /**
+     * Returns an executor that runs each task on a new virtual thread when the Java runtime has
+     * them, since Java 21, or on a cached pool of daemon threads otherwise.
+     * @param name The name of the threads
+     * @return The executor
+     */
+    static ExecutorService newPerTaskExecutor(final String name) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException error) {
+            final AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+}
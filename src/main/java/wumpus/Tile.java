@@ -5,11 +5,14 @@ import java.util.HashSet;
 import wumpus.Environment.Element;
 
 /**
- * Describes a single board block, that holds information on what have in.
+ * Describes a single board block, that holds information on what have in. The elements are either
+ * kept by the tile itself or read from a shared {@link Bitboard} when the world uses packed storage.
  */
 public class Tile {
     private int x, y, w, h;
-    private HashSet<Environment.Element> elements = new HashSet<Element>();
+    private HashSet<Environment.Element> elements;
+    private final Bitboard board;
+    private final World world;
 
     /**
      * The Tile constructor.
@@ -18,11 +21,29 @@ public class Tile {
      * @param height The height of the board
      */
     public Tile(int position, int width, int height) {
+        this(position, width, height, null, null);
+    }
+
+    /**
+     * The Tile constructor for a block of a world.
+     * @param position The linear position in the board
+     * @param width The width of the board
+     * @param height The height of the board
+     * @param board The packed board storage or null to keep the elements in the tile
+     * @param world The world notified of the changes or null if none
+     */
+    Tile(int position, int width, int height, Bitboard board, World world) {
         x = position % width;
         y = position / width;
         w = width;
         h = height;
-        clear();
+        this.board = board;
+        this.world = world;
+        // A view over the board must not change what is already placed
+        if (board == null) {
+            elements = new HashSet<Element>();
+            clear();
+        }
     }
 
     /**
@@ -79,7 +100,12 @@ public class Tile {
      * Resets all elements on this block.
      */
     public void clear() {
-        elements.clear();
+        if (world != null) world.modified();
+        if (board != null) {
+            board.clearAll(getIndex());
+        } else {
+            elements.clear();
+        }
     }
 
     /**
@@ -87,7 +113,12 @@ public class Tile {
      * @param item The item to remove
      */
     public void remove(Environment.Element item) {
-        elements.remove(item);
+        if (world != null) world.modified();
+        if (board != null) {
+            board.clear(item.ordinal(), getIndex());
+        } else {
+            elements.remove(item);
+        }
     }
 
     /**
@@ -95,6 +126,7 @@ public class Tile {
      * @return <tt>true</tt> if contains no elements
      */
     public boolean isEmpty() {
+        if (board != null) return board.isEmpty(getIndex());
         return elements.isEmpty();
     }
 
@@ -104,6 +136,7 @@ public class Tile {
      * @return <tt>true</tt> if not contains the given element
      */
     public boolean contains(Element element) {
+        if (board != null) return board.get(element.ordinal(), getIndex());
         return elements.contains(element);
     }
 
@@ -112,6 +145,11 @@ public class Tile {
      * @param element The element
      */
     public void setItem(Element element)  {
-        elements.add(element);
+        if (world != null) world.modified();
+        if (board != null) {
+            board.set(element.ordinal(), getIndex());
+        } else {
+            elements.add(element);
+        }
     }
 }
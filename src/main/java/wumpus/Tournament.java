@@ -0,0 +1,522 @@
+package wumpus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import wumpus.Environment.Result;
+
+/**
+ * Plays many games of the same world specification across all cores. Each worker thread owns its
+ * own World instance, and every game is played by a fresh agent created from a factory.
+ */
+public class Tournament {
+    private static final int GAMES_PER_TASK = 256;
+
+    /**
+     * Creates a new agent for each game, since agents usually keep state across the plays.
+     */
+    public interface AgentFactory {
+        /**
+         * Creates the agent that will play a single game.
+         * @param world The world the agent will play
+         * @return The agent instance
+         */
+        Agent create(World world);
+    }
+
+    private final int width;
+    private final int height;
+
+    private World.Storage storage = World.Storage.BITBOARD;
+    private int pits = -1;
+    private int wumpus = -1;
+    private int maxSteps = -1;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private Long seed = null;
+    private Player.Direction startDirection = null;
+    private final List<GameListener> listeners = new ArrayList<GameListener>();
+    private Metrics metrics;
+    private Deadline deadline;
+    private ResultCache cache;
+
+    /**
+     * Creates a tournament for worlds with given dimensions.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     */
+    public Tournament(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Sets the tile storage of the worlds.
+     * @param value The storage
+     */
+    public void setStorage(World.Storage value) {
+        storage = value;
+    }
+
+    /**
+     * Set the number of pits on each board.
+     * @param value
+     */
+    public void setPits(int value) {
+        pits = value;
+    }
+
+    /**
+     * Set the number of Wumpus on each board.
+     * @param value
+     */
+    public void setWumpus(int value) {
+        wumpus = value;
+    }
+
+    /**
+     * Sets the maximus steps to finish each game.
+     * @param value
+     */
+    public void setMaxSteps(int value) {
+        maxSteps = value;
+    }
+
+    /**
+     * Sets the number of threads playing the games, defaults to the available processors.
+     * @param value
+     */
+    public void setParallelism(int value) {
+        parallelism = value;
+    }
+
+    /**
+     * Sets the seed of the tournament, so that every game board is reproducible no matter which
+     * thread plays it.
+     * @param value The seed
+     */
+    public void setSeed(long value) {
+        seed = value;
+    }
+
+    /**
+     * Sets the direction the players face at the start of each game, the east by default.
+     * @param value The start direction
+     */
+    public void setStartDirection(Player.Direction value) {
+        startDirection = value;
+    }
+
+    /**
+     * Sets the cache of the outcomes of the boards already played, so the games on the same board,
+     * or its mirror, are counted without playing them again. The agents must be deterministic, and
+     * since the games found are not played, it cannot be combined with listeners or metrics. The
+     * cache is bound to the factory of the first games played with it, see {@link ResultCache}.
+     * @param value The cache
+     */
+    public void setCache(ResultCache value) {
+        cache = value;
+    }
+
+    /**
+     * Registers a listener of the game events at the world of every thread. Since it is called from
+     * all of them at once it must be thread safe, e.g. the {@link TraceRecorder}.
+     * @param listener The listener
+     */
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the metrics to measure the games of every thread.
+     * @param value The metrics
+     */
+    public void setMetrics(Metrics value) {
+        metrics = value;
+    }
+
+    /**
+     * Sets the time each agent has to decide its actions at every thread.
+     * @param value The deadline
+     */
+    public void setDeadline(Deadline value) {
+        deadline = value;
+    }
+
+    /**
+     * Returns the board seed of a game of the tournament.
+     * @param seed The tournament seed
+     * @param game The game number
+     * @return The game seed
+     */
+    public static long getSeed(long seed, long game) {
+        // The SplitMix64 finalizer, so that close games do not share their random streams
+        long z = seed + game * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Plays the games and returns the aggregated statistics.
+     * @param factory The agent factory
+     * @param games The number of games to play
+     * @return The statistics of all games
+     * @throws InterruptedException When a world cannot be generated
+     */
+    public Stats play(AgentFactory factory, int games) throws InterruptedException {
+        return play(factory, games, null);
+    }
+
+    /**
+     * Returns the number of legal boards of the tournament specification, i.e. the games played by
+     * {@link #playAll}.
+     * @return The number of layouts
+     * @throws InterruptedException When a world cannot be created
+     * @throws IllegalArgumentException When there are too many to enumerate
+     */
+    public int getLayoutCount() throws InterruptedException {
+        return new Layouts(createWorld()).getCount();
+    }
+
+    /**
+     * Plays a game on every legal board of the tournament specification once, with the elements
+     * placed away from the start position and its neighbors as the random boards are. Since those
+     * are drawn uniformly from the same boards, the statistics of a deterministic agent are the
+     * exact expectation of the random games, with no sampling error, e.g. from 8580 games on 4x4.
+     * @param factory The agent factory
+     * @return The statistics of all layouts
+     * @throws InterruptedException When a world cannot be created
+     * @throws IllegalArgumentException When there are too many layouts to enumerate
+     */
+    public Stats playAll(AgentFactory factory) throws InterruptedException {
+        Layouts layouts = new Layouts(createWorld());
+        return play(factory, layouts.getCount(), layouts);
+    }
+
+    private Stats play(AgentFactory factory, int games, Layouts layouts) throws InterruptedException {
+        if (cache != null && (!listeners.isEmpty() || metrics != null)) {
+            throw new IllegalStateException("The listeners and metrics would miss the games found at the cache.");
+        }
+        if (cache != null) cache.bind(factory);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long start = System.nanoTime();
+        try {
+            Stats stats = pool.invoke(new Games(factory, layouts, 0, games));
+            stats.setElapsed(System.nanoTime() - start);
+            return stats;
+        } catch (InternalError error) {
+            if (error.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) error.getCause();
+            }
+            throw error;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Creates a new world following the tournament specification.
+     * @return The world instance
+     * @throws InterruptedException
+     */
+    protected World createWorld() throws InterruptedException {
+        World world = new World(width, height, storage);
+        if (pits >= 0) world.setPits(pits);
+        if (wumpus >= 0) world.setWumpus(wumpus);
+        if (maxSteps >= 0) world.setMaxSteps(maxSteps);
+        if (startDirection != null) world.setStartDirection(startDirection);
+        return world;
+    }
+
+    /**
+     * A range of games that is split until small enough to be played by a single thread, either on
+     * random boards or on the layouts of the same numbers.
+     */
+    private class Games extends RecursiveTask<Stats> {
+        private static final long serialVersionUID = 1L;
+        private final AgentFactory factory;
+        private final Layouts layouts;
+        private final int from, to;
+
+        Games(AgentFactory factory, Layouts layouts, int from, int to) {
+            this.factory = factory;
+            this.layouts = layouts;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected Stats compute() {
+            if (to - from > GAMES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                Games left = new Games(factory, layouts, from, middle);
+                left.fork();
+                Stats stats = new Games(factory, layouts, middle, to).compute();
+                stats.merge(left.join());
+                return stats;
+            }
+            Stats stats = new Stats();
+            try {
+                // The world is confined to this thread
+                World world = createWorld();
+                for (GameListener listener : listeners) world.addListener(listener);
+                world.setMetrics(metrics);
+                world.setDeadline(deadline);
+                for (int i = from; i < to; i++) {
+                    if (layouts != null) {
+                        layouts.set(world, i);
+                    } else if (seed != null) {
+                        world.setSeed(getSeed(seed, i));
+                    }
+                    LayoutKey key = null;
+                    if (cache != null) {
+                        world.prepare();
+                        key = cache.getKey(world);
+                        ResultCache.Outcome outcome = cache.get(key);
+                        if (outcome != null) {
+                            stats.add(outcome);
+                            continue;
+                        }
+                    }
+                    Agent agent = factory.create(world);
+                    try {
+                        world.execute(agent);
+                    } catch (RuntimeException error) {
+                        stats.addError(error);
+                        continue;
+                    }
+                    if (stats.agentName == null) stats.agentName = world.getAgentName();
+                    stats.add(world);
+                    // The fallback actions depend on the timing, so those games are not repeatable
+                    if (key != null && world.getTimeouts() == 0) cache.put(key, world);
+                }
+            } catch (InterruptedException error) {
+                throw new InternalError(error.getMessage(), error);
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * The aggregated results of the games played.
+     */
+    public static class Stats {
+        private String agentName;
+        private long games = 0;
+        private long wins = 0;
+        private long deaths = 0;
+        private long errors = 0;
+        private long mismatches = 0;
+        private long timeouts = 0;
+        private long overruns = 0;
+        private long score = 0;
+        private long scoreSquares = 0;
+        private long steps = 0;
+        private long elapsed = 0;
+        private RuntimeException failure;
+
+        /**
+         * Adds the outcome of the last game played in the world.
+         * @param world The world instance
+         */
+        void add(World world) {
+            add(world.getPlayer(), world.getResult());
+            timeouts += world.getTimeouts();
+            if (world.isOverrun()) overruns++;
+        }
+
+        /**
+         * Adds the outcome of a player of the last game played.
+         * @param player The player instance
+         * @param result The outcome of the player
+         */
+        void add(Player player, Result result) {
+            add(result, player.isDead(), player.getScore(), player.getActions().size());
+        }
+
+        /**
+         * Adds the outcome of a game kept at a cache.
+         * @param outcome The outcome
+         */
+        void add(ResultCache.Outcome outcome) {
+            add(outcome.result, outcome.dead, outcome.score, outcome.steps);
+        }
+
+        private void add(Result result, boolean dead, int score, int steps) {
+            games++;
+            if (result == Result.WIN) wins++;
+            if (dead) deaths++;
+            this.score += score;
+            scoreSquares += (long) score * score;
+            this.steps += steps;
+        }
+
+        /**
+         * Counts a game aborted by an agent error.
+         */
+        void addError() {
+            errors++;
+        }
+
+        /**
+         * Counts a game aborted by an agent error, keeping the first one.
+         * @param error The error thrown
+         */
+        void addError(RuntimeException error) {
+            errors++;
+            if (failure == null) failure = error;
+        }
+
+        /**
+         * Counts a game replayed from a trace whose outcome or score differ from the recorded.
+         */
+        void addMismatch() {
+            mismatches++;
+        }
+
+        /**
+         * Sets the elapsed time to play all games.
+         * @param value The elapsed time in nanoseconds
+         */
+        void setElapsed(long value) {
+            elapsed = value;
+        }
+
+        /**
+         * Adds the statistics of other games.
+         * @param other The other statistics
+         */
+        void merge(Stats other) {
+            if (agentName == null) agentName = other.agentName;
+            if (failure == null) failure = other.failure;
+            games += other.games;
+            wins += other.wins;
+            deaths += other.deaths;
+            errors += other.errors;
+            mismatches += other.mismatches;
+            timeouts += other.timeouts;
+            overruns += other.overruns;
+            score += other.score;
+            scoreSquares += other.scoreSquares;
+            steps += other.steps;
+        }
+
+        /**
+         * Returns the agent class name.
+         * @return The agent name
+         */
+        public String getAgentName() { return agentName; }
+
+        /**
+         * Returns the number of games that have finished.
+         * @return The number of games
+         */
+        public long getGames() { return games; }
+
+        /**
+         * Returns the number of games won.
+         * @return The number of wins
+         */
+        public long getWins() { return wins; }
+
+        /**
+         * Returns the number of games where the player died.
+         * @return The number of deaths
+         */
+        public long getDeaths() { return deaths; }
+
+        /**
+         * Returns the number of games aborted by an agent error.
+         * @return The number of errors
+         */
+        public long getErrors() { return errors; }
+
+        /**
+         * Returns the first error that aborted a game, to find out why the agent failed.
+         * @return The error or null if none
+         */
+        public RuntimeException getFailure() { return failure; }
+
+        /**
+         * Returns the number of actions taken as the fallback of the deadline, since the agent was
+         * late to decide.
+         * @return The number of timeouts
+         */
+        public long getTimeouts() { return timeouts; }
+
+        /**
+         * Returns the number of games where the agent took longer to decide than the game budget of
+         * the deadline.
+         * @return The number of overruns
+         */
+        public long getOverruns() { return overruns; }
+
+        /**
+         * Returns the number of games replayed from traces whose outcome or score differ from the
+         * recorded ones, e.g. after a change of the score rules.
+         * @return The number of mismatches
+         */
+        public long getMismatches() { return mismatches; }
+
+        /**
+         * Returns the ratio of games won.
+         * @return The win rate
+         */
+        public double getWinRate() { return games == 0 ? 0 : (double) wins / games; }
+
+        /**
+         * Returns the mean score of the games.
+         * @return The mean score
+         */
+        public double getMeanScore() { return games == 0 ? 0 : (double) score / games; }
+
+        /**
+         * Returns the standard deviation of the scores of the games.
+         * @return The score deviation
+         */
+        public double getScoreDeviation() {
+            if (games == 0) return 0;
+            double mean = getMeanScore();
+            return Math.sqrt(Math.max(0, (double) scoreSquares / games - mean * mean));
+        }
+
+        /**
+         * Returns the mean steps of the games.
+         * @return The mean steps
+         */
+        public double getMeanSteps() { return games == 0 ? 0 : (double) steps / games; }
+
+        /**
+         * Returns the elapsed time to play all games in nanoseconds.
+         * @return The elapsed time
+         */
+        public long getElapsed() { return elapsed; }
+
+        /**
+         * Returns how many games were played per second.
+         * @return The throughput
+         */
+        public double getGamesPerSecond() {
+            return elapsed == 0 ? 0 : (games + errors) / (elapsed / 1e9);
+        }
+
+        /**
+         * Renders the statistics table as a ASCII string, followed by the first error if any game
+         * was aborted.
+         * @return The statistics table
+         */
+        public String render() {
+            String table = String.format(
+                    "+-----------------------------------------------------------------------------------------------+%n" +
+                    "| Games      | Win rate | Mean score | Mean steps | Errors | Timeouts | Overruns | Games/sec    |%n" +
+                    "| ---------- | -------- | ---------- | ---------- | ------ | -------- | -------- | ------------ |%n" +
+                    "| %10d | %7.2f%% | %10.2f | %10.2f | %6d | %8d | %8d | %12.1f |%n" +
+                    "+-----------------------------------------------------------------------------------------------+%n",
+                    games, getWinRate() * 100, getMeanScore(), getMeanSteps(), errors, timeouts, overruns,
+                    getGamesPerSecond()
+                );
+            return failure == null ? table : table + String.format("First error: %s%n", failure);
+        }
+    }
+}
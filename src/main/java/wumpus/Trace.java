@@ -0,0 +1,154 @@
+package wumpus;
+
+import java.nio.ByteBuffer;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Element;
+
+/**
+ * The binary format of the game traces. A trace segment starts with a header followed by one
+ * record per game, each one prefixed by its length, until a zero length or the end of the file:
+ * <pre>
+ *     segment = magic:int32 version:int32 record*
+ *     record  = length:varint width:varint height:varint direction:byte layer{3} steps:varint
+ *               actions outcome:byte score:zigzag
+ *     layer   = count:varint (bitmap | delta:varint{count})
+ * </pre>
+ * The direction is the ordinal of the one the player faces at the start, the segments of the first
+ * version have none and start facing the east. The layers are the Wumpus, the pits and the gold as
+ * placed at the start of the game. A layer with at least one element every 8 tiles is kept as a
+ * bitmap of the tiles, otherwise as the positions in ascending order, each one as the difference to
+ * the previous. The actions are their 3-bit ordinals packed from the lowest bit of each byte, the
+ * outcome has the {@link #WIN} and {@link #DEAD} flags and the score is zigzag encoded so small
+ * negatives stay small.
+ */
+final class Trace {
+    /**
+     * The first bytes of every segment, i.e. <tt>WTRC</tt>.
+     */
+    static final int MAGIC = 0x57545243;
+    static final int VERSION = 2;
+    // The first version, without the start direction
+    static final int VERSION_EAST = 1;
+    static final int HEADER_SIZE = 8;
+    static final Element[] LAYERS = {Element.WUMPUS, Element.PIT, Element.GOLD};
+    static final int ACTION_BITS = 3;
+    static final int MAX_VARINT_SIZE = 5;
+    static final int WIN = 1;
+    static final int DEAD = 2;
+    private static final Action[] ACTIONS = Action.values();
+
+    private Trace() {}
+
+    /**
+     * Returns weather a layer is kept as a bitmap instead of a list of positions.
+     * @param count The number of elements in the layer
+     * @param size The number of tiles
+     * @return <tt>true</tt> for the bitmap
+     */
+    static boolean isBitmap(int count, int size) {
+        return (long) count * 8 >= size;
+    }
+
+    /**
+     * Returns the bytes of the packed actions.
+     * @param steps The number of actions
+     * @return The number of bytes
+     */
+    static int getActionsSize(int steps) {
+        return (int) (((long) steps * ACTION_BITS + 7) >> 3);
+    }
+
+    /**
+     * Writes an unsigned varint, 7 bits per byte with the highest bit set when more follow.
+     * @param buffer The output
+     * @param offset The position to write
+     * @param value The value
+     * @return The position after the value
+     */
+    static int putVarint(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Returns the bytes needed by a varint.
+     * @param value The value
+     * @return The number of bytes
+     */
+    static int getVarintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Maps a signed value to an unsigned one so that small negatives have short varints.
+     * @param value The signed value
+     * @return The zigzag value
+     */
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Maps a zigzag value back to the signed one.
+     * @param value The zigzag value
+     * @return The signed value
+     */
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads an unsigned varint from the current position.
+     * @param buffer The input
+     * @return The value
+     */
+    static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Reads an unsigned varint at an absolute position.
+     * @param buffer The input
+     * @param offset The position to read
+     * @return The value
+     */
+    static int getVarint(ByteBuffer buffer, int offset) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = buffer.get(offset++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Reads a packed action.
+     * @param buffer The input
+     * @param offset The position of the packed actions
+     * @param index The action number
+     * @return The action
+     */
+    static Action getAction(ByteBuffer buffer, int offset, int index) {
+        int bit = index * ACTION_BITS;
+        int at = offset + (bit >> 3);
+        int bits = buffer.get(at) & 0xFF;
+        // The code may cross to the next byte
+        if ((bit & 7) > 8 - ACTION_BITS) bits |= (buffer.get(at + 1) & 0xFF) << 8;
+        return ACTIONS[bits >> (bit & 7) & 7];
+    }
+}
@@ -0,0 +1,299 @@
+package wumpus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Element;
+import wumpus.Environment.Result;
+
+/**
+ * Records every game played as a compact binary trace, see {@link Trace} for the format. The board
+ * is kept once per game and each action as 3 bits, so a 4x4 game takes about 20 bytes.
+ * <p>
+ * The traces are appended to memory mapped segment files that roll over when full, named as
+ * <tt>prefix-writer-segment.trace</tt>. Each thread builds the record of its game on its own, and
+ * appends it to the segment of one of a fixed number of writers, twice the processors, picked by
+ * the thread id, holding the lock of that writer only while copying it. So the same recorder can
+ * listen to the worlds of every tournament thread, or of a server with a thread per connection,
+ * with as many segments mapped at once, and the games are only copied to the page cache, leaving
+ * the disk writes to the operating system.
+ */
+public class TraceRecorder extends GameAdapter implements Closeable {
+    /**
+     * The default size of the segment files, 64MB.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    // The room left at the start of a record for its length
+    private static final int LENGTH_SIZE = Trace.MAX_VARINT_SIZE;
+    private static final int WRITERS =
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+
+    private final File directory;
+    private final String prefix;
+    private final int segmentSize;
+    private final Writer[] writers = new Writer[WRITERS];
+    private final List<File> files = new ArrayList<File>();
+    private volatile boolean closed = false;
+    private final ThreadLocal<Game> game = new ThreadLocal<Game>() {
+        protected Game initialValue() {
+            return new Game();
+        }
+    };
+
+    /**
+     * Creates a recorder with the default segment size.
+     * @param directory The directory of the segment files
+     * @param prefix The name prefix of the segment files
+     * @throws IOException When the directory cannot be created
+     */
+    public TraceRecorder(File directory, String prefix) throws IOException {
+        this(directory, prefix, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * The recorder constructor.
+     * @param directory The directory of the segment files
+     * @param prefix The name prefix of the segment files
+     * @param segmentSize The size of each segment file in bytes
+     * @throws IOException When the directory cannot be created
+     */
+    public TraceRecorder(File directory, String prefix, int segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the trace directory " + directory);
+        }
+        if (segmentSize <= Trace.HEADER_SIZE) {
+            throw new IllegalArgumentException("The segment size must be greater than the header.");
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        for (int i = 0; i < WRITERS; i++) writers[i] = new Writer(i);
+    }
+
+    /**
+     * Starts recording the game at the current thread, keeping the board placed.
+     * @param world The world instance
+     */
+    public void onEpisodeStart(World world) {
+        game.get().start(world);
+    }
+
+    /**
+     * Records the action taken.
+     * @param player The player instance
+     * @param action The action taken
+     */
+    public void onStep(Player player, Action action) {
+        game.get().step(action);
+    }
+
+    /**
+     * Appends the game recorded at the current thread to the segment of its writer.
+     * @param world The world instance
+     * @param result The outcome of the game
+     */
+    public void onEpisodeEnd(World world, Result result) {
+        if (closed) throw new IllegalStateException("The trace recorder is closed.");
+        try {
+            game.get().end(world, result);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    /**
+     * Returns the number of games recorded by all threads. Exact only once the games have ended.
+     * @return The number of games
+     */
+    public long getGames() {
+        long games = 0;
+        for (Writer writer : writers) {
+            synchronized (writer) {
+                games += writer.games;
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Returns the segment files created so far, in the order they were created.
+     * @return The segment files
+     */
+    public List<File> getFiles() {
+        synchronized (files) {
+            return new ArrayList<File>(files);
+        }
+    }
+
+    /**
+     * Truncates the open segments to the recorded games and closes them. It must be called once
+     * the games have ended, e.g. after {@link Tournament#play}.
+     * @throws IOException When a segment cannot be truncated
+     */
+    public void close() throws IOException {
+        closed = true;
+        IOException failure = null;
+        for (Writer writer : writers) {
+            synchronized (writer) {
+                try {
+                    writer.finish();
+                } catch (IOException error) {
+                    if (failure == null) failure = error;
+                }
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * The game that a single thread is recording.
+     */
+    private final class Game {
+        // The record of the current game, from the board to the end of the last action
+        private byte[] record = new byte[64];
+        private int boardEnd;
+        private byte[] actions = new byte[16];
+        private int steps;
+        private boolean recording = false;
+
+        void start(World world) {
+            int size = world.getWidth() * world.getHeight();
+            int at = LENGTH_SIZE;
+            ensure(at + 2 * Trace.MAX_VARINT_SIZE + 1);
+            at = Trace.putVarint(record, at, world.getWidth());
+            at = Trace.putVarint(record, at, world.getHeight());
+            record[at++] = (byte) world.getStartDirection().ordinal();
+            for (Element element : Trace.LAYERS) {
+                int count = 0;
+                for (int i = world.nextItem(element, 0); i != -1; i = world.nextItem(element, i + 1)) {
+                    count++;
+                }
+                ensure(at + Trace.MAX_VARINT_SIZE);
+                at = Trace.putVarint(record, at, count);
+                if (Trace.isBitmap(count, size)) {
+                    int bytes = (size + 7) >> 3;
+                    ensure(at + bytes);
+                    Arrays.fill(record, at, at + bytes, (byte) 0);
+                    for (int i = world.nextItem(element, 0); i != -1; i = world.nextItem(element, i + 1)) {
+                        record[at + (i >> 3)] |= 1 << (i & 7);
+                    }
+                    at += bytes;
+                } else {
+                    int previous = 0;
+                    for (int i = world.nextItem(element, 0); i != -1; i = world.nextItem(element, i + 1)) {
+                        ensure(at + Trace.MAX_VARINT_SIZE);
+                        at = Trace.putVarint(record, at, i - previous);
+                        previous = i;
+                    }
+                }
+            }
+            boardEnd = at;
+            Arrays.fill(actions, 0, Trace.getActionsSize(steps), (byte) 0);
+            steps = 0;
+            recording = true;
+        }
+
+        void step(Action action) {
+            if (!recording) return;
+            int bit = steps * Trace.ACTION_BITS;
+            int index = bit >> 3;
+            if (index + 1 >= actions.length) actions = Arrays.copyOf(actions, actions.length * 2);
+            int code = action.ordinal() << (bit & 7);
+            actions[index] |= code;
+            // The code may cross to the next byte
+            actions[index + 1] |= code >> 8;
+            steps++;
+        }
+
+        void end(World world, Result result) throws IOException {
+            if (!recording) return;
+            recording = false;
+            Player player = world.getPlayer();
+            int packed = Trace.getActionsSize(steps);
+            int at = boardEnd;
+            ensure(at + packed + 2 * Trace.MAX_VARINT_SIZE + 1);
+            at = Trace.putVarint(record, at, steps);
+            System.arraycopy(actions, 0, record, at, packed);
+            at += packed;
+            int outcome = result == Result.WIN ? Trace.WIN : 0;
+            if (player.isDead()) outcome |= Trace.DEAD;
+            record[at++] = (byte) outcome;
+            at = Trace.putVarint(record, at, Trace.zigzag(player.getScore()));
+
+            // The length goes right before the record
+            int length = at - LENGTH_SIZE;
+            int from = LENGTH_SIZE - Trace.getVarintSize(length);
+            Trace.putVarint(record, from, length);
+            Writer writer = writers[(int) Thread.currentThread().getId() & (WRITERS - 1)];
+            synchronized (writer) {
+                writer.write(record, from, at - from);
+            }
+        }
+
+        private void ensure(int capacity) {
+            if (capacity > record.length) record = Arrays.copyOf(record, Math.max(capacity, record.length * 2));
+        }
+    }
+
+    /**
+     * The segments of the games appended by the threads of a stripe, only used while holding it.
+     */
+    private final class Writer {
+        private final int id;
+        private int segment = 0;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+        private long games = 0;
+
+        Writer(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Appends a record to the current segment, rolling to the next one if it does not fit.
+         */
+        void write(byte[] record, int from, int length) throws IOException {
+            if (buffer == null || buffer.remaining() < length) roll(length);
+            buffer.put(record, from, length);
+            games++;
+        }
+
+        /**
+         * Finishes the current segment and maps the next one, large enough for the record.
+         */
+        private void roll(int length) throws IOException {
+            finish();
+            File file = new File(directory, String.format("%s-%04d-%06d.trace", prefix, id, segment++));
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            long size = Math.max(segmentSize, (long) Trace.HEADER_SIZE + length);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(Trace.MAGIC).putInt(Trace.VERSION);
+            synchronized (files) {
+                files.add(file);
+            }
+        }
+
+        /**
+         * Cuts the unused end of the current segment, so the readers stop at the last game.
+         */
+        void finish() throws IOException {
+            if (channel == null) return;
+            try {
+                channel.truncate(buffer.position());
+            } finally {
+                channel.close();
+                channel = null;
+                buffer = null;
+            }
+        }
+    }
+}
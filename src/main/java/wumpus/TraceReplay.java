@@ -0,0 +1,267 @@
+package wumpus;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Element;
+import wumpus.Environment.Result;
+
+/**
+ * Plays again the games recorded by a {@link TraceRecorder}, driving the world with the actions
+ * taken and no agent at all. Each game is checked against its recorded outcome and score, so a
+ * change of the score rules can be measured over an old archive, and the registered listeners see
+ * the same events as in the original games, so new metrics can be computed from it.
+ * <p>
+ * The segments are read from memory mapped files and split in chunks of games that are replayed
+ * across all cores, each thread with its own worlds.
+ */
+public class TraceReplay {
+    private static final int GAMES_PER_TASK = 4096;
+    private static final Player.Direction[] DIRECTIONS = Player.Direction.values();
+
+    private final List<GameListener> listeners = new ArrayList<GameListener>();
+    private World.Storage storage = World.Storage.BITBOARD;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Registers a listener of the game events at the world of every thread. Since it is called from
+     * all of them at once it must be thread safe.
+     * @param listener The listener
+     */
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the tile storage of the worlds.
+     * @param value The storage
+     */
+    public void setStorage(World.Storage value) {
+        storage = value;
+    }
+
+    /**
+     * Sets the number of threads replaying the games, defaults to the available processors.
+     * @param value
+     */
+    public void setParallelism(int value) {
+        parallelism = value;
+    }
+
+    /**
+     * Replays every trace segment of a directory.
+     * @param directory The directory of the segment files
+     * @return The statistics of all games
+     * @throws IOException When a segment cannot be read
+     * @throws InterruptedException When a world cannot be created
+     */
+    public Tournament.Stats replay(File directory) throws IOException, InterruptedException {
+        File[] files = directory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(".trace");
+            }
+        });
+        if (files == null) throw new IOException("Cannot list the trace directory " + directory);
+        Arrays.sort(files);
+        return replay(Arrays.asList(files));
+    }
+
+    /**
+     * Replays the games of some trace segments.
+     * @param files The segment files
+     * @return The statistics of all games
+     * @throws IOException When a segment cannot be read
+     * @throws InterruptedException When a world cannot be created
+     */
+    public Tournament.Stats replay(List<File> files) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        for (File file : files) split(file, chunks);
+        if (chunks.isEmpty()) return new Tournament.Stats();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Tournament.Stats stats = pool.invoke(new Games(chunks, 0, chunks.size()));
+            stats.setElapsed(System.nanoTime() - start);
+            return stats;
+        } catch (InternalError error) {
+            if (error.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) error.getCause();
+            }
+            throw error;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Maps a segment and splits its games in chunks, only reading the length of each one.
+     * @param file The segment file
+     * @param chunks The chunks found
+     * @throws IOException When the file is not a valid segment
+     */
+    private static void split(File file, List<Chunk> chunks) throws IOException {
+        MappedByteBuffer buffer;
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // The mapping stays valid after the channel is closed
+            channel.close();
+        }
+        int limit = buffer.limit();
+        if (limit < Trace.HEADER_SIZE || buffer.getInt(0) != Trace.MAGIC) {
+            throw new IOException("Not a trace segment " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != Trace.VERSION && version != Trace.VERSION_EAST) {
+            throw new IOException("Unsupported trace version " + version + " of " + file);
+        }
+
+        int from = Trace.HEADER_SIZE, at = from, games = 0;
+        while (at < limit) {
+            int length = Trace.getVarint(buffer, at);
+            // A segment left open is padded with zeros
+            if (length == 0) break;
+            at += Trace.getVarintSize(length) + length;
+            if (at > limit) throw new IOException("Truncated trace segment " + file);
+            if (++games == GAMES_PER_TASK) {
+                chunks.add(new Chunk(buffer, version, from, at));
+                from = at;
+                games = 0;
+            }
+        }
+        if (games > 0) chunks.add(new Chunk(buffer, version, from, at));
+    }
+
+    /**
+     * A range of games of a segment.
+     */
+    private static final class Chunk {
+        private final ByteBuffer buffer;
+        private final int version;
+        private final int from, to;
+
+        Chunk(ByteBuffer buffer, int version, int from, int to) {
+            this.buffer = buffer;
+            this.version = version;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * A range of chunks that is split until small enough to be replayed by a single thread.
+     */
+    private class Games extends RecursiveTask<Tournament.Stats> {
+        private static final long serialVersionUID = 1L;
+        private final List<Chunk> chunks;
+        private final int from, to;
+
+        Games(List<Chunk> chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected Tournament.Stats compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                Games left = new Games(chunks, from, middle);
+                left.fork();
+                Tournament.Stats stats = new Games(chunks, middle, to).compute();
+                stats.merge(left.join());
+                return stats;
+            }
+            Tournament.Stats stats = new Tournament.Stats();
+            try {
+                new Replayer().replay(chunks.get(from), stats);
+            } catch (InterruptedException error) {
+                throw new InternalError(error.getMessage(), error);
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Replays the games of a chunk, keeping the world of the last board size.
+     */
+    private class Replayer {
+        private World world;
+        private int[] positions = new int[16];
+        private Action[] actions = new Action[64];
+
+        void replay(Chunk chunk, Tournament.Stats stats) throws InterruptedException {
+            // Each thread reads its own view of the shared mapping
+            ByteBuffer buffer = chunk.buffer.duplicate();
+            buffer.position(chunk.from);
+            while (buffer.position() < chunk.to) {
+                int length = Trace.getVarint(buffer);
+                int end = buffer.position() + length;
+                World world = getWorld(Trace.getVarint(buffer), Trace.getVarint(buffer));
+                if (chunk.version == Trace.VERSION_EAST) {
+                    world.setStartDirection(Player.Direction.E);
+                } else {
+                    world.setStartDirection(DIRECTIONS[buffer.get()]);
+                }
+                int size = world.getWidth() * world.getHeight();
+                for (Element element : Trace.LAYERS) {
+                    int count = Trace.getVarint(buffer);
+                    if (count > positions.length) positions = new int[Math.max(count, positions.length * 2)];
+                    if (Trace.isBitmap(count, size)) {
+                        int at = buffer.position(), bytes = (size + 7) >> 3, found = 0;
+                        for (int i = 0; i < bytes && found < count; i++) {
+                            for (int bits = buffer.get(at + i) & 0xFF; bits != 0; bits &= bits - 1) {
+                                positions[found++] = i << 3 | Integer.numberOfTrailingZeros(bits);
+                            }
+                        }
+                        buffer.position(at + bytes);
+                    } else {
+                        int position = 0;
+                        for (int i = 0; i < count; i++) {
+                            position += Trace.getVarint(buffer);
+                            positions[i] = position;
+                        }
+                    }
+                    world.setItems(element, positions, count);
+                }
+                int steps = Trace.getVarint(buffer);
+                if (steps > actions.length) actions = new Action[Math.max(steps, actions.length * 2)];
+                int at = buffer.position();
+                for (int i = 0; i < steps; i++) {
+                    actions[i] = Trace.getAction(buffer, at, i);
+                }
+                buffer.position(at + Trace.getActionsSize(steps));
+                int outcome = buffer.get();
+                int score = Trace.unzigzag(Trace.getVarint(buffer));
+                buffer.position(end);
+
+                world.replay(actions, steps);
+                Player player = world.getPlayer();
+                int replayed = world.getResult() == Result.WIN ? Trace.WIN : 0;
+                if (player.isDead()) replayed |= Trace.DEAD;
+                if (replayed != outcome || player.getScore() != score) stats.addMismatch();
+                stats.add(world);
+            }
+        }
+
+        private World getWorld(int width, int height) throws InterruptedException {
+            if (world == null || world.getWidth() != width || world.getHeight() != height) {
+                world = new World(width, height, storage);
+                for (GameListener listener : listeners) world.addListener(listener);
+            }
+            return world;
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package wumpus;
 
-import java.util.HashMap;
-import java.util.Random;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 import wumpus.Environment.Action;
 import wumpus.Environment.Element;
@@ -12,15 +13,28 @@ import wumpus.Environment.Perception;
  * render of it.
  */
 public class World {
+    /**
+     * The storage used to keep the elements of each tile.
+     */
+    public enum Storage {
+        HASH_SET, BITBOARD
+    }
+
     private static final int DEFAULT_MAX_STEPS = 300;
-    private static final int RANDOM_MAX_TRIES = 20;
     private static final int DEFAULT_GOLD = 1;
     private static final int DEFAULT_WUMPUS = 1;
     private static final int DEFAULT_PITS = 2;
+    static final Player.Direction[] DIRECTIONS = Player.Direction.values();
+    private static final Element[] ELEMENTS = Element.values();
+    private static final GameListener[] NO_LISTENERS = new GameListener[0];
+    // The locks of the hunter marks when there are many players, by the word of the tile
+    private static final int STRIPES = 64;
 
     private final int width;
     private final int height;
+    private final int size;
     private final int startPosition;
+    private Player.Direction startDirection = Player.Direction.E;
 
     private int gold = DEFAULT_GOLD;
     private int pits = DEFAULT_PITS;
@@ -28,11 +42,30 @@ public class World {
     private int maxSteps = DEFAULT_MAX_STEPS;
 
     private boolean randomize = true;
-    private HashMap<Integer, Environment.Element> items = new HashMap<Integer, Element>();
+    // The board has been reset before the game, see prepare
+    private boolean prepared = false;
+    private SplittableRandom random = new SplittableRandom();
+    private int[] cells;
+    private int[] swaps;
+    private int drawn;
+    private final Bitboard items;
+    private final Bitboard board;
+    private final Bitboard senses;
 
     private String agentName;
+    private GameListener[] listeners = NO_LISTENERS;
+    private Metrics metrics;
+    private Deadline deadline;
+    private int timeouts = 0;
+    private boolean overrun = false;
     private final Player player;
-    private final Tile[] tiles;
+    private Player[] players;
+    // The number of players at each tile, only when there are many
+    private int[] hunters;
+    private Object[] stripes;
+    private Tile[] tiles;
+    private final Renderer renderer = new Renderer(this);
+    private int version = 0;
 
     /**
      * Creates a new world with given dimensions.
@@ -43,20 +76,83 @@ public class World {
      */
     public World(int width, int height) throws InterruptedException,
             InternalError {
+        this(width, height, Storage.HASH_SET);
+    }
+
+    /**
+     * Creates a new world with given dimensions and tile storage. The {@link Storage#BITBOARD}
+     * keeps each element as a packed bit layer, so that tiles become thin views over it.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     * @param storage The tile storage
+     * @throws InterruptedException
+     * @throws InternalError
+     */
+    public World(int width, int height, Storage storage) throws InterruptedException,
+            InternalError {
         if (width == 1 && height == 1) {
             throw new InternalError("The world size must be greater than 1x1.");
         }
         this.width = width;
         this.height = height;
-        // Generate the board matrix (WxH)
-        tiles = new Tile[width * height];
-        for (int i = 0; i < width * height; i++) {
-            tiles[i] = new Tile(i, width, height);
+        this.size = width * height;
+        // Saves the placed items as layers
+        items = new Bitboard(Element.values().length, size);
+        // The perceptions sensed at each block
+        senses = new Bitboard(Perception.values().length, size);
+        if (storage == Storage.BITBOARD) {
+            // The tiles are views created on demand
+            board = new Bitboard(Element.values().length, size);
+        } else {
+            // Generate the board matrix (WxH)
+            board = null;
+            tiles = new Tile[size];
+            for (int i = 0; i < size; i++) {
+                tiles[i] = new Tile(i, width, height, null, this);
+            }
         }
         // Saves the start position to check the objective
         startPosition = getIndex(0, height - 1);
         // Set the player
         player = new Player(this);
+        players = new Player[] {player};
+    }
+
+    /**
+     * Creates an independent copy of another world, sharing the board pages until changed.
+     * @param other The source world
+     */
+    private World(World other) {
+        width = other.width;
+        height = other.height;
+        size = other.size;
+        startPosition = other.startPosition;
+        startDirection = other.startDirection;
+        gold = other.gold;
+        pits = other.pits;
+        wumpus = other.wumpus;
+        maxSteps = other.maxSteps;
+        randomize = other.randomize;
+        // A seeded world forks the same boards, and the source draws a step further
+        random = other.random.split();
+        agentName = other.agentName;
+        items = other.items.fork();
+        senses = other.senses.fork();
+        if (other.board != null) {
+            board = other.board.fork();
+        } else {
+            board = null;
+            tiles = new Tile[size];
+            for (int i = 0; i < size; i++) {
+                tiles[i] = new Tile(i, width, height, null, this);
+                for (Element element : ELEMENTS) {
+                    if (other.tiles[i].contains(element)) tiles[i].setItem(element);
+                }
+            }
+        }
+        player = new Player(this);
+        players = new Player[] {player};
+        other.player.lendTo(player);
     }
 
     /**
@@ -66,6 +162,13 @@ public class World {
      */
     public void execute(Agent agent) throws InterruptedException {
         agentName = agent.getClass().getName();
+        timeouts = 0;
+        overrun = false;
+        // Only pay for the events, metrics and deadlines when needed
+        if (listeners.length > 0 || metrics != null || deadline != null) {
+            execute(agent, listeners, metrics, deadline);
+            return;
+        }
 
         for (Player player : run()) {
             agent.beforeAction(player);
@@ -75,16 +178,267 @@ public class World {
         }
     }
 
+    /**
+     * Execute an agent notifying the game events to the listeners, measuring it and bounding the
+     * time of its decisions.
+     * @param agent The agent instance
+     * @param listeners The listeners
+     * @param metrics The metrics or null
+     * @param deadline The deadline or null
+     * @throws InterruptedException
+     */
+    private void execute(Agent agent, GameListener[] listeners, Metrics metrics, Deadline deadline)
+            throws InterruptedException {
+        Metrics.Recorder recorder = metrics != null ? metrics.getRecorder() : null;
+        long time = recorder != null ? System.nanoTime() : 0;
+        Runner runner = run();
+        if (recorder != null) recorder.reset.record(System.nanoTime() - time);
+        for (GameListener listener : listeners) listener.onEpisodeStart(this);
+
+        Deadline.Session session = deadline != null ? deadline.start(agent) : null;
+        try {
+            for (Player player : runner) {
+                // The late decision still runs on the agent
+                boolean late = session != null && session.isLate();
+                if (!late) agent.beforeAction(player);
+                Action action;
+                if (recorder != null) {
+                    long start = System.nanoTime();
+                    action = session != null ? session.decide(player) : agent.getAction(player);
+                    long decided = System.nanoTime();
+                    player.setAction(action);
+                    long end = System.nanoTime();
+                    recorder.getAction.record(decided - start);
+                    recorder.setAction.record(end - decided);
+                } else {
+                    action = session != null ? session.decide(player) : agent.getAction(player);
+                    player.setAction(action);
+                }
+                if (!late && (session == null || !session.isLate())) agent.afterAction(player);
+
+                if (listeners.length > 0) onStep(player, action, listeners);
+            }
+        } finally {
+            if (session != null) {
+                session.finish();
+                timeouts = session.getTimeouts();
+                overrun = session.isOverrun();
+            }
+        }
+
+        Environment.Result result = getResult();
+        if (metrics != null) metrics.addEpisode(this, result);
+        for (GameListener listener : listeners) listener.onEpisodeEnd(this, result);
+    }
+
+    /**
+     * Plays a game again from the actions taken, notifying the listeners as if an agent had taken
+     * them. The board must be set before, e.g. by {@link #setItems}.
+     * @param actions The actions
+     * @param count The number of actions
+     * @throws InterruptedException
+     */
+    void replay(Action[] actions, int count) throws InterruptedException {
+        reset();
+        GameListener[] listeners = this.listeners;
+        for (GameListener listener : listeners) listener.onEpisodeStart(this);
+        for (int i = 0; i < count; i++) {
+            player.setAction(actions[i]);
+            if (listeners.length > 0) onStep(player, actions[i], listeners);
+        }
+        Environment.Result result = getResult();
+        for (GameListener listener : listeners) listener.onEpisodeEnd(this, result);
+    }
+
+    /**
+     * Notifies the listeners of an action taken, and of its death or win.
+     * @param player The player instance
+     * @param action The action taken
+     * @param listeners The listeners
+     */
+    private void onStep(Player player, Action action, GameListener[] listeners) {
+        for (GameListener listener : listeners) listener.onStep(player, action);
+        if (player.isDead()) {
+            for (GameListener listener : listeners) listener.onDeath(player);
+        } else if (getResult() == Environment.Result.WIN) {
+            for (GameListener listener : listeners) listener.onWin(player);
+        }
+    }
+
+    /**
+     * The saved state of a game played at a world, i.e. the board and the player.
+     */
+    public static class Snapshot {
+        private final World world;
+        private final Bitboard board;
+        private final Bitboard senses;
+        private final Player player;
+
+        private Snapshot(World world, Bitboard board, Bitboard senses, Player player) {
+            this.world = world;
+            this.board = board;
+            this.senses = senses;
+            this.player = player;
+        }
+    }
+
+    /**
+     * Saves the current state of the game to be restored later. With the {@link Storage#BITBOARD}
+     * the board pages are shared until changed, so it does not depend on the board size.
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        Bitboard saved;
+        if (board != null) {
+            saved = board.fork();
+        } else {
+            saved = new Bitboard(ELEMENTS.length, size);
+            for (int i = 0; i < size; i++) {
+                for (Element element : ELEMENTS) {
+                    if (tiles[i].contains(element)) saved.set(element.ordinal(), i);
+                }
+            }
+        }
+        Player state = new Player(this);
+        player.lendTo(state);
+        return new Snapshot(this, saved, senses.fork(), state);
+    }
+
+    /**
+     * Restores the state of the game saved by a snapshot of this world.
+     * @param snapshot The snapshot
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.world != this) {
+            throw new InternalError("The snapshot belongs to another world.");
+        }
+        version++;
+        if (board != null) {
+            board.restore(snapshot.board);
+        } else {
+            for (int i = 0; i < size; i++) {
+                tiles[i].clear();
+                for (Element element : ELEMENTS) {
+                    if (snapshot.board.get(element.ordinal(), i)) tiles[i].setItem(element);
+                }
+            }
+        }
+        senses.restore(snapshot.senses);
+        snapshot.player.copyTo(player);
+    }
+
+    /**
+     * Creates an independent copy of this world and its player, e.g. to simulate what happens
+     * after some actions. With the {@link Storage#BITBOARD} the board pages are shared until
+     * changed, so it does not depend on the board size. The copy draws its random boards from a
+     * generator split from this one.
+     * @return The world copy
+     */
+    public World fork() {
+        return new World(this);
+    }
+
+    /**
+     * Registers a listener of the game events.
+     * @param listener The listener
+     */
+    public void addListener(GameListener listener) {
+        GameListener[] next = new GameListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, next, 0, listeners.length);
+        next[listeners.length] = listener;
+        listeners = next;
+    }
+
+    /**
+     * Sets the metrics to measure the games played by an agent, or null to stop measuring. The
+     * games are not measured at all by default.
+     * @param value The metrics
+     */
+    public void setMetrics(Metrics value) {
+        metrics = value;
+    }
+
+    /**
+     * Returns the metrics measuring the games.
+     * @return The metrics or null
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the time an agent has to decide each action and the whole game, or null to wait for
+     * the agent as long as it takes, which is the default.
+     * @param value The deadline
+     */
+    public void setDeadline(Deadline value) {
+        deadline = value;
+    }
+
+    /**
+     * Returns the time an agent has to decide.
+     * @return The deadline or null
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Returns how many actions of the last game were the fallback one of the deadline, since the
+     * agent was late.
+     * @return The number of timeouts
+     */
+    public int getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns weather the agent took longer to decide than the game budget of the deadline in the
+     * last game.
+     * @return <tt>true</tt> if overrun
+     */
+    public boolean isOverrun() {
+        return overrun;
+    }
+
+    /**
+     * Unregisters a listener of the game events.
+     * @param listener The listener
+     */
+    public void removeListener(GameListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] != listener) continue;
+            GameListener[] next = new GameListener[listeners.length - 1];
+            System.arraycopy(listeners, 0, next, 0, i);
+            System.arraycopy(listeners, i + 1, next, i, next.length - i);
+            listeners = next;
+            return;
+        }
+    }
+
     /**
      * Starts playing until game reachs its end.
      * @return The plays iteration
      * @throws InterruptedException
      */
     private Runner run() throws InterruptedException {
-        reset();
+        if (prepared) {
+            prepared = false;
+        } else {
+            reset();
+        }
         return new Runner(this);
     }
 
+    /**
+     * Resets the board for the next game to be executed, so it can be inspected before playing.
+     * @throws InterruptedException
+     */
+    void prepare() throws InterruptedException {
+        reset();
+        prepared = true;
+    }
+
     /**
      * Returns the current agent class name.
      * @return The agent name
@@ -109,6 +463,22 @@ public class World {
         maxSteps = value;
     }
 
+    /**
+     * Returns the direction the players face at the start of each game.
+     * @return The start direction
+     */
+    public Player.Direction getStartDirection() {
+        return startDirection;
+    }
+
+    /**
+     * Sets the direction the players face at the start of each game, the east by default.
+     * @param value The start direction
+     */
+    public void setStartDirection(Player.Direction value) {
+        startDirection = value;
+    }
+
     /**
      * Set the number of pits on the board.
      * @param value
@@ -117,6 +487,28 @@ public class World {
         pits = value;
     }
 
+    /**
+     * Returns the number of pits on each random board.
+     * @return The number of pits
+     */
+    public int getPits() {
+        return pits;
+    }
+
+    /**
+     * Returns the number of elements of a kind placed on each random board.
+     * @param element The element
+     * @return The number of elements
+     */
+    int getCount(Element element) {
+        switch (element) {
+            case WUMPUS: return wumpus;
+            case PIT: return pits;
+            case GOLD: return gold;
+            default: return players.length;
+        }
+    }
+
     /**
      * Sets a pit at given coordinate.
      * @param x The horizontal coordinate
@@ -166,46 +558,93 @@ public class World {
             throw new InternalError("Tile is not empty!");
         }
         // Saves the items position for later retrieval
-        items.put(tile.getIndex(), element);
+        items.set(element.ordinal(), tile.getIndex());
         // Turn off randomization
         randomize = false;
     }
 
     /**
-     * Sets a random position for the a set of items respecting safe blocks.
+     * Replaces the elements placed at every reset, turning off the randomization. Unlike the
+     * setters of each element it does not check the current board, so it can be called between
+     * games.
+     * @param element The element
+     * @param positions The block positions
+     * @param count The number of positions
+     */
+    void setItems(Element element, int[] positions, int count) {
+        for (int i = items.next(element.ordinal(), 0); i != -1; i = items.next(element.ordinal(), i + 1)) {
+            items.clear(element.ordinal(), i);
+        }
+        for (int i = 0; i < count; i++) {
+            items.set(element.ordinal(), positions[i]);
+        }
+        randomize = false;
+    }
+
+    /**
+     * Sets the seed of the random generator of the boards, so that the sequence of boards created by
+     * each reset is reproducible.
+     * @param seed The seed
+     */
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Sets a random position for the a set of items respecting safe blocks. The positions are drawn
+     * without replacement by a partial Fisher-Yates shuffle of the blocks.
      * @param element The element to be place
      * @param times How many items to be placed.
-     * @throws InterruptedException When reaches too many tries
+     * @throws InterruptedException When there are no blocks left
      */
     private void setRandom(Environment.Element element, int times) throws InterruptedException {
-        Random random = new Random();
-        int tries = 0;
-        // Set the starting point neighbors as safe
-        int[] safeBlocks = player.getTile().getNeighbors();
-
         for(int i = 0; i < times; i++) {
-            Tile position;
             // Find an empty block to set the element
             while (true) {
-                int z = random.nextInt(width * height - 1);
-                position = tiles[z];
-                if(position.isEmpty() &&
-                        z != safeBlocks[0] && z != safeBlocks[1]  && z != safeBlocks[2]  &&
-                        z != safeBlocks[3]) {
-                    position.setItem(element);
-                    break;
+                if (drawn == cells.length) {
+                    throw new InterruptedException("Cannot set a random position for element, " +
+                            "increase the world dimensions.");
                 }
-                // Do not loop forever
-                if (tries >= RANDOM_MAX_TRIES) {
-                    throw new InterruptedException("Cannot set a random position for element after " +
-                            "many tries, increase the world dimensions.");
-                } else {
-                    tries++;
+                int j = drawn + random.nextInt(cells.length - drawn);
+                int z = cells[j];
+                cells[j] = cells[drawn];
+                cells[drawn] = z;
+                swaps[drawn++] = j;
+                if (isEmpty(z) && !isSafe(z)) {
+                    addElement(element, z);
+                    break;
                 }
             }
         }
     }
 
+    /**
+     * Undoes the shuffle of the blocks, so the next draw does not depend on the previous boards.
+     */
+    private void resetRandom() {
+        while (drawn > 0) {
+            drawn--;
+            int j = swaps[drawn];
+            int z = cells[j];
+            cells[j] = cells[drawn];
+            cells[drawn] = z;
+        }
+    }
+
+    /**
+     * Returns weather the block must be kept free of dangers, i.e. the start position and its
+     * neighbors.
+     * @param index The block position
+     * @return <tt>true</tt> if is a safe block
+     */
+    boolean isSafe(int index) {
+        if (index == startPosition) return true;
+        for (Player.Direction direction : DIRECTIONS) {
+            if (getNeighbor(startPosition, direction) == index) return true;
+        }
+        return false;
+    }
+
     /**
      * Returns the index from a given 2D position.
      * @param x The horizontal position
@@ -216,13 +655,107 @@ public class World {
         return (x + y * width);
     }
 
+    /**
+     * Returns the linear position of the block that shares the border at the given direction.
+     * @param index The block position
+     * @param direction The direction
+     * @return The neighbor index or -1 if out of the board
+     */
+    public int getNeighbor(int index, Player.Direction direction) {
+        switch (direction) {
+            case N: return index >= width ? index - width : -1;
+            case E: return (index % width) < width - 1 ? index + 1 : -1;
+            case S: return index + width < size ? index + width : -1;
+            case W: return (index % width) > 0 ? index - 1 : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the perceptions sensed at a block as a bitmask of {@link Perception} ordinals.
+     * @param index The block position
+     * @param direction The direction the player is facing
+     * @return The perceptions bitmask
+     */
+    int getPerceptions(int index, Player.Direction direction) {
+        int perceptions = 0;
+        if (hasElement(Element.GOLD, index)) {
+            perceptions |= 1 << Perception.GLITTER.ordinal();
+        }
+        if (senses.get(Perception.BREEZE.ordinal(), index)) {
+            perceptions |= 1 << Perception.BREEZE.ordinal();
+        }
+        if (senses.get(Perception.STENCH.ordinal(), index)) {
+            perceptions |= 1 << Perception.STENCH.ordinal();
+        }
+        if (getNeighbor(index, direction) == -1) {
+            perceptions |= 1 << Perception.BUMP.ordinal();
+        }
+        return perceptions;
+    }
+
+    /**
+     * Removes a Wumpus from the board and updates the stench around it.
+     * @param index The Wumpus position
+     */
+    void killWumpus(int index) {
+        removeElement(Element.WUMPUS, index);
+        for (Player.Direction direction : DIRECTIONS) {
+            int neighbor = getNeighbor(index, direction);
+            if (neighbor == -1) continue;
+            // Other Wumpus may still smell around
+            senses.clear(Perception.STENCH.ordinal(), neighbor);
+            for (Player.Direction around : DIRECTIONS) {
+                int other = getNeighbor(neighbor, around);
+                if (other != -1 && hasElement(Element.WUMPUS, other)) {
+                    senses.set(Perception.STENCH.ordinal(), neighbor);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the perception at the neighbors of every block holding the element.
+     * @param element The element that is sensed
+     * @param perception The perception sensed around it
+     */
+    private void setSenses(Element element, Perception perception) {
+        for (int i = nextItem(element, 0); i != -1; i = nextItem(element, i + 1)) {
+            for (Player.Direction direction : DIRECTIONS) {
+                int neighbor = getNeighbor(i, direction);
+                if (neighbor != -1) senses.set(perception.ordinal(), neighbor);
+            }
+        }
+    }
+
+    /**
+     * Returns the next block position holding the element starting from an index.
+     * @param element The element to find
+     * @param from The first position to check
+     * @return The position or -1 if none
+     */
+    int nextItem(Element element, int from) {
+        if (board != null) return board.next(element.ordinal(), from);
+        for (int i = from; i < size; i++) {
+            if (tiles[i].contains(element)) return i;
+        }
+        return -1;
+    }
+
     /**
      * Returns the board block at given linear position.
      * @param index The block position
      * @return The block instance
      */
     public Tile getPosition(int index) {
-        return tiles[index];
+        if (tiles == null) tiles = new Tile[size];
+        Tile tile = tiles[index];
+        if (tile == null) {
+            tile = new Tile(index, width, height, board, this);
+            tiles[index] = tile;
+        }
+        return tile;
     }
 
     /**
@@ -232,8 +765,56 @@ public class World {
      * @return The block instance
      */
     public Tile getPosition(int x, int y) {
-        int i = getIndex(x, y);
-        return tiles[i];
+        return getPosition(getIndex(x, y));
+    }
+
+    /**
+     * Returns weather the block at given linear position contains the element.
+     * @param element The element to find
+     * @param index The block position
+     * @return <tt>true</tt> if contains the element
+     */
+    boolean hasElement(Element element, int index) {
+        if (board != null) return board.get(element.ordinal(), index);
+        return tiles[index].contains(element);
+    }
+
+    /**
+     * Adds an element to the block at given linear position.
+     * @param element The element
+     * @param index The block position
+     */
+    void addElement(Element element, int index) {
+        version++;
+        if (board != null) {
+            board.set(element.ordinal(), index);
+        } else {
+            tiles[index].setItem(element);
+        }
+    }
+
+    /**
+     * Removes an element from the block at given linear position.
+     * @param element The element
+     * @param index The block position
+     */
+    void removeElement(Element element, int index) {
+        version++;
+        if (board != null) {
+            board.clear(element.ordinal(), index);
+        } else {
+            tiles[index].remove(element);
+        }
+    }
+
+    /**
+     * Returns weather the block at given linear position is empty.
+     * @param index The block position
+     * @return <tt>true</tt> if contains no elements
+     */
+    boolean isEmpty(int index) {
+        if (board != null) return board.isEmpty(index);
+        return tiles[index].isEmpty();
     }
 
     /**
@@ -242,6 +823,95 @@ public class World {
      */
     public Player getPlayer() { return player; }
 
+    /**
+     * Returns a player of the board, the first one is the current player.
+     * @param index The player number
+     * @return The player instance
+     */
+    public Player getPlayer(int index) { return players[index]; }
+
+    /**
+     * Returns the number of players of the board.
+     * @return The number of players
+     */
+    public int getPlayerCount() { return players.length; }
+
+    /**
+     * Adds another player to the board, that shares the dangers and the gold with the others but
+     * has its own position, arrows and score. It takes part from the next reset, starting at the
+     * same position as the others, and the players are played together by an {@link Arena}. The
+     * snapshots and forks keep only the first player.
+     * @return The new player
+     */
+    public Player addPlayer() {
+        Player other = new Player(this);
+        players = Arrays.copyOf(players, players.length + 1);
+        players[players.length - 1] = other;
+        if (hunters == null) {
+            hunters = new int[size];
+            stripes = new Object[STRIPES];
+            for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+        }
+        return other;
+    }
+
+    /**
+     * Moves the mark of a hunter between two blocks. With many players the blocks count their
+     * hunters, and the marks are changed under the lock of their word, so the players can move at
+     * once from many threads on the bitboard storage.
+     * @param from The previous position or -1 if none
+     * @param to The new position
+     */
+    void moveHunter(int from, int to) {
+        if (hunters == null) {
+            if (from != -1) removeElement(Element.HUNTER, from);
+            addElement(Element.HUNTER, to);
+            return;
+        }
+        if (from != -1) {
+            synchronized (stripes[(from >>> 6) & (STRIPES - 1)]) {
+                if (--hunters[from] == 0) setHunter(from, false);
+            }
+        }
+        synchronized (stripes[(to >>> 6) & (STRIPES - 1)]) {
+            if (hunters[to]++ == 0) setHunter(to, true);
+        }
+    }
+
+    private void setHunter(int index, boolean value) {
+        if (board != null) {
+            if (value) board.set(Element.HUNTER.ordinal(), index);
+            else board.clear(Element.HUNTER.ordinal(), index);
+        } else {
+            if (value) tiles[index].setItem(Element.HUNTER);
+            else tiles[index].remove(Element.HUNTER);
+        }
+    }
+
+    /**
+     * Prepares the board for the players to move from many threads at once, copying the shared
+     * pages of the hunter marks beforehand.
+     */
+    void prepareMoves() {
+        if (board != null) board.own(Element.HUNTER.ordinal());
+    }
+
+    /**
+     * Returns the listeners of the game events.
+     * @return The listeners
+     */
+    GameListener[] getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Returns the storage used by the tiles.
+     * @return The storage
+     */
+    public Storage getStorage() {
+        return board != null ? Storage.BITBOARD : Storage.HASH_SET;
+    }
+
     /**
      * Returns the board width.
      * @return The width
@@ -260,6 +930,15 @@ public class World {
      * @return The outcome of the game
      */
     public Environment.Result getResult() {
+        return getResult(player);
+    }
+
+    /**
+     * Returns if a player have win or loose the game.
+     * @param player The player instance
+     * @return The outcome of the game
+     */
+    public Environment.Result getResult(Player player) {
         if (player.isAlive() && player.hasGold()){
 //                && player.getTile().getIndex() == startPosition) {
             return Environment.Result.WIN;
@@ -272,25 +951,65 @@ public class World {
      * @throws InterruptedException
      */
     public void reset() throws InterruptedException {
+        version++;
         // Reset all blocks
-        for (int i = 0; i < tiles.length; i++) {
-            tiles[i].clear();
+        if (board != null) {
+            board.reset();
+        } else {
+            for (int i = 0; i < size; i++) {
+                tiles[i].clear();
+            }
+        }
+        // Reset the player agents
+        if (hunters != null) Arrays.fill(hunters, 0);
+        for (Player player : players) {
+            player.place(startPosition);
+            player.reset();
         }
-        // Reset the player agent
-        player.setTile(startPosition);
-        player.reset();
         // Set the dangers
         if (randomize) {
-            setRandom(Element.WUMPUS, wumpus);
-            setRandom(Environment.Element.PIT, pits);
-            // Set the objective
-            setRandom(Element.GOLD, gold);
+            if (cells == null) {
+                cells = new int[size];
+                swaps = new int[size];
+                for (int i = 0; i < cells.length; i++) cells[i] = i;
+            }
+            try {
+                setRandom(Element.WUMPUS, wumpus);
+                setRandom(Environment.Element.PIT, pits);
+                // Set the objective
+                setRandom(Element.GOLD, gold);
+            } finally {
+                resetRandom();
+            }
+        } else if (board != null) {
+            board.merge(items);
         } else {
-            for (int index : items.keySet()) {
-                Tile tile = getPosition(index);
-                tile.setItem(items.get(index));
+            for (Element element : ELEMENTS) {
+                for (int i = items.next(element.ordinal(), 0); i != -1;
+                        i = items.next(element.ordinal(), i + 1)) {
+                    tiles[i].setItem(element);
+                }
             }
         }
+        // Set the perceptions around the dangers
+        senses.reset();
+        setSenses(Element.PIT, Perception.BREEZE);
+        setSenses(Element.WUMPUS, Perception.STENCH);
+    }
+
+    /**
+     * Returns a number that changes whenever the board or the player changes.
+     * @return The version
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Marks the board or the player as changed.
+     */
+    void modified() {
+        version++;
     }
 
     /**
@@ -302,40 +1021,21 @@ public class World {
      *     +---+
      * </pre>
      *
+     * The render is cached until the board or the player changes.
+     *
      * @return The board representation
      */
     public String render() {
-        StringBuilder render = new StringBuilder();
-
-        for(int y = 0; y < height; y++) {
-            for(int z = 0; z < 2; z++) {
-                for (int x = 0; x < width; x++) {
-                    switch (z) {
-                        case 0:
-                            if (x == 0) render.append("+");
-                            render.append("---+");
-                            break;
-                        default:
-                            Tile tile = getPosition(x, y);
-                            String line = " 1 |";
-                            if (tile.contains(Element.HUNTER)) {
-                                line = line.replace("1", Environment.getIcon(player));
-                            }
-                            // Erase any non-replaced items
-                            line = line.replace("1", " ");
-                            // Draw
-                            if (x == 0) render.append("|");
-                            render.append(line);
-                    }
-                }
-                render.append("\n");
-            }
-        }
-        for (int i = 0; i < width; i++) {
-            if (i == 0) render.append("+");
-            render.append("---+");
-        }
-        return render.toString();
+        return renderer.render();
+    }
+
+    /**
+     * Writes a simplified version of the game board as ASCII, see {@link #render()}.
+     * @param out The output
+     * @throws IOException
+     */
+    public void render(Appendable out) throws IOException {
+        renderer.render(out);
     }
 
     /**
@@ -349,71 +1049,21 @@ public class World {
      *     D = Danger, P = Perception, H = Hunter
      * </pre>
      *
+     * The render is cached until the board or the player changes.
+     *
      * @return The board representation
      */
     public String renderAll() {
-        StringBuilder render = new StringBuilder();
-
-        for(int y = 0; y < height; y++) {
-            for(int z = 0; z < 3; z++) {
-                for (int x = 0; x < width; x++) {
-                    switch (z) {
-                        case 0:
-                            if (x == 0) render.append("+");
-                            render.append("-----+");
-                            break;
-                        default:
-                            Tile tile = getPosition(x, y);
-                            String line = " 1 2 |";
-                            if (z == 1) {
-                                // Renders the second line
-                                if (tile.contains(Environment.Element.WUMPUS)) {
-                                    line = line.replace("2", Environment.getIcon(Environment.Element.WUMPUS));
-                                }
-                                if (tile.contains(Environment.Element.PIT)) {
-                                    line = line.replace("2", Environment.getIcon(Element.PIT));
-                                }
-                                if (tile.contains(Environment.Element.GOLD)) {
-                                    line = line.replace("2", Environment.getIcon(Element.GOLD));
-                                }
-                            } else {
-                                if (tile.contains(Environment.Element.HUNTER)) {
-                                    line = line.replace("1", Environment.getIcon(player));
-                                }
-                                if (tile.contains(Environment.Element.GOLD)) {
-                                    line = line.replace("2",
-                                            Environment.getIcon(Perception.GLITTER));
-                                }
-                                // Mark this tile if some of their neighbor has some danger
-                                int[] neighbors = tile.getNeighbors();
-                                for (int s = 0; s < neighbors.length; s++) {
-                                    if (neighbors[s] == -1) continue;
-                                    Tile neighbor = getPosition(neighbors[s]);
-                                    if (neighbor.contains(Element.WUMPUS)) {
-                                        line = line.replace("2",
-                                                Environment.getIcon(Perception.STENCH));
-                                    }
-                                    if (neighbor.contains(Environment.Element.PIT)) {
-                                        line = line.replace("2",
-                                                Environment.getIcon(Perception.BREEZE));
-                                    }
-                                }
-                            }
-                            // Erase any non-replaced items
-                            line = line.replace("1", " ").replace("2", " ");
-                            // Draw
-                            if (x == 0) render.append("|");
-                            render.append(line);
-                    }
-                }
-                render.append("\n");
-            }
-        }
-        for (int i = 0; i < width; i++) {
-            if (i == 0) render.append("+");
-            render.append("-----+");
-        }
-        return render.toString();
+        return renderer.renderAll();
+    }
+
+    /**
+     * Writes the full game board as ASCII, see {@link #renderAll()}.
+     * @param out The output
+     * @throws IOException
+     */
+    public void renderAll(Appendable out) throws IOException {
+        renderer.renderAll(out);
     }
 
     /**
@@ -0,0 +1,140 @@
+package agents;
+
+import java.util.SplittableRandom;
+
+/**
+ * Checks the solver against the enumeration of every assignment of small random clause sets. The
+ * clauses are added one at a time, so the answers also cover what was learned by the solves before.
+ * It runs as a plain test class, each public method starting with <tt>test</tt> is a test.
+ */
+public class SolverTest {
+    private static final int INSTANCES = 2000;
+
+    /**
+     * Every literal is implied exactly when it holds in all the solutions, and none is when there
+     * is no solution at all.
+     */
+    public void testImpliedMatchesEnumeration() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int instance = 0; instance < INSTANCES; instance++) {
+            int vars = 3 + random.nextInt(6);
+            int count = 1 + random.nextInt(vars * 5);
+            int[][] clauses = new int[count][];
+            Solver solver = newSolver(vars);
+            for (int c = 0; c < count; c++) {
+                clauses[c] = newClause(random, vars);
+                solver.addClause(clauses[c]);
+                long models = getModels(vars, clauses, c + 1);
+                check(solver.solve() == (models != 0), instance, "solve");
+                if (solver.isUnsat()) check(models == 0, instance, "unsat");
+                for (int literal = 0; literal < vars * 2; literal++) {
+                    boolean expected = models != 0 && holds(literal, vars, clauses, c + 1);
+                    check(solver.isImplied(literal) == expected, instance, "literal " + literal);
+                }
+            }
+        }
+    }
+
+    /**
+     * The clause set is satisfiable under some assumptions exactly when a solution has them all.
+     */
+    public void testAssumptionsMatchEnumeration() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int instance = 0; instance < INSTANCES; instance++) {
+            int vars = 3 + random.nextInt(6);
+            int count = 1 + random.nextInt(vars * 4);
+            int[][] clauses = new int[count][];
+            Solver solver = newSolver(vars);
+            for (int c = 0; c < count; c++) {
+                clauses[c] = newClause(random, vars);
+                solver.addClause(clauses[c]);
+            }
+            for (int query = 0; query < 8; query++) {
+                int[] assumptions = newClause(random, vars);
+                boolean expected = false;
+                for (int assignment = 0; assignment < 1 << vars && !expected; assignment++) {
+                    expected = isModel(assignment, clauses, count) && isAll(assignment, assumptions);
+                }
+                check(solver.solve(assumptions) == expected, instance, "assumptions");
+            }
+        }
+    }
+
+    /**
+     * A clause added from the start of a reused array only keeps its first literals.
+     */
+    public void testAddClausePrefix() {
+        Solver solver = newSolver(3);
+        int[] buffer = {0, 3, 5};
+        // Only x0, the rest of the buffer is stale
+        solver.addClause(buffer, 1);
+        buffer[0] = 1;
+        buffer[1] = 2;
+        // Not x0 or x1, so x1
+        solver.addClause(buffer, 2);
+        check(solver.isImplied(0), 0, "x0");
+        check(solver.isImplied(2), 0, "x1");
+        check(!solver.isImplied(4) && !solver.isImplied(5), 0, "x2");
+    }
+
+    private static Solver newSolver(int vars) {
+        Solver solver = new Solver();
+        for (int i = 0; i < vars; i++) solver.newVar();
+        return solver;
+    }
+
+    /**
+     * Returns a clause of 1 to 3 literals, which may repeat or be opposite.
+     */
+    private static int[] newClause(SplittableRandom random, int vars) {
+        int[] clause = new int[1 + random.nextInt(3)];
+        for (int i = 0; i < clause.length; i++) clause[i] = random.nextInt(vars * 2);
+        return clause;
+    }
+
+    /**
+     * Returns the number of assignments that satisfy the first clauses.
+     */
+    private static long getModels(int vars, int[][] clauses, int count) {
+        long models = 0;
+        for (int assignment = 0; assignment < 1 << vars; assignment++) {
+            if (isModel(assignment, clauses, count)) models++;
+        }
+        return models;
+    }
+
+    /**
+     * Returns weather the literal holds in every assignment that satisfies the first clauses.
+     */
+    private static boolean holds(int literal, int vars, int[][] clauses, int count) {
+        for (int assignment = 0; assignment < 1 << vars; assignment++) {
+            if (isModel(assignment, clauses, count) && !isTrue(assignment, literal)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isModel(int assignment, int[][] clauses, int count) {
+        for (int c = 0; c < count; c++) {
+            boolean satisfied = false;
+            for (int literal : clauses[c]) satisfied |= isTrue(assignment, literal);
+            if (!satisfied) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAll(int assignment, int[] literals) {
+        for (int literal : literals) {
+            if (!isTrue(assignment, literal)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isTrue(int assignment, int literal) {
+        boolean value = (assignment >> (literal >> 1) & 1) != 0;
+        return (literal & 1) == 0 ? value : !value;
+    }
+
+    private static void check(boolean condition, int instance, String what) {
+        if (!condition) throw new AssertionError("Wrong " + what + " at instance " + instance);
+    }
+}
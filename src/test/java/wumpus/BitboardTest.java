@@ -0,0 +1,157 @@
+package wumpus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import wumpus.Environment.Action;
+import wumpus.Environment.Element;
+
+/**
+ * Checks that the boards forked, snapshotted and restored share their pages until changed, without
+ * ever seeing the changes of each other, on boards of many pages.
+ * It runs as a plain test class, each public method starting with <tt>test</tt> is a test.
+ */
+public class BitboardTest {
+    // Three pages of 4096 tiles, the last one partial
+    private static final int SIZE = 10000;
+    private static final Action[] ACTIONS = {
+        Action.GO_FORWARD, Action.TURN_LEFT, Action.GO_FORWARD, Action.GO_FORWARD, Action.TURN_RIGHT,
+        Action.GO_FORWARD, Action.GO_FORWARD
+    };
+
+    /**
+     * The changes of a board and of its fork, on any page, are not seen by the other one.
+     */
+    public void testFork() {
+        Bitboard board = newBoard();
+        Bitboard fork = board.fork();
+        checkSame(fork, newBoard(), "fork");
+
+        fork.set(1, 5000);
+        fork.clear(0, 4096);
+        board.set(2, 9998);
+        check(!board.get(1, 5000) && board.get(0, 4096), "source after the fork changed");
+        check(!fork.get(2, 9998), "fork after the source changed");
+
+        board.reset();
+        check(fork.get(0, 0) && fork.get(1, 5000), "fork after the source reset");
+    }
+
+    /**
+     * A board restored from a copy has its content, and the changes made after the restore are not
+     * seen by the copy, which can be restored again.
+     */
+    public void testRestore() {
+        Bitboard board = newBoard();
+        Bitboard saved = board.fork();
+        for (int i = 0; i < SIZE; i += 7) board.set(1, i);
+        board.clearAll(0);
+
+        board.restore(saved);
+        checkSame(board, newBoard(), "restored board");
+        board.set(2, 8192);
+        board.clear(0, 0);
+        check(!saved.get(2, 8192) && saved.get(0, 0), "copy after the restored board changed");
+
+        board.restore(saved);
+        checkSame(board, newBoard(), "board restored twice");
+    }
+
+    /**
+     * The world restored from a snapshot plays on as it did after the snapshot, as many times as it
+     * is restored, with the actions of the player before the snapshot kept.
+     */
+    public void testWorldSnapshot() throws InterruptedException {
+        for (World.Storage storage : World.Storage.values()) {
+            World world = new World(100, 100, storage);
+            world.setSeed(42);
+            world.reset();
+            Player player = world.getPlayer();
+            player.setAction(Action.TURN_LEFT);
+            World.Snapshot snapshot = world.snapshot();
+
+            String played = play(world);
+            for (int i = 0; i < 3; i++) {
+                world.restore(snapshot);
+                check(player.getActions().size() == 1, "actions restored of " + storage);
+                check(play(world).equals(played), "game restored of " + storage);
+            }
+        }
+    }
+
+    /**
+     * Two worlds of the same seed fork the same boards, and a fork plays without changing its source.
+     */
+    public void testWorldFork() throws InterruptedException {
+        World first = new World(100, 100, World.Storage.BITBOARD);
+        World second = new World(100, 100, World.Storage.BITBOARD);
+        first.setSeed(7);
+        second.setSeed(7);
+        first.reset();
+        second.reset();
+        World fork = first.fork();
+        String board = getBoard(first);
+        check(getBoard(fork).equals(board), "board of the fork");
+        play(fork);
+        check(getBoard(first).equals(board) && first.getPlayer().getActions().isEmpty(), "source");
+
+        World other = second.fork();
+        fork.reset();
+        other.reset();
+        check(getBoard(fork).equals(getBoard(other)), "next board of the forks");
+    }
+
+    /**
+     * Returns a board with bits on every page of each layer.
+     */
+    private static Bitboard newBoard() {
+        Bitboard board = new Bitboard(3, SIZE);
+        for (int i = 0; i < SIZE; i += 4096) {
+            board.set(0, i);
+            board.set(1, i + 3);
+            board.set(2, Math.min(SIZE - 1, i + 4095));
+        }
+        return board;
+    }
+
+    /**
+     * Takes the actions and returns the state of the player after each one.
+     */
+    private static String play(World world) {
+        Player player = world.getPlayer();
+        List<String> states = new ArrayList<String>();
+        for (Action action : ACTIONS) {
+            if (!player.isAlive()) break;
+            player.setAction(action);
+            states.add(player.getX() + "," + player.getY() + "," + player.getDirection() + ","
+                    + player.getScore() + "," + player.getActions().size());
+        }
+        return states.toString();
+    }
+
+    /**
+     * Returns the tiles of each element and of the hunter marks.
+     */
+    private static String getBoard(World world) {
+        StringBuilder board = new StringBuilder();
+        int size = world.getWidth() * world.getHeight();
+        for (Element element : Element.values()) {
+            for (int i = 0; i < size; i++) {
+                if (world.hasElement(element, i)) board.append(element).append(i).append(',');
+            }
+        }
+        return board.toString();
+    }
+
+    private static void checkSame(Bitboard board, Bitboard expected, String what) {
+        for (int layer = 0; layer < 3; layer++) {
+            for (int i = 0; i < SIZE; i++) {
+                check(board.get(layer, i) == expected.get(layer, i), what + " at " + layer + ":" + i);
+            }
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new AssertionError("Wrong " + what);
+    }
+}
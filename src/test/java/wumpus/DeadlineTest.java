@@ -0,0 +1,159 @@
+package wumpus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import wumpus.Environment.Action;
+
+/**
+ * Plays agents slower than their deadlines, which must take the fallback actions in their place,
+ * tell the agents their late decisions were discarded and never call them from two threads at once.
+ * It runs as a plain test class, each public method starting with <tt>test</tt> is a test.
+ */
+public class DeadlineTest {
+    /**
+     * A late first decision exits the game by default, without waiting for it.
+     */
+    public void testTimeout() throws InterruptedException {
+        World world = new World(4, 4);
+        world.setSeed(42);
+        world.setDeadline(new Deadline(20, TimeUnit.MILLISECONDS));
+        SlowAgent agent = new SlowAgent(2000, Action.GO_FORWARD);
+        long start = System.nanoTime();
+        world.execute(agent);
+        check(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000), "time waited");
+        check(world.getTimeouts() == 1 && !world.isOverrun(), "timeouts");
+        check(world.getPlayer().getLastAction() == Action.EXIT, "fallback");
+    }
+
+    /**
+     * The fallback is taken while the late decision runs, and the agent is told its plan was
+     * discarded before it is asked again.
+     */
+    public void testFallback() throws InterruptedException {
+        World world = new World(4, 4);
+        world.setSeed(42);
+        world.setMaxSteps(1000);
+        world.setDeadline(new Deadline(20, 10000, TimeUnit.MILLISECONDS, Action.TURN_LEFT));
+        // The steps taken while late would not wait otherwise
+        world.addListener(new GameAdapter() {
+            public void onStep(Player player, Action action) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException error) {
+                    throw new InternalError(error.getMessage(), error);
+                }
+            }
+        });
+        SlowAgent agent = new SlowAgent(200, Action.GO_FORWARD);
+        world.execute(agent);
+
+        List<Action> actions = world.getPlayer().getActions();
+        check(world.getTimeouts() == actions.size() - 1 && actions.size() > 1, "timeouts");
+        for (int i = 0; i < actions.size() - 1; i++) {
+            check(actions.get(i) == Action.TURN_LEFT, "fallback " + i);
+        }
+        check(actions.get(actions.size() - 1) == Action.EXIT, "last action");
+        check(agent.calls.toString().equals("[get, discard, get]"), "calls " + agent.calls);
+        check(agent.overlaps.get() == 0, "calls at once");
+    }
+
+    /**
+     * Once the time of the game is spent every action is the fallback one.
+     */
+    public void testOverrun() throws InterruptedException {
+        World world = new World(4, 4);
+        world.setSeed(42);
+        world.setDeadline(new Deadline(1000, 60, TimeUnit.MILLISECONDS));
+        SlowAgent agent = new SlowAgent(25, Action.TURN_LEFT);
+        agent.slowAlways = true;
+        world.execute(agent);
+        check(world.isOverrun(), "overrun");
+        check(world.getPlayer().getLastAction() == Action.EXIT, "fallback");
+        check(world.getPlayer().getActions().size() <= 4, "actions " + world.getPlayer().getActions());
+    }
+
+    /**
+     * The decision waited for by a thread that is interrupted is interrupted too.
+     */
+    public void testInterrupted() throws InterruptedException {
+        final Thread game = Thread.currentThread();
+        final CountDownLatch stopped = new CountDownLatch(1);
+        World world = new World(4, 4);
+        world.setDeadline(new Deadline(10, TimeUnit.SECONDS));
+        SlowAgent agent = new SlowAgent(10000, Action.GO_FORWARD) {
+            public Action getAction(Player player) {
+                game.interrupt();
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException expected) {
+                    stopped.countDown();
+                }
+                return Action.EXIT;
+            }
+        };
+        try {
+            world.execute(agent);
+            throw new AssertionError("Wrong interruption of the game");
+        } catch (InterruptedException expected) {
+            // The decision must stop too
+        }
+        check(stopped.await(1, TimeUnit.SECONDS), "interruption of the decision");
+    }
+
+    /**
+     * An agent that takes its time to decide the first action, or every one, and exits afterwards.
+     */
+    private static class SlowAgent implements Agent {
+        final List<String> calls = new ArrayList<String>();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        private final long delay;
+        private final Action first;
+        boolean slowAlways = false;
+
+        SlowAgent(long delay, Action first) {
+            this.delay = delay;
+            this.first = first;
+        }
+
+        public Action getAction(Player player) {
+            if (running.incrementAndGet() > 1) overlaps.incrementAndGet();
+            try {
+                boolean slow;
+                synchronized (calls) {
+                    slow = calls.isEmpty() || slowAlways;
+                    calls.add("get");
+                }
+                if (slow) Thread.sleep(delay);
+                return slow ? first : Action.EXIT;
+            } catch (InterruptedException error) {
+                return Action.EXIT;
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        public void beforeAction(Player player) {
+            if (running.get() > 0) overlaps.incrementAndGet();
+        }
+
+        public void afterAction(Player player) {
+            if (running.get() > 0) overlaps.incrementAndGet();
+        }
+
+        public void discardActions() {
+            if (running.get() > 0) overlaps.incrementAndGet();
+            synchronized (calls) {
+                calls.add("discard");
+            }
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new AssertionError("Wrong " + what);
+    }
+}
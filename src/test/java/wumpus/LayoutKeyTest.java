@@ -0,0 +1,67 @@
+package wumpus;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks the keys of every 4x4 layout, exact and canonical for the mirror, against the start
+ * directions and the maximum steps.
+ * It runs as a plain test class, each public method starting with <tt>test</tt> is a test.
+ */
+public class LayoutKeyTest {
+    private static final int LAYOUTS = 8580;
+
+    /**
+     * Every layout has its own exact key, which also tells the start directions apart.
+     */
+    public void testExactKeys() throws InterruptedException {
+        Set<LayoutKey> east = getKeys(Player.Direction.E, false, 200);
+        check(east.size() == LAYOUTS, "exact keys");
+        Set<LayoutKey> north = getKeys(Player.Direction.N, false, 200);
+        north.retainAll(east);
+        check(north.isEmpty(), "exact keys of the north start");
+    }
+
+    /**
+     * The boards started facing east keep their own mirror key, and each one shares it with its
+     * mirror started facing north, so both directions together give the keys of one.
+     */
+    public void testMirrorKeys() throws InterruptedException {
+        Set<LayoutKey> east = getKeys(Player.Direction.E, true, 200);
+        check(east.size() == LAYOUTS, "mirror keys of the east start");
+        Set<LayoutKey> north = getKeys(Player.Direction.N, true, 200);
+        check(north.equals(east), "mirror keys of the north start");
+        Set<LayoutKey> west = getKeys(Player.Direction.W, true, 200);
+        west.retainAll(east);
+        check(west.isEmpty(), "mirror keys of the west start");
+    }
+
+    /**
+     * The same board with another maximum of steps may end another way, so it has another key.
+     */
+    public void testMaxSteps() throws InterruptedException {
+        Set<LayoutKey> keys = getKeys(Player.Direction.E, true, 200);
+        keys.retainAll(getKeys(Player.Direction.E, true, 50));
+        check(keys.isEmpty(), "keys of other maximum steps");
+    }
+
+    private static Set<LayoutKey> getKeys(Player.Direction direction, boolean mirror, int maxSteps)
+            throws InterruptedException {
+        World world = new World(4, 4);
+        world.setStartDirection(direction);
+        world.setMaxSteps(maxSteps);
+        Layouts layouts = new Layouts(world);
+        check(layouts.getCount() == LAYOUTS, "layouts");
+        Set<LayoutKey> keys = new HashSet<LayoutKey>();
+        for (int i = 0; i < layouts.getCount(); i++) {
+            layouts.set(world, i);
+            world.prepare();
+            keys.add(LayoutKey.of(world, mirror));
+        }
+        return keys;
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new AssertionError("Wrong " + what);
+    }
+}
@@ -0,0 +1,97 @@
+package wumpus;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import wumpus.Environment.Element;
+
+/**
+ * Checks the numbering of the layouts: their count, that each number places a distinct legal board,
+ * and that the random boards are among them.
+ * It runs as a plain test class, each public method starting with <tt>test</tt> is a test.
+ */
+public class LayoutsTest {
+    private static final Element[] LAYERS = Trace.LAYERS;
+
+    /**
+     * The 4x4 boards place a Wumpus, two pits and the gold in the 13 blocks away from the start,
+     * 13 * 66 * 10 ways, and the 5x5 boards in 22 blocks, 22 * 210 * 19 ways.
+     */
+    public void testCount() throws InterruptedException {
+        check(new Layouts(new World(4, 4)).getCount() == 8580, "count of 4x4");
+        check(new Layouts(new World(5, 5)).getCount() == 87780, "count of 5x5");
+    }
+
+    /**
+     * Too many layouts to be numbered by an integer are refused.
+     */
+    public void testTooMany() throws InterruptedException {
+        try {
+            new Layouts(new World(64, 64));
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new AssertionError("Wrong count of 64x64");
+    }
+
+    /**
+     * Every number places the elements of the world in distinct blocks away from the start, and no
+     * two numbers place the same board.
+     */
+    public void testUnique() throws InterruptedException {
+        check(getBoards(new World(4, 4)).size() == 8580, "distinct layouts");
+    }
+
+    /**
+     * The random boards are legal layouts too.
+     */
+    public void testRandomBoards() throws InterruptedException {
+        Set<String> boards = getBoards(new World(4, 4));
+        World random = new World(4, 4);
+        for (long seed = 0; seed < 1000; seed++) {
+            random.setSeed(seed);
+            random.prepare();
+            check(boards.contains(getBoard(random)), "random board of seed " + seed);
+        }
+    }
+
+    /**
+     * Returns the boards placed by every layout number.
+     */
+    private static Set<String> getBoards(World world) throws InterruptedException {
+        Layouts layouts = new Layouts(world);
+        Set<String> boards = new HashSet<String>();
+        for (int i = 0; i < layouts.getCount(); i++) {
+            layouts.set(world, i);
+            world.prepare();
+            boards.add(getBoard(world));
+        }
+        return boards;
+    }
+
+    /**
+     * Returns the blocks of each element, checking they are legal.
+     */
+    private static String getBoard(World world) {
+        int size = world.getWidth() * world.getHeight();
+        StringBuilder board = new StringBuilder();
+        boolean[] taken = new boolean[size];
+        for (Element element : LAYERS) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (!world.hasElement(element, i)) continue;
+                check(!world.isSafe(i) && !taken[i], "block of the " + element);
+                taken[i] = true;
+                board.append(i).append(',');
+                count++;
+            }
+            check(count == world.getCount(element), "count of the " + element);
+            board.append('/');
+        }
+        return board.toString();
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new AssertionError("Wrong " + what);
+    }
+}
@@ -0,0 +1,163 @@
+package wumpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import agents.LogicAgent;
+
+/**
+ * Records tournaments with a {@link TraceRecorder} and replays them with a {@link TraceReplay},
+ * which must find every game with its recorded outcome and score, for both versions of the format.
+ * It runs as a plain test class, each public method starting with <tt>test</tt> is a test.
+ */
+public class TraceTest {
+    private static final int GAMES = 300;
+
+    private static final Tournament.AgentFactory FACTORY = new Tournament.AgentFactory() {
+        public Agent create(World world) {
+            return new LogicAgent(world.getWidth(), world.getHeight());
+        }
+    };
+
+    /**
+     * The games started facing each direction replay the same, on boards kept as bitmaps and as
+     * positions.
+     */
+    public void testRoundTrip() throws IOException, InterruptedException {
+        for (Player.Direction direction : Player.Direction.values()) {
+            for (int size : new int[] {4, 12}) {
+                File directory = Files.createTempDirectory("traces").toFile();
+                try {
+                    Tournament tournament = newTournament(size, direction);
+                    TraceRecorder recorder = new TraceRecorder(directory, "games", 1 << 16);
+                    tournament.addListener(recorder);
+                    Tournament.Stats played = tournament.play(FACTORY, GAMES);
+                    recorder.close();
+                    check(recorder.getGames() == GAMES, "recorded games");
+
+                    Tournament.Stats replayed = new TraceReplay().replay(directory);
+                    checkSame(played, replayed);
+                } finally {
+                    delete(directory);
+                }
+            }
+        }
+    }
+
+    /**
+     * The segments of the first version, without the start direction, replay facing the east.
+     */
+    public void testFirstVersion() throws IOException, InterruptedException {
+        File directory = Files.createTempDirectory("traces").toFile();
+        try {
+            Tournament tournament = newTournament(4, Player.Direction.E);
+            TraceRecorder recorder = new TraceRecorder(directory, "games", 1 << 16);
+            tournament.addListener(recorder);
+            Tournament.Stats played = tournament.play(FACTORY, GAMES);
+            recorder.close();
+            for (File file : recorder.getFiles()) toFirstVersion(file);
+
+            Tournament.Stats replayed = new TraceReplay().replay(directory);
+            checkSame(played, replayed);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * The records that do not fit a segment go to the next one, and a single record larger than
+     * the segment size gets a segment of its own.
+     */
+    public void testRollOver() throws IOException, InterruptedException {
+        File directory = Files.createTempDirectory("traces").toFile();
+        try {
+            Tournament tournament = newTournament(12, Player.Direction.E);
+            tournament.setParallelism(1);
+            TraceRecorder recorder = new TraceRecorder(directory, "games", Trace.HEADER_SIZE + 16);
+            tournament.addListener(recorder);
+            Tournament.Stats played = tournament.play(FACTORY, 20);
+            recorder.close();
+            check(recorder.getFiles().size() == 20, "segments");
+
+            Tournament.Stats replayed = new TraceReplay().replay(recorder.getFiles());
+            checkSame(played, replayed);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * The varints and zigzag values read back what was written, at their bounds too.
+     */
+    public void testVarints() {
+        int[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        byte[] bytes = new byte[Trace.MAX_VARINT_SIZE * values.length];
+        int at = 0;
+        for (int value : values) {
+            int next = Trace.putVarint(bytes, at, value);
+            check(next - at == Trace.getVarintSize(value), "varint size of " + value);
+            check(Trace.getVarint(ByteBuffer.wrap(bytes), at) == value, "varint " + value);
+            check(Trace.unzigzag(Trace.zigzag(value)) == value, "zigzag " + value);
+            at = next;
+        }
+    }
+
+    private static Tournament newTournament(int size, Player.Direction direction) {
+        Tournament tournament = new Tournament(size, size);
+        tournament.setSeed(42);
+        tournament.setStartDirection(direction);
+        return tournament;
+    }
+
+    /**
+     * Rewrites a segment in the first version, dropping the start direction of each record.
+     */
+    private static void toFirstVersion(File file) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        byte[] out = new byte[in.limit()];
+        ByteBuffer header = ByteBuffer.wrap(out);
+        header.putInt(Trace.MAGIC).putInt(Trace.VERSION_EAST);
+        int to = Trace.HEADER_SIZE;
+        in.position(Trace.HEADER_SIZE);
+        while (in.hasRemaining()) {
+            int length = Trace.getVarint(in);
+            if (length == 0) break;
+            int end = in.position() + length;
+            int width = Trace.getVarint(in);
+            int height = Trace.getVarint(in);
+            check(in.get() == Player.Direction.E.ordinal(), "start direction");
+            to = Trace.putVarint(out, to, length - 1);
+            to = Trace.putVarint(out, to, width);
+            to = Trace.putVarint(out, to, height);
+            int rest = end - in.position();
+            in.get(out, to, rest);
+            to += rest;
+        }
+        Files.write(file.toPath(), Arrays.copyOf(out, to));
+    }
+
+    private static void checkSame(Tournament.Stats played, Tournament.Stats replayed) {
+        check(played.getErrors() == 0, "errors");
+        check(replayed.getGames() == played.getGames(), "games");
+        check(replayed.getMismatches() == 0, "mismatches");
+        check(replayed.getWins() == played.getWins(), "wins");
+        check(replayed.getDeaths() == played.getDeaths(), "deaths");
+        check(replayed.getMeanScore() == played.getMeanScore(), "score");
+        check(replayed.getMeanSteps() == played.getMeanSteps(), "steps");
+    }
+
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new AssertionError("Wrong " + what);
+    }
+}